@@ -23,30 +23,89 @@
 package de.fraunhofer.iosb.ilt.frostclient;
 
 import com.github.fge.jsonpatch.JsonPatchOperation;
+import de.fraunhofer.iosb.ilt.frostclient.batch.BatchRequest;
+import de.fraunhofer.iosb.ilt.frostclient.cache.EntityCache;
+import de.fraunhofer.iosb.ilt.frostclient.cache.ResponseCache;
+import de.fraunhofer.iosb.ilt.frostclient.dao.AsyncDao;
 import de.fraunhofer.iosb.ilt.frostclient.dao.BaseDao;
 import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
+import de.fraunhofer.iosb.ilt.frostclient.exception.RequestRejectedException;
 import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException;
 import de.fraunhofer.iosb.ilt.frostclient.json.deserialize.JsonReader;
 import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostclient.model.ModelRegistry;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationProperty;
+import de.fraunhofer.iosb.ilt.frostclient.query.AsyncQuery;
+import de.fraunhofer.iosb.ilt.frostclient.query.NavigationLoader;
 import de.fraunhofer.iosb.ilt.frostclient.query.Query;
+import de.fraunhofer.iosb.ilt.frostclient.transport.AdaptiveConcurrencyLimit;
+import de.fraunhofer.iosb.ilt.frostclient.transport.ApacheHttpTransport;
+import de.fraunhofer.iosb.ilt.frostclient.transport.Bulkhead;
+import de.fraunhofer.iosb.ilt.frostclient.transport.CircuitBreaker;
+import de.fraunhofer.iosb.ilt.frostclient.transport.ExponentialBackoffRetryPolicy;
+import de.fraunhofer.iosb.ilt.frostclient.transport.HttpTransport;
+import de.fraunhofer.iosb.ilt.frostclient.transport.JdkHttpTransport;
+import de.fraunhofer.iosb.ilt.frostclient.transport.RateLimiter;
+import de.fraunhofer.iosb.ilt.frostclient.transport.RetryPolicy;
 import de.fraunhofer.iosb.ilt.frostclient.utils.ParserUtils;
+import de.fraunhofer.iosb.ilt.frostclient.utils.ResponseProcessor;
 import de.fraunhofer.iosb.ilt.frostclient.utils.TokenManager;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.AuthenticationStrategy;
+import org.apache.http.client.UserTokenHandler;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.execchain.ClientExecChain;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -61,18 +120,67 @@ public class SensorThingsService {
      */
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SensorThingsService.class);
 
+    /**
+     * The default maximum number of pooled connections, in total.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+    /**
+     * The default maximum number of pooled connections to a single server.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+    /**
+     * The default time a connection can be idle before it is validated.
+     */
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MS = 2000;
+    /**
+     * The default connect, socket and connection request timeout.
+     */
+    public static final int DEFAULT_TIMEOUT_MS = 120000;
+
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+
     private final ModelRegistry modelRegistry;
     private final JsonReader jsonReader;
     private URL endpoint;
     private String urlReplace;
-    private HttpClientBuilder clientBuilder;
-    private CloseableHttpClient httpClient;
-    private TokenManager tokenManager;
-    private Version version;
     /**
-     * The request timeout in MS.
+     * Guards the lazy initialisation of the clients and the executor. A lock is
+     * used instead of synchronized, so that virtual threads waiting for it are
+     * not pinned to their carrier thread.
      */
-    private int requestTimeoutMs = 120000;
+    private final ReentrantLock initLock = new ReentrantLock();
+    private ServiceClientBuilder clientBuilder;
+    private volatile CloseableHttpClient httpClient;
+    private HttpAsyncClientBuilder asyncClientBuilder;
+    private volatile CloseableHttpAsyncClient httpAsyncClient;
+    private volatile TokenManager tokenManager;
+    private volatile ExecutorService executor;
+    private volatile HttpTransport transport;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private IdleConnectionEvictor connectionEvictor;
+    private SSLConnectionSocketFactory sslSocketFactory;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private boolean maxConnectionsSet;
+    private boolean validateAfterInactivitySet;
+    private volatile long keepAliveMs = -1;
+    private volatile boolean compression = true;
+    private volatile int requestCompressionThreshold = -1;
+    private volatile EntityCache entityCache;
+    private volatile ResponseCache responseCache;
+    private long idleConnectionTimeoutMs = -1;
+    private int validateAfterInactivityMs = DEFAULT_VALIDATE_AFTER_INACTIVITY_MS;
+    private Version version;
+    private volatile int connectTimeoutMs = DEFAULT_TIMEOUT_MS;
+    private volatile int socketTimeoutMs = DEFAULT_TIMEOUT_MS;
+    private volatile int connectionRequestTimeoutMs = DEFAULT_TIMEOUT_MS;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private volatile CircuitBreaker circuitBreaker;
+    private volatile Bulkhead bulkhead;
+    private volatile RateLimiter rateLimiter;
+    private volatile AdaptiveConcurrencyLimit concurrencyLimit;
 
     /**
      * Creates a new SensorThingsService without an endpoint url set.The
@@ -231,6 +339,290 @@ public class SensorThingsService {
      * @throws IOException in case of problems.
      */
     public CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+        prepareRequest(request, true);
+        addAuthHeader(request);
+        final ResponseCache cache = responseCache;
+        if (cache == null) {
+            return executeWithRetries(request);
+        }
+        final ResponseCache.Entry entry = cache.prepare(request);
+        return (CloseableHttpResponse) cache.process(request, entry, executeWithRetries(request));
+    }
+
+    private CloseableHttpResponse executeWithRetries(HttpRequestBase request) throws IOException {
+        final RetryPolicy policy = retryPolicy;
+        for (int attempt = 1;; attempt++) {
+            final CloseableHttpResponse response;
+            try {
+                response = executeAttempt(request);
+            } catch (RequestRejectedException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                final long delay = policy.retryDelay(request, attempt, null, ex);
+                if (delay < 0) {
+                    throw ex;
+                }
+                LOGGER.debug("Retrying {} {} in {} ms after: {}", request.getMethod(), request.getURI(), delay, ex.getMessage());
+                waitForRetry(request, delay);
+                continue;
+            }
+            final long delay = policy.retryDelay(request, attempt, response, null);
+            if (delay < 0) {
+                return response;
+            }
+            LOGGER.debug("Retrying {} {} in {} ms after status {}", request.getMethod(), request.getURI(), delay, response.getStatusLine().getStatusCode());
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+            waitForRetry(request, delay);
+        }
+    }
+
+    private CloseableHttpResponse executeAttempt(HttpRequestBase request) throws IOException {
+        final CircuitBreaker breaker = circuitBreaker;
+        final AdaptiveConcurrencyLimit limit = concurrencyLimit;
+        final Bulkhead bh = bulkhead;
+        final long permission = acquirePermits(breaker, rateLimiter, limit, bh);
+        final long start = System.nanoTime();
+        CloseableHttpResponse response = null;
+        try {
+            response = decompressResponse(getTransport().execute(request));
+            return response;
+        } finally {
+            attemptDone(breaker, permission, limit, bh, start, response);
+        }
+    }
+
+    /**
+     * Acquires the permits of the circuit breaker, rate limiter, concurrency
+     * limit and bulkhead, if set, waiting where needed. Permits already taken
+     * are returned when a later one can not be acquired.
+     *
+     * @return The permission of the circuit breaker, or -1 if there is none.
+     */
+    private static long acquirePermits(CircuitBreaker breaker, RateLimiter limiter, AdaptiveConcurrencyLimit limit, Bulkhead bh) throws IOException {
+        final long permission = breaker == null ? -1 : breaker.acquirePermission();
+        boolean limitTaken = false;
+        try {
+            if (limiter != null) {
+                limiter.acquire();
+            }
+            if (limit != null) {
+                limit.acquire();
+                limitTaken = true;
+            }
+            if (bh != null) {
+                bh.acquire();
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (limitTaken) {
+                limit.release();
+            }
+            if (breaker != null) {
+                breaker.releasePermission(permission);
+            }
+            throw ex;
+        }
+        return permission;
+    }
+
+    /**
+     * The asynchronous variant of {@link #executeAttempt(HttpRequestBase)}.
+     * Waiting for the rate limiter and the concurrency limit does not block a
+     * thread, the request is started when the permits are available. Only the
+     * bulkhead is not waited for.
+     */
+    private CompletableFuture<HttpResponse> executeAttemptAsync(HttpRequestBase request) {
+        final CircuitBreaker breaker = circuitBreaker;
+        final RateLimiter limiter = rateLimiter;
+        final AdaptiveConcurrencyLimit limit = concurrencyLimit;
+        final Bulkhead bh = bulkhead;
+        final long permission;
+        try {
+            permission = breaker == null ? -1 : breaker.acquirePermission();
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        CompletableFuture<Void> permits = limiter == null ? CompletableFuture.completedFuture(null) : limiter.acquireAsync();
+        if (limit != null) {
+            permits = permits.thenCompose(v -> limit.acquireAsync());
+        }
+        return permits.handle((v, failure) -> {
+            if (failure != null) {
+                if (breaker != null) {
+                    breaker.releasePermission(permission);
+                }
+                return CompletableFuture.<HttpResponse>failedFuture(unwrap(failure));
+            }
+            if (bh != null) {
+                try {
+                    bh.tryAcquire();
+                } catch (IOException ex) {
+                    if (limit != null) {
+                        limit.release();
+                    }
+                    if (breaker != null) {
+                        breaker.releasePermission(permission);
+                    }
+                    return CompletableFuture.<HttpResponse>failedFuture(ex);
+                }
+            }
+            final long start = System.nanoTime();
+            return getTransport().executeAsync(request)
+                    .thenApply(this::decompressResponse)
+                    .whenComplete((response, error) -> attemptDone(breaker, permission, limit, bh, start, error == null ? response : null));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Returns the permits taken for an attempt, and reports its outcome. A
+     * null response means the attempt failed without a response.
+     */
+    private static void attemptDone(CircuitBreaker breaker, long permission, AdaptiveConcurrencyLimit limit, Bulkhead bh, long start, HttpResponse response) {
+        final long duration = System.nanoTime() - start;
+        final int status = response == null ? -1 : response.getStatusLine().getStatusCode();
+        if (bh != null) {
+            bh.release();
+        }
+        if (limit != null) {
+            limit.onComplete(duration, response == null || status >= 500 || status == 429);
+        }
+        if (breaker != null) {
+            breaker.onResult(permission, duration, response == null || status >= 500);
+        }
+    }
+
+    private static void waitForRetry(HttpRequestBase request, long delayMs) throws InterruptedIOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry " + request.getURI());
+        }
+        request.reset();
+    }
+
+    /**
+     * Execute the given request asynchronously, adding a token header if
+     * needed. With the default transport the request is executed by the
+     * non-blocking httpAsyncClient, and the returned future completes on one
+     * of its I/O threads, with the content of the response fully buffered.
+     * The TokenManager, which may have to fetch a token from the
+     * authentication server, is called on the executor of this service, so
+     * the calling thread is never blocked.
+     *
+     * @param request The request to execute.
+     * @return a future that completes with the response, or exceptionally with
+     * an IOException.
+     */
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequestBase request) {
+        try {
+            prepareRequest(request, false);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (tokenManager == null) {
+            return executeAsyncPrepared(request);
+        }
+        return CompletableFuture.runAsync(() -> addAuthHeader(request), getExecutor())
+                .thenCompose(v -> executeAsyncPrepared(request));
+    }
+
+    private CompletableFuture<HttpResponse> executeAsyncPrepared(HttpRequestBase request) {
+        final ResponseCache cache = responseCache;
+        if (cache == null) {
+            return executeAsyncWithRetries(request, 1);
+        }
+        final ResponseCache.Entry entry = cache.prepare(request);
+        return executeAsyncWithRetries(request, 1)
+                .thenApply(response -> {
+                    try {
+                        return cache.process(request, entry, response);
+                    } catch (IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                });
+    }
+
+    private CompletableFuture<HttpResponse> executeAsyncWithRetries(HttpRequestBase request, int attempt) {
+        final RetryPolicy policy = retryPolicy;
+        return executeAttemptAsync(request)
+                .handle((response, failure) -> {
+                    final Throwable cause = failure == null ? null : unwrap(failure);
+                    final long delay;
+                    if (cause == null) {
+                        delay = policy.retryDelay(request, attempt, response, null);
+                    } else if (cause instanceof IOException ioException && !(cause instanceof RequestRejectedException)) {
+                        delay = policy.retryDelay(request, attempt, null, ioException);
+                    } else {
+                        delay = -1;
+                    }
+                    if (delay < 0 || request.isAborted()) {
+                        return cause == null ? CompletableFuture.completedFuture(response) : CompletableFuture.<HttpResponse>failedFuture(cause);
+                    }
+                    LOGGER.debug("Retrying {} {} in {} ms", request.getMethod(), request.getURI(), delay);
+                    if (response != null) {
+                        EntityUtils.consumeQuietly(response.getEntity());
+                    }
+                    final Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.runAsync(request::reset, delayed)
+                            .thenCompose(v -> executeAsyncWithRetries(request, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Execute the given request asynchronously, and process the response on
+     * the executor of this service. Failures are reported by completing the
+     * returned future exceptionally with a ServiceFailureException.
+     * Cancelling the returned future aborts the request.
+     *
+     * @param <T> The type of the result.
+     * @param request The request to execute.
+     * @param processor The processor that turns the response into a result.
+     * @return a future that completes with the result.
+     */
+    public <T> CompletableFuture<T> executeAsync(HttpRequestBase request, ResponseProcessor<T> processor) {
+        final CompletableFuture<T> result = executeAsync(request).handleAsync((response, failure) -> {
+            if (failure != null) {
+                final Throwable cause = unwrap(failure);
+                if (cause instanceof RequestRejectedException rejected) {
+                    throw new CompletionException(rejected.getCause());
+                }
+                throw new CompletionException(new ServiceFailureException("Failed to execute " + request.getMethod() + " on " + request.getURI(), cause));
+            }
+            try {
+                return processor.process(response);
+            } catch (ServiceFailureException ex) {
+                throw new CompletionException(ex);
+            } catch (IOException | RuntimeException ex) {
+                throw new CompletionException(new ServiceFailureException("Failed to process response of " + request.getURI(), ex));
+            } finally {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        }, getExecutor());
+        result.whenComplete((value, failure) -> {
+            if (result.isCancelled()) {
+                request.abort();
+            }
+        });
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Fixes the url, sets the timeouts and the compression of the request.
+     *
+     * @param request The request to prepare.
+     * @param streamBody Flag indicating the body of the request may be sent
+     * as a stream that can only be written, not read.
+     */
+    private void prepareRequest(HttpRequestBase request, boolean streamBody) throws IOException {
         final String urlString = request.getURI().toString();
         if (urlReplace != null && urlString.startsWith(urlReplace)) {
             final String newUrlString = endpoint.toString() + urlString.substring(urlReplace.length());
@@ -241,12 +633,92 @@ public class SensorThingsService {
                 throw new IOException("Failed to replace start of URL", ex);
             }
         }
-        final CloseableHttpClient client = getHttpClient();
         setTimeouts(request);
-        if (tokenManager != null) {
-            tokenManager.addAuthHeader(request);
+        if (compression) {
+            if (!request.containsHeader(HEADER_ACCEPT_ENCODING)) {
+                request.addHeader(HEADER_ACCEPT_ENCODING, "gzip, deflate");
+            }
+        } else if (!request.containsHeader(HEADER_ACCEPT_ENCODING)) {
+            request.addHeader(HEADER_ACCEPT_ENCODING, "identity");
+        }
+        compressRequest(request, streamBody);
+    }
+
+    /**
+     * Lets the TokenManager, if set, add its headers to the request. This may
+     * block while a token is fetched.
+     */
+    private void addAuthHeader(HttpRequestBase request) {
+        final TokenManager tm = tokenManager;
+        if (tm != null) {
+            // Token managers use the httpClient to fetch tokens.
+            getHttpClient();
+            tm.addAuthHeader(request);
+        }
+    }
+
+    /**
+     * Gzips the body of the request, if compression is enabled and the body is
+     * larger than the threshold. Bodies of unknown length are assumed to be
+     * large. When streamBody is set, bodies of unknown length and streamed
+     * bodies are compressed while they are sent. Other bodies are compressed
+     * in memory, and the compressed body is only used if it is actually
+     * smaller. The httpAsyncClient reads bodies instead of letting them write
+     * themselves, so asynchronous requests are always compressed in memory.
+     */
+    private void compressRequest(HttpRequestBase request, boolean streamBody) throws IOException {
+        final int threshold = requestCompressionThreshold;
+        if (!compression || threshold < 0 || !(request instanceof HttpEntityEnclosingRequest)) {
+            return;
+        }
+        final HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+        final HttpEntity entity = enclosing.getEntity();
+        if (entity == null || entity.getContentEncoding() != null) {
+            return;
+        }
+        final long length = entity.getContentLength();
+        if (length >= 0 && length < threshold) {
+            return;
+        }
+        if (streamBody && (length < 0 || entity.isStreaming())) {
+            LOGGER.debug("Compressing request body of {} bytes while sending.", length);
+            enclosing.setEntity(new GzipCompressingEntity(entity));
+            return;
+        }
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(length > 0 ? (int) Math.min(length / 4, 1 << 20) : 1024);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            entity.writeTo(gzip);
+        }
+        if (length >= 0 && buffer.size() >= length) {
+            return;
+        }
+        LOGGER.debug("Compressed request body from {} to {} bytes.", length, buffer.size());
+        final ByteArrayEntity compressed = new ByteArrayEntity(buffer.toByteArray());
+        compressed.setContentType(entity.getContentType());
+        compressed.setContentEncoding("gzip");
+        enclosing.setEntity(compressed);
+    }
+
+    /**
+     * Replaces the entity of a gzip or deflate encoded response with one that
+     * decompresses the content while it is read.
+     */
+    private <T extends HttpResponse> T decompressResponse(T response) {
+        final HttpEntity entity = response.getEntity();
+        if (entity == null || entity.getContentEncoding() == null) {
+            return response;
+        }
+        final String encoding = entity.getContentEncoding().getValue().trim().toLowerCase(Locale.ROOT);
+        if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+            response.setEntity(new GzipDecompressingEntity(entity));
+        } else if ("deflate".equals(encoding)) {
+            response.setEntity(new DeflateDecompressingEntity(entity));
+        } else {
+            return response;
         }
-        return client.execute(request);
+        response.removeHeaders(HEADER_CONTENT_LENGTH);
+        response.removeHeaders(HEADER_CONTENT_ENCODING);
+        return response;
     }
 
     private void setTimeouts(HttpRequestBase request) {
@@ -257,9 +729,9 @@ public class SensorThingsService {
             configBuilder = RequestConfig.copy(request.getConfig());
         }
         RequestConfig config = configBuilder
-                .setSocketTimeout(requestTimeoutMs)
-                .setConnectTimeout(requestTimeoutMs)
-                .setConnectionRequestTimeout(requestTimeoutMs)
+                .setSocketTimeout(socketTimeoutMs)
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMs)
                 .build();
         request.setConfig(config);
     }
@@ -278,6 +750,47 @@ public class SensorThingsService {
         return new BaseDao(this, type);
     }
 
+    /**
+     * Get a data access object for the given type, that executes its
+     * requests asynchronously.
+     *
+     * @param type the type to get the Dao for.
+     * @return a new AsyncDao for the given type.
+     */
+    public AsyncDao asyncDao(EntityType type) {
+        return new AsyncDao(this, type);
+    }
+
+    /**
+     * Query a main entity set asynchronously.
+     *
+     * @param type the type to query.
+     * @return a new AsyncQuery for the given type.
+     */
+    public AsyncQuery asyncQuery(EntityType type) {
+        return new AsyncQuery(new Query(this, type));
+    }
+
+    /**
+     * Start a new batch request, that sends multiple create, update and delete
+     * operations to the server in a single request.
+     *
+     * @return a new, empty BatchRequest.
+     */
+    public BatchRequest batch() {
+        return new BatchRequest(this);
+    }
+
+    /**
+     * Create a loader that loads navigation properties for many Entities with
+     * one request per batch of Entities, instead of one request per Entity.
+     *
+     * @return a new NavigationLoader.
+     */
+    public NavigationLoader navigationLoader() {
+        return new NavigationLoader(this);
+    }
+
     /**
      * Create the given entity in this service. Executes a POST to the
      * Collection of the entity type. The entity will be updated with the ID of
@@ -291,7 +804,8 @@ public class SensorThingsService {
     }
 
     /**
-     * Patches the entity in the Service.
+     * Patches the entity in the Service. Only the properties that changed
+     * since the entity was loaded are sent, see {@link Dao#update(Entity)}.
      *
      * @param entity The entity to update in the service.
      * @throws ServiceFailureException in case the server rejects the PATCH.
@@ -331,10 +845,15 @@ public class SensorThingsService {
      * @return This SensorThingsService.
      */
     public SensorThingsService setTokenManager(TokenManager tokenManager) {
-        if (tokenManager != null && httpClient != null) {
-            tokenManager.setHttpClient(httpClient);
+        initLock.lock();
+        try {
+            if (tokenManager != null && httpClient != null) {
+                tokenManager.setHttpClient(httpClient);
+            }
+            this.tokenManager = tokenManager;
+        } finally {
+            initLock.unlock();
         }
-        this.tokenManager = tokenManager;
         return this;
     }
 
@@ -346,18 +865,611 @@ public class SensorThingsService {
     }
 
     /**
-     * Get the httpclient used for requests.
+     * Enables or disables compression. When enabled, which is the default,
+     * the server is asked to send gzip or deflate compressed responses, and
+     * these are decompressed while they are parsed. When disabled, the server
+     * is asked not to compress responses, and request bodies are never
+     * compressed.
+     *
+     * @param compression Flag indicating compression should be used.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setCompression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets the size above which request bodies, like those of POST and PATCH
+     * requests, are gzip compressed. Only use this when the server accepts
+     * compressed requests. Disabled by default.
+     *
+     * @param thresholdBytes The size in bytes from which request bodies are
+     * compressed, or a negative value to never compress request bodies.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setRequestCompressionThreshold(int thresholdBytes) {
+        this.requestCompressionThreshold = thresholdBytes;
+        return this;
+    }
+
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    /**
+     * Sets the cache for Entities loaded through this service. When set,
+     * Entities loaded with find, by auto-loading navigation properties, and by
+     * queries without $select, are cached, and find by primary key uses the
+     * cache. Entities are removed from the cache when they are updated or
+     * deleted through this service. Disabled by default.
+     *
+     * @param entityCache The cache to use, or null to disable caching.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setEntityCache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return this;
+    }
+
+    /**
+     * Get the Entity cache of this service.
+     *
+     * @return The Entity cache, or null if caching is disabled.
+     */
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Sets the HTTP cache for responses of this service. When set, GET
+     * responses that have an ETag or Last-Modified header are stored, and
+     * requests for the same URL are sent as conditional requests. When the
+     * server answers 304 Not Modified, the stored body is used instead of
+     * downloading it again. The body is still parsed for every request, so
+     * callers never share Entities. Responses larger than the cache are not
+     * stored, and are not buffered in memory. Disabled by default.
+     *
+     * @param responseCache The cache to use, or null to disable caching.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    /**
+     * Get the HTTP response cache of this service.
+     *
+     * @return The response cache, or null if caching is disabled.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Get the transport used to send requests to the server. If no transport
+     * is set, an {@link ApacheHttpTransport} is used.
+     *
+     * @return the transport used to send requests.
+     */
+    public HttpTransport getTransport() {
+        HttpTransport result = transport;
+        if (result != null) {
+            return result;
+        }
+        initLock.lock();
+        try {
+            if (transport == null) {
+                transport = new ApacheHttpTransport(this);
+            }
+            return transport;
+        } finally {
+            initLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the transport used to send requests to the server. For example, a
+     * {@link JdkHttpTransport} to use HTTP/2.
+     *
+     * @param transport The transport to use, or null to use the default
+     * transport.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setTransport(HttpTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Get the executor used for background work, like prefetching pages. If no
+     * executor is set, a cached thread pool with daemon threads is created.
+     *
+     * @return the executor used for background work.
+     */
+    public ExecutorService getExecutor() {
+        ExecutorService result = executor;
+        if (result != null) {
+            return result;
+        }
+        initLock.lock();
+        try {
+            if (executor == null) {
+                final AtomicInteger threadNr = new AtomicInteger();
+                executor = Executors.newCachedThreadPool(r -> {
+                    Thread thread = new Thread(r, "FrostClient-" + threadNr.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return executor;
+        } finally {
+            initLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the executor used for background work, like prefetching pages. The
+     * executor is not shut down by the service. On Java 21 and later a
+     * virtual-thread-per-task executor can be used.
+     *
+     * @param executor The executor to use.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setExecutor(ExecutorService executor) {
+        initLock.lock();
+        try {
+            this.executor = executor;
+        } finally {
+            initLock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the size of the connection pools of the httpClient and the
+     * httpAsyncClient. When many threads use the service at the same time,
+     * set this to the number of requests that may be in flight at the same
+     * time. The defaults are {@link #DEFAULT_MAX_CONNECTIONS} and
+     * {@link #DEFAULT_MAX_CONNECTIONS_PER_ROUTE}.
+     *
+     * @param maxTotal The maximum number of connections in total.
+     * @param maxPerRoute The maximum number of connections per server.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setMaxConnections(int maxTotal, int maxPerRoute) {
+        if (maxTotal < 1 || maxPerRoute < 1) {
+            throw new IllegalArgumentException("Connection limits must be at least 1.");
+        }
+        initLock.lock();
+        try {
+            maxConnections = maxTotal;
+            maxConnectionsPerRoute = maxPerRoute;
+            maxConnectionsSet = true;
+            if (connectionManager != null) {
+                connectionManager.setMaxTotal(maxTotal);
+                connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+            }
+            rebuildHttpAsyncClient();
+        } finally {
+            initLock.unlock();
+        }
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the connect, socket and connection request timeouts to the same
+     * value. The default for all three is {@link #DEFAULT_TIMEOUT_MS}.
+     *
+     * @param timeoutMs The timeout in milliseconds, 0 for no timeout.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setTimeout(int timeoutMs) {
+        this.connectTimeoutMs = timeoutMs;
+        this.socketTimeoutMs = timeoutMs;
+        this.connectionRequestTimeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to wait for a connection to the server to be
+     * established.
+     *
+     * @param connectTimeoutMs The timeout in milliseconds, 0 for no timeout.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setConnectTimeout(int connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        return this;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeoutMs;
+    }
+
+    /**
+     * Sets the maximum time to wait for data from the server, once connected.
+     * With the {@link JdkHttpTransport} this is not the time between packets,
+     * but the time to wait for the response headers after connecting; the
+     * time spent reading the response body is not limited.
+     *
+     * @param socketTimeoutMs The timeout in milliseconds, 0 for no timeout.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setSocketTimeout(int socketTimeoutMs) {
+        this.socketTimeoutMs = socketTimeoutMs;
+        return this;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeoutMs;
+    }
+
+    /**
+     * Sets the maximum time to wait for a connection from the connection
+     * pool, when all connections are in use.
+     *
+     * @param connectionRequestTimeoutMs The timeout in milliseconds, 0 for no
+     * timeout.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setConnectionRequestTimeout(int connectionRequestTimeoutMs) {
+        this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+        return this;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeoutMs;
+    }
+
+    /**
+     * Sets the policy that decides if failed requests are sent again. The
+     * default, {@link RetryPolicy#NONE}, does not retry. An
+     * {@link ExponentialBackoffRetryPolicy} retries idempotent requests after
+     * connection problems and on status codes like 503.
+     *
+     * @param retryPolicy The policy to use, or null to not retry.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the circuit breaker for this service. While the breaker is open,
+     * requests fail immediately with a {@link RequestRejectedException}, or,
+     * from the Dao and Query methods, a {@link ServiceUnavailableException}.
+     * Each attempt of a retried request counts separately. Disabled by
+     * default.
+     *
+     * @param circuitBreaker The circuit breaker to use, or null to disable.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the bulkhead that limits the number of requests of this service
+     * that are in progress at the same time. A request holds its permit until
+     * the response headers are received. Requests that do not get a permit
+     * fail with a {@link RequestRejectedException}, or, from the Dao and Query
+     * methods, a {@link ServiceUnavailableException}. Disabled by default.
+     *
+     * @param bulkhead The bulkhead to use, or null to disable.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setBulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+        return this;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * Sets the rate limiter that spaces out the requests of this service.
+     * Synchronous requests wait for their turn, asynchronous requests are
+     * started when it is their turn. Each attempt of a retried request counts
+     * separately. Disabled by default.
+     *
+     * @param rateLimiter The rate limiter to use, or null to disable.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the adaptive limit on the number of requests of this service that
+     * are in progress at the same time. The limit grows while the server
+     * answers quickly, and shrinks when the server answers slowly, with a 429
+     * or 5xx status, or not at all. Requests over the limit wait until a slot
+     * is free. Disabled by default.
+     *
+     * @param concurrencyLimit The concurrency limit to use, or null to
+     * disable.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setConcurrencyLimit(AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        return this;
+    }
+
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Sets the maximum time a connection is kept alive for re-use. If the
+     * server sends a shorter keep-alive time, that is used instead.
+     *
+     * @param keepAliveMs The maximum keep-alive time in milliseconds, or a
+     * value &lt;= 0 to use the time sent by the server.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setKeepAlive(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+        return this;
+    }
+
+    public long getKeepAlive() {
+        return keepAliveMs;
+    }
+
+    /**
+     * Sets the time after which idle connections in the pool of the httpClient
+     * are closed by a background thread. Expired connections are closed by the
+     * same thread.
+     *
+     * @param idleTimeoutMs The idle time in milliseconds, or a value &lt;= 0
+     * to not evict idle connections.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setIdleConnectionTimeout(long idleTimeoutMs) {
+        initLock.lock();
+        try {
+            this.idleConnectionTimeoutMs = idleTimeoutMs;
+            if (connectionManager != null) {
+                startConnectionEvictor();
+            }
+        } finally {
+            initLock.unlock();
+        }
+        return this;
+    }
+
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeoutMs;
+    }
+
+    /**
+     * Sets the time a pooled connection of the httpClient can be inactive
+     * before it is validated when it is leased again. The default is
+     * {@link #DEFAULT_VALIDATE_AFTER_INACTIVITY_MS}.
+     *
+     * @param validateAfterInactivityMs The inactivity time in milliseconds, or
+     * a value &lt;= 0 to disable validation.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setValidateAfterInactivity(int validateAfterInactivityMs) {
+        initLock.lock();
+        try {
+            this.validateAfterInactivityMs = validateAfterInactivityMs;
+            validateAfterInactivitySet = true;
+            if (connectionManager != null) {
+                connectionManager.setValidateAfterInactivity(validateAfterInactivityMs);
+            }
+        } finally {
+            initLock.unlock();
+        }
+        return this;
+    }
+
+    public int getValidateAfterInactivity() {
+        return validateAfterInactivityMs;
+    }
+
+    /**
+     * Sets the socket factory used for https connections by the httpClient. If
+     * not set, the system default is used. The httpClient is rebuilt when it
+     * is next requested.
+     *
+     * @param sslSocketFactory The socket factory to use, or null for the
+     * system default.
+     * @return This SensorThingsService.
+     */
+    public SensorThingsService setSslSocketFactory(SSLConnectionSocketFactory sslSocketFactory) {
+        initLock.lock();
+        try {
+            this.sslSocketFactory = sslSocketFactory;
+            rebuildHttpClient();
+        } finally {
+            initLock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Get the statistics of the connection pool of the httpClient: the number
+     * of leased, pending and available connections, and the maximum.
+     *
+     * @return The statistics of the connection pool, or null if the
+     * httpClient does not use a pooling connection manager.
+     */
+    public PoolStats getPoolStats() {
+        getHttpClient();
+        initLock.lock();
+        try {
+            if (connectionManager == null) {
+                return null;
+            }
+            return connectionManager.getTotalStats();
+        } finally {
+            initLock.unlock();
+        }
+    }
+
+    private PoolingHttpClientConnectionManager createConnectionManager() {
+        final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory == null ? SSLConnectionSocketFactory.getSystemSocketFactory() : sslSocketFactory)
+                .build();
+        final PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(registry);
+        final int systemMax = getSystemMaxConnections();
+        if (!maxConnectionsSet && systemMax > 0) {
+            // Same interpretation as HttpClientBuilder.useSystemProperties().
+            manager.setMaxTotal(2 * systemMax);
+            manager.setDefaultMaxPerRoute(systemMax);
+        } else {
+            manager.setMaxTotal(maxConnections);
+            manager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        }
+        manager.setValidateAfterInactivity(validateAfterInactivityMs);
+        return manager;
+    }
+
+    private static int getSystemMaxConnections() {
+        if (!"true".equalsIgnoreCase(System.getProperty("http.keepAlive", "true"))) {
+            return -1;
+        }
+        final String value = System.getProperty("http.maxConnections");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("Ignoring invalid http.maxConnections: {}", value);
+            return -1;
+        }
+    }
+
+    /**
+     * Configures a pooling connection manager created by a user-supplied
+     * clientBuilder. Only the settings that were explicitly made on this
+     * service are applied, the rest is left as the builder configured it.
+     */
+    private void configureBuilderConnectionManager() {
+        if (maxConnectionsSet) {
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        }
+        if (validateAfterInactivitySet) {
+            connectionManager.setValidateAfterInactivity(validateAfterInactivityMs);
+        }
+    }
+
+    private void startConnectionEvictor() {
+        if (connectionEvictor != null) {
+            connectionEvictor.shutdown();
+            connectionEvictor = null;
+        }
+        if (idleConnectionTimeoutMs > 0) {
+            connectionEvictor = new IdleConnectionEvictor(
+                    connectionManager,
+                    r -> {
+                        Thread thread = new Thread(r, "FrostClient-Evictor");
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    idleConnectionTimeoutMs, TimeUnit.MILLISECONDS,
+                    idleConnectionTimeoutMs, TimeUnit.MILLISECONDS);
+            connectionEvictor.start();
+        }
+    }
+
+    private long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        final long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        final long maxKeepAlive = keepAliveMs;
+        if (maxKeepAlive <= 0) {
+            return serverKeepAlive;
+        }
+        if (serverKeepAlive <= 0) {
+            return maxKeepAlive;
+        }
+        return Math.min(serverKeepAlive, maxKeepAlive);
+    }
+
+    /**
+     * Get the httpclient used for requests. The client is built when it is
+     * first requested. This method is safe to call from many threads at the
+     * same time.
      *
      * @return the client
      */
     public CloseableHttpClient getHttpClient() {
-        if (httpClient == null) {
-            httpClient = getClientBuilder().build();
-            if (tokenManager != null) {
-                tokenManager.setHttpClient(httpClient);
+        CloseableHttpClient result = httpClient;
+        if (result != null) {
+            return result;
+        }
+        initLock.lock();
+        try {
+            if (httpClient == null) {
+                final CloseableHttpClient newClient;
+                if (clientBuilder == null) {
+                    connectionManager = createConnectionManager();
+                    newClient = new ServiceClientBuilder()
+                            .useSystemProperties()
+                            .setConnectionManager(connectionManager)
+                            .setKeepAliveStrategy(this::getKeepAliveDuration)
+                            .build();
+                } else {
+                    if (sslSocketFactory != null) {
+                        clientBuilder.setSSLSocketFactory(sslSocketFactory);
+                    }
+                    if (keepAliveMs > 0) {
+                        clientBuilder.setKeepAliveStrategy(this::getKeepAliveDuration);
+                    }
+                    newClient = clientBuilder.build();
+                    if (clientBuilder.builtConnectionManager instanceof PoolingHttpClientConnectionManager pooling) {
+                        connectionManager = pooling;
+                        configureBuilderConnectionManager();
+                    } else {
+                        connectionManager = null;
+                    }
+                }
+                if (connectionManager != null) {
+                    startConnectionEvictor();
+                }
+                if (tokenManager != null) {
+                    tokenManager.setHttpClient(newClient);
+                }
+                httpClient = newClient;
             }
+            return httpClient;
+        } finally {
+            initLock.unlock();
         }
-        return httpClient;
     }
 
     /**
@@ -366,27 +1478,156 @@ public class SensorThingsService {
      * } to trigger the httpClient to be built anew.
      *
      * The clientBuilder is initialised using: {@code HttpClients.custom().useSystemProperties()
-     * }
+     * }. As long as this method is not called, the httpClient uses a
+     * connection pool configured by the settings of this service. Once the
+     * builder is requested, the connection manager, SSL and pool settings on
+     * the builder are left alone. Only the connection pool settings that are
+     * explicitly set on this service are applied to the pool the builder
+     * creates.
      *
      * @return The client Builder used to generate the httpClient.
      */
     public HttpClientBuilder getClientBuilder() {
-        if (clientBuilder == null) {
-            clientBuilder = HttpClients.custom().useSystemProperties();
+        initLock.lock();
+        try {
+            if (clientBuilder == null) {
+                clientBuilder = new ServiceClientBuilder();
+                clientBuilder.useSystemProperties();
+            }
+            return clientBuilder;
+        } finally {
+            initLock.unlock();
         }
-        return clientBuilder;
     }
 
     /**
      * Triggers a rebuild of the httpClient, using the latest changes to the
-     * clientBuilder.
+     * clientBuilder. The old httpClient and its connection pool are closed,
+     * requests that are still running on it may fail.
      */
     public void rebuildHttpClient() {
-        httpClient = null;
+        final CloseableHttpClient oldClient;
+        final IdleConnectionEvictor oldEvictor;
+        initLock.lock();
+        try {
+            oldClient = httpClient;
+            oldEvictor = connectionEvictor;
+            httpClient = null;
+            connectionManager = null;
+            connectionEvictor = null;
+        } finally {
+            initLock.unlock();
+        }
+        if (oldEvictor != null) {
+            oldEvictor.shutdown();
+        }
+        if (oldClient != null) {
+            try {
+                oldClient.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to close http client.", ex);
+            }
+        }
+    }
+
+    /**
+     * Get the non-blocking httpAsyncClient used for asynchronous requests. The
+     * client is started when it is first requested.
+     *
+     * @return the async client
+     */
+    public CloseableHttpAsyncClient getHttpAsyncClient() {
+        CloseableHttpAsyncClient result = httpAsyncClient;
+        if (result != null) {
+            return result;
+        }
+        initLock.lock();
+        try {
+            if (httpAsyncClient == null) {
+                final CloseableHttpAsyncClient newClient = getAsyncClientBuilder()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnectionsPerRoute)
+                        .setKeepAliveStrategy(this::getKeepAliveDuration)
+                        .build();
+                newClient.start();
+                httpAsyncClient = newClient;
+            }
+            return httpAsyncClient;
+        } finally {
+            initLock.unlock();
+        }
+    }
+
+    /**
+     * Get the Builder used to generate the httpAsyncClient. If changes are made
+     * to the builder after the httpAsyncClient is already generated, call
+     * {@link #rebuildHttpAsyncClient()} to trigger the httpAsyncClient to be
+     * built anew.
+     *
+     * The asyncClientBuilder is initialised using: {@code HttpAsyncClients.custom().useSystemProperties()
+     * }, with a ThreadFactory that creates daemon threads.
+     *
+     * @return The client Builder used to generate the httpAsyncClient.
+     */
+    public HttpAsyncClientBuilder getAsyncClientBuilder() {
+        initLock.lock();
+        try {
+            if (asyncClientBuilder == null) {
+                final AtomicInteger threadNr = new AtomicInteger();
+                asyncClientBuilder = HttpAsyncClients.custom()
+                        .useSystemProperties()
+                        .setThreadFactory(r -> {
+                            Thread thread = new Thread(r, "FrostClient-IO-" + threadNr.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+            }
+            return asyncClientBuilder;
+        } finally {
+            initLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current httpAsyncClient, and triggers a rebuild using the
+     * latest changes to the asyncClientBuilder.
+     */
+    public void rebuildHttpAsyncClient() {
+        final CloseableHttpAsyncClient oldClient;
+        initLock.lock();
+        try {
+            oldClient = httpAsyncClient;
+            httpAsyncClient = null;
+        } finally {
+            initLock.unlock();
+        }
+        if (oldClient != null) {
+            try {
+                oldClient.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to close async client.", ex);
+            }
+        }
     }
 
     public Version getVersion() {
         return version;
     }
 
+    /**
+     * A HttpClientBuilder that remembers the connection manager that was used
+     * for the last client it built, so the pool can be monitored and
+     * configured, also when the builder created it itself.
+     */
+    private static class ServiceClientBuilder extends HttpClientBuilder {
+
+        private HttpClientConnectionManager builtConnectionManager;
+
+        @Override
+        protected ClientExecChain createMainExec(HttpRequestExecutor requestExec, HttpClientConnectionManager connManager, ConnectionReuseStrategy reuseStrategy, ConnectionKeepAliveStrategy keepAliveStrategy, HttpProcessor proxyHttpProcessor, AuthenticationStrategy targetAuthStrategy, AuthenticationStrategy proxyAuthStrategy, UserTokenHandler userTokenHandler) {
+            builtConnectionManager = connManager;
+            return super.createMainExec(requestExec, connManager, reuseStrategy, keepAliveStrategy, proxyHttpProcessor, targetAuthStrategy, proxyAuthStrategy, userTokenHandler);
+        }
+    }
+
 }
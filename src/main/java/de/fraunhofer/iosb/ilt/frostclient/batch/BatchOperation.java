@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.batch;
+
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+
+/**
+ * A single operation in a batch request. After the batch request is executed,
+ * the operation holds the status code and, if the operation failed, the body
+ * of the response for this operation.
+ */
+public class BatchOperation {
+
+    /**
+     * The methods of the operations that can be part of a batch request.
+     */
+    public enum Method {
+        POST,
+        PATCH,
+        DELETE;
+
+        public String toJson() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final String id;
+    private final Method method;
+    private final String url;
+    private final Entity entity;
+    private final ChangeSet changeSet;
+    private int statusCode = -1;
+    private String responseBody;
+
+    BatchOperation(String id, Method method, String url, Entity entity, ChangeSet changeSet) {
+        this.id = id;
+        this.method = method;
+        this.url = url;
+        this.entity = entity;
+        this.changeSet = changeSet;
+    }
+
+    /**
+     * The id of the operation in the batch request.
+     *
+     * @return The id of the operation.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The content-ID reference to the result of this operation, that can be
+     * used in the url of later operations in the same change set.
+     *
+     * @return The content-ID reference to the result of this operation.
+     */
+    public String getContentId() {
+        return "$" + id;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * The url of the operation, relative to the service root.
+     *
+     * @return The url of the operation.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * The entity that is created, updated or deleted by this operation.
+     *
+     * @return The entity this operation is about.
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * The change set this operation is part of, or null if the operation is
+     * not part of a change set.
+     *
+     * @return The change set this operation is part of.
+     */
+    public ChangeSet getChangeSet() {
+        return changeSet;
+    }
+
+    /**
+     * The status code the server returned for this operation, or -1 if the
+     * batch request was not executed, or the server did not return a response
+     * for this operation.
+     *
+     * @return The status code the server returned for this operation.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Check if the server returned a success status code for this operation.
+     *
+     * @return true if the operation succeeded.
+     */
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * The body the server returned for this operation, if the operation
+     * failed.
+     *
+     * @return The body the server returned for this failed operation.
+     */
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url + " (" + id + "): " + statusCode;
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.batch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.cache.EntityCache;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.json.serialize.EntitySerializer;
+import de.fraunhofer.iosb.ilt.frostclient.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.utils.ParserUtils;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects create, update and delete operations, and sends them to the server
+ * in a single JSON $batch request.
+ *
+ * Operations added directly to the batch request are executed independently.
+ * Operations added to a {@link ChangeSet} are executed atomically, and can
+ * reference Entities created earlier in the same change set.
+ *
+ * <pre>
+ * BatchRequest batch = service.batch();
+ * ChangeSet changeSet = batch.changeSet();
+ * changeSet.create(thing);
+ * changeSet.create(datastream); // datastream links to thing
+ * batch.execute();
+ * </pre>
+ */
+public class BatchRequest {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchRequest.class);
+
+    private final SensorThingsService service;
+    private final List<BatchOperation> operations = new ArrayList<>();
+    private int changeSetCount = 0;
+
+    public BatchRequest(SensorThingsService service) {
+        this.service = service;
+    }
+
+    /**
+     * Start a new change set in this batch request. Operations added to the
+     * change set are executed atomically.
+     *
+     * @return The new change set.
+     */
+    public ChangeSet changeSet() {
+        changeSetCount++;
+        return new ChangeSet(this, "changeset" + changeSetCount);
+    }
+
+    /**
+     * Add an operation that creates the given entity. After the batch request
+     * is executed, the entity has the primary key assigned by the server.
+     *
+     * @param entity The entity to create.
+     * @return The operation.
+     */
+    public BatchOperation create(Entity entity) {
+        return addCreate(entity, null);
+    }
+
+    /**
+     * Add an operation that updates the given entity.
+     *
+     * @param entity The entity to update.
+     * @return The operation.
+     */
+    public BatchOperation update(Entity entity) {
+        return addUpdate(entity, null);
+    }
+
+    /**
+     * Add an operation that deletes the given entity.
+     *
+     * @param entity The entity to delete.
+     * @return The operation.
+     */
+    public BatchOperation delete(Entity entity) {
+        return addDelete(entity, null);
+    }
+
+    BatchOperation addCreate(Entity entity, ChangeSet changeSet) {
+        return addOperation(BatchOperation.Method.POST, entity.getEntityType().plural, entity, changeSet);
+    }
+
+    BatchOperation addUpdate(Entity entity, ChangeSet changeSet) {
+        return addOperation(BatchOperation.Method.PATCH, entityUrl(entity, changeSet), entity, changeSet);
+    }
+
+    BatchOperation addDelete(Entity entity, ChangeSet changeSet) {
+        return addOperation(BatchOperation.Method.DELETE, entityUrl(entity, changeSet), entity, changeSet);
+    }
+
+    private BatchOperation addOperation(BatchOperation.Method method, String url, Entity entity, ChangeSet changeSet) {
+        BatchOperation operation = new BatchOperation(Integer.toString(operations.size() + 1), method, url, entity, changeSet);
+        operations.add(operation);
+        return operation;
+    }
+
+    private static String entityUrl(Entity entity, ChangeSet changeSet) {
+        Object[] pkValues = entity.getPrimaryKeyValues();
+        if (pkValues.length > 0 && pkValues[0] != null) {
+            return ParserUtils.entityPath(entity.getEntityType(), pkValues);
+        }
+        if (changeSet != null) {
+            BatchOperation createOp = changeSet.getCreateOperation(entity);
+            if (createOp != null) {
+                return createOp.getContentId();
+            }
+        }
+        throw new IllegalArgumentException("Entity has no primary key, and is not created earlier in the same change set.");
+    }
+
+    /**
+     * The operations in this batch request, in the order they were added. The
+     * operations of a change set are sent to the server together, at the
+     * position of the first operation of that change set.
+     *
+     * @return The operations in this batch request.
+     */
+    public List<BatchOperation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Send all operations to the server in a single request. Created Entities
+     * get their primary key set, and are linked to the service. Failing
+     * operations do not cause an exception, check the status of each
+     * operation.
+     *
+     * @return The operations, with their status set.
+     * @throws ServiceFailureException If the batch request as a whole fails.
+     */
+    public List<BatchOperation> execute() throws ServiceFailureException {
+        if (operations.isEmpty()) {
+            return getOperations();
+        }
+        HttpPost httpPost;
+        try {
+            httpPost = new HttpPost(service.getEndpoint().toURI().resolve("$batch"));
+            httpPost.setEntity(new ByteArrayEntity(writeRequests(), ContentType.APPLICATION_JSON));
+        } catch (URISyntaxException | IOException ex) {
+            throw new ServiceFailureException("Failed to create batch request.", ex);
+        }
+        httpPost.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        LOGGER.debug("Posting batch of {} operations to: {}", operations.size(), httpPost.getURI());
+
+        try (CloseableHttpResponse response = service.execute(httpPost)) {
+            Utils.throwIfNotOk(httpPost, response);
+            readResponses(response.getEntity().getContent());
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap("Failed to execute batch request.", ex);
+        } finally {
+            invalidateCached();
+        }
+        return getOperations();
+    }
+
+    /**
+     * Removes the Entities that are updated or deleted by this batch from the
+     * Entity cache of the service. This is done whatever the outcome, since
+     * the server may have applied some operations even if reading the
+     * response failed.
+     */
+    private void invalidateCached() {
+        final EntityCache cache = service.getEntityCache();
+        if (cache == null) {
+            return;
+        }
+        for (BatchOperation op : operations) {
+            if (op.getMethod() != BatchOperation.Method.POST) {
+                cache.invalidate(op.getEntity());
+            }
+        }
+    }
+
+    /**
+     * The operations in the order they are sent. JSON batch requires the
+     * requests of an atomicity group to be adjacent, so the operations of
+     * each change set are sent together, at the position of the first
+     * operation of that change set.
+     */
+    private List<BatchOperation> requestOrder() {
+        final List<BatchOperation> ordered = new ArrayList<>(operations.size());
+        final Set<ChangeSet> written = new HashSet<>();
+        for (BatchOperation op : operations) {
+            final ChangeSet changeSet = op.getChangeSet();
+            if (changeSet == null) {
+                ordered.add(op);
+            } else if (written.add(changeSet)) {
+                for (BatchOperation other : operations) {
+                    if (other.getChangeSet() == changeSet) {
+                        ordered.add(other);
+                    }
+                }
+            }
+        }
+        return ordered;
+    }
+
+    private byte[] writeRequests() throws IOException {
+        final ObjectMapper mapper = JsonWriter.getObjectMapper();
+        final Map<ChangeSet, Map<Entity, String>> contentIdsPerChangeSet = new HashMap<>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("requests");
+            for (BatchOperation op : requestOrder()) {
+                gen.writeStartObject();
+                gen.writeStringField("id", op.getId());
+                final ChangeSet changeSet = op.getChangeSet();
+                if (changeSet != null) {
+                    gen.writeStringField("atomicityGroup", changeSet.getAtomicityGroup());
+                }
+                gen.writeStringField("method", op.getMethod().toJson());
+                gen.writeStringField("url", op.getUrl());
+                if (op.getMethod() != BatchOperation.Method.DELETE) {
+                    Map<Entity, String> contentIds = Collections.emptyMap();
+                    if (changeSet != null) {
+                        contentIds = contentIdsPerChangeSet.computeIfAbsent(changeSet, t -> new IdentityHashMap<>());
+                    }
+                    ObjectWriter writer = mapper.writer().withAttribute(EntitySerializer.ATTR_CONTENT_IDS, contentIds);
+                    gen.writeFieldName("body");
+                    writer.writeValue(gen, op.getEntity());
+                    if (changeSet != null && op.getMethod() == BatchOperation.Method.POST) {
+                        contentIds.put(op.getEntity(), op.getContentId());
+                    }
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private void readResponses(InputStream content) throws IOException {
+        final Map<String, BatchOperation> operationsById = new HashMap<>();
+        for (BatchOperation op : operations) {
+            operationsById.put(op.getId(), op);
+        }
+        final JsonNode result;
+        try (InputStream input = content) {
+            result = service.getJsonReader().getMapper().readTree(input);
+        }
+        final JsonNode responses = result == null ? null : result.get("responses");
+        if (responses == null || !responses.isArray()) {
+            throw new IOException("Batch response does not contain a responses array.");
+        }
+        for (JsonNode response : responses) {
+            final BatchOperation op = operationsById.get(response.path("id").asText());
+            if (op == null) {
+                LOGGER.warn("Batch response for unknown operation: {}", response.path("id"));
+                continue;
+            }
+            op.setStatusCode(response.path("status").asInt(-1));
+            if (op.isSuccess()) {
+                if (op.getMethod() == BatchOperation.Method.POST) {
+                    applyCreateResult(op, response);
+                }
+            } else {
+                final JsonNode body = response.get("body");
+                op.setResponseBody(body == null ? null : body.toString());
+            }
+        }
+    }
+
+    private void applyCreateResult(BatchOperation op, JsonNode response) {
+        final String location = findHeader(response.get("headers"), "location");
+        if (location == null) {
+            LOGGER.warn("Server did not send a location for the entity created by operation {}", op.getId());
+            return;
+        }
+        final Entity entity = op.getEntity();
+        entity.setPrimaryKeyValues(ParserUtils.pkFromLocation(location));
+        entity.setService(service);
+    }
+
+    private static String findHeader(JsonNode headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Iterator<Map.Entry<String, JsonNode>> it = headers.fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> header = it.next();
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue().asText();
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.batch;
+
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A group of operations in a batch request that the server executes
+ * atomically: either all operations succeed, or none do.
+ *
+ * Entities created in a change set can be referenced by later operations in
+ * the same change set, before they have a primary key. When such an Entity is
+ * linked from an Entity created later in the change set, the link is sent as
+ * a content-ID reference. Updating or deleting such an Entity uses the
+ * content-ID reference as url.
+ */
+public class ChangeSet {
+
+    private final BatchRequest batch;
+    private final String atomicityGroup;
+    private final List<BatchOperation> operations = new ArrayList<>();
+    private final Map<Entity, BatchOperation> created = new IdentityHashMap<>();
+
+    ChangeSet(BatchRequest batch, String atomicityGroup) {
+        this.batch = batch;
+        this.atomicityGroup = atomicityGroup;
+    }
+
+    /**
+     * Add an operation that creates the given entity. After the batch request
+     * is executed, the entity has the primary key assigned by the server.
+     *
+     * @param entity The entity to create.
+     * @return The operation.
+     */
+    public BatchOperation create(Entity entity) {
+        BatchOperation operation = batch.addCreate(entity, this);
+        created.put(entity, operation);
+        operations.add(operation);
+        return operation;
+    }
+
+    /**
+     * Add an operation that updates the given entity.
+     *
+     * @param entity The entity to update.
+     * @return The operation.
+     */
+    public BatchOperation update(Entity entity) {
+        BatchOperation operation = batch.addUpdate(entity, this);
+        operations.add(operation);
+        return operation;
+    }
+
+    /**
+     * Add an operation that deletes the given entity.
+     *
+     * @param entity The entity to delete.
+     * @return The operation.
+     */
+    public BatchOperation delete(Entity entity) {
+        BatchOperation operation = batch.addDelete(entity, this);
+        operations.add(operation);
+        return operation;
+    }
+
+    public String getAtomicityGroup() {
+        return atomicityGroup;
+    }
+
+    public List<BatchOperation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Find the operation creating the given Entity in this change set.
+     *
+     * @param entity The entity to find the create operation for.
+     * @return The operation creating the entity, or null.
+     */
+    BatchOperation getCreateOperation(Entity entity) {
+        return created.get(entity);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.cache;
+
+import java.io.IOException;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+/**
+ * A response with a fully buffered body, that is stored in, or served from, a
+ * {@link ResponseCache}.
+ */
+public class CachedHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+    private final ResponseCache.Entry entry;
+    private final boolean notModified;
+
+    CachedHttpResponse(ResponseCache.Entry entry, byte[] body, boolean notModified) {
+        super(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        this.entry = entry;
+        this.notModified = notModified;
+        final String contentType = entry.getContentType();
+        setEntity(new ByteArrayEntity(body, contentType == null ? null : ContentType.parse(contentType)));
+        if (entry.getEtag() != null) {
+            setHeader("ETag", entry.getEtag());
+        }
+        if (entry.getLastModified() != null) {
+            setHeader("Last-Modified", entry.getLastModified());
+        }
+    }
+
+    /**
+     * The cache entry this response belongs to.
+     *
+     * @return The cache entry.
+     */
+    public ResponseCache.Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Flag indicating the server answered 304 Not Modified, and the body is
+     * the cached one.
+     *
+     * @return true if the body was served from the cache.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The body is a byte array, nothing to release.
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.cache;
+
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationProperty;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of Entities, keyed by EntityType and primary key, shared by
+ * all Daos and Queries of a SensorThingsService. Entries are evicted when the
+ * cache grows beyond its maximum size, least recently used first, and when
+ * they are older than the time-to-live.
+ *
+ * The cache holds its own copies of the Entities, and hands out a new copy
+ * for every hit, so changes made to a returned Entity are never seen by other
+ * users of the cache, and callers in different threads never share an Entity.
+ *
+ * Only finding an Entity by its primary key reads from the cache. Finds, and
+ * the first page of lists, fill it. Streams and following nextLinks, like
+ * iterating over an EntitySet or fetchNext, neither read nor fill the cache.
+ * Updates and deletes through a Dao or a BatchRequest invalidate the changed
+ * Entities.
+ */
+public class EntityCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Key, CachedEntity> entries;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize The maximum number of Entities to hold.
+     * @param ttl The time after which a cached Entity is no longer used, 0 or
+     * less to keep Entities until they are evicted for space.
+     * @param unit The unit of the ttl.
+     */
+    public EntityCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive.");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl <= 0 ? Long.MAX_VALUE : unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedEntity> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the cached Entity with the given type and primary key.
+     *
+     * @param entityType The type of the Entity.
+     * @param pkValues The primary key values of the Entity.
+     * @return A copy of the cached Entity, or null if it is not in the cache
+     * or has expired.
+     */
+    public Entity get(EntityType entityType, Object... pkValues) {
+        final Key key = new Key(entityType, pkValues);
+        final Entity entity;
+        lock.lock();
+        try {
+            final CachedEntity cached = entries.get(key);
+            if (cached == null) {
+                missCount++;
+                return null;
+            }
+            if (System.nanoTime() - cached.created > ttlNanos) {
+                entries.remove(key);
+                evictionCount++;
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            entity = cached.entity;
+        } finally {
+            lock.unlock();
+        }
+        return entity.copy();
+    }
+
+    /**
+     * Put a copy of the given Entity in the cache, if it has a primary key.
+     * Later changes to the given Entity do not affect the cached copy.
+     *
+     * @param entity The Entity to cache.
+     */
+    public void put(Entity entity) {
+        final Object[] pkValues = entity.getPrimaryKeyValues();
+        for (Object pkValue : pkValues) {
+            if (pkValue == null) {
+                return;
+            }
+        }
+        final CachedEntity cached = new CachedEntity(entity.copy(), System.nanoTime());
+        lock.lock();
+        try {
+            entries.put(new Key(entity.getEntityType(), pkValues), cached);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put the given Entity in the cache, together with all Entities that are
+     * expanded into it.
+     *
+     * @param entity The Entity to cache.
+     */
+    public void putAll(Entity entity) {
+        put(entity);
+        for (NavigationProperty<Entity> np : entity.getEntityType().getNavigationEntities()) {
+            final Entity linked = entity.getProperty(np, false);
+            if (linked != null) {
+                putAll(linked);
+            }
+        }
+        for (NavigationProperty<EntitySet> np : entity.getEntityType().getNavigationSets()) {
+            if (entity.isSetProperty(np)) {
+                putAll(entity.getProperty(np, false));
+            }
+        }
+    }
+
+    /**
+     * Put the Entities in the given set in the cache, together with all
+     * Entities that are expanded into them. Only the currently loaded page is
+     * cached.
+     *
+     * @param entities The Entities to cache.
+     */
+    public void putAll(EntitySet entities) {
+        for (Entity entity : entities.toList()) {
+            putAll(entity);
+        }
+    }
+
+    /**
+     * Remove the given Entity from the cache.
+     *
+     * @param entity The Entity to remove.
+     */
+    public void invalidate(Entity entity) {
+        invalidate(entity.getEntityType(), entity.getPrimaryKeyValues());
+    }
+
+    /**
+     * Remove the Entity with the given type and primary key from the cache.
+     *
+     * @param entityType The type of the Entity.
+     * @param pkValues The primary key values of the Entity.
+     */
+    public void invalidate(EntityType entityType, Object... pkValues) {
+        final Key key = new Key(entityType, pkValues);
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all Entities from the cache.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the Entities in the response to a request for the given URI
+     * can be cached. Responses for requests with a $select may not be
+     * complete, and are not cached.
+     *
+     * @param uri The URI to check.
+     * @return true if the Entities in the response can be cached.
+     */
+    public static boolean isCacheable(URI uri) {
+        final String query = uri.getQuery();
+        return query == null || !query.contains("$select");
+    }
+
+    /**
+     * The number of Entities in the cache, including expired ones that have
+     * not been removed yet.
+     *
+     * @return The number of Entities in the cache.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * The number of calls to get that found a valid Entity.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        lock.lock();
+        try {
+            return hitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of calls to get that did not find a valid Entity.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        lock.lock();
+        try {
+            return missCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of Entities removed because the cache was full, or because
+     * they expired.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class CachedEntity {
+
+        final Entity entity;
+        final long created;
+
+        CachedEntity(Entity entity, long created) {
+            this.entity = entity;
+            this.created = created;
+        }
+    }
+
+    private static class Key {
+
+        final EntityType entityType;
+        final Object[] pkValues;
+        final int hash;
+
+        Key(EntityType entityType, Object[] pkValues) {
+            this.entityType = entityType;
+            this.pkValues = new Object[pkValues.length];
+            for (int idx = 0; idx < pkValues.length; idx++) {
+                this.pkValues[idx] = normalise(pkValues[idx]);
+            }
+            this.hash = 31 * Objects.hashCode(entityType) + Arrays.hashCode(this.pkValues);
+        }
+
+        /**
+         * Makes sure that integer ids of different types, like 1 and 1L, give
+         * the same key.
+         */
+        private static Object normalise(Object pkValue) {
+            if (pkValue instanceof Integer || pkValue instanceof Short || pkValue instanceof Byte) {
+                return ((Number) pkValue).longValue();
+            }
+            return pkValue;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(entityType, other.entityType) && Arrays.equals(pkValues, other.pkValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,631 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An HTTP cache for GET responses that have an ETag or Last-Modified header.
+ * When a cached URL is requested again, the request is sent with
+ * If-None-Match or If-Modified-Since, and when the server answers 304 Not
+ * Modified the cached body is used. Each response gets its own copy of the
+ * body, so callers can never change what other callers get from the cache.
+ *
+ * The total size of the cached bodies is bounded, least recently used
+ * entries are evicted first. Bodies are kept in memory, or, when a directory
+ * is given, on disk.
+ */
+public class ResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+    private static final String FILE_SUFFIX = ".cache";
+    private static final int FILE_MAGIC = 0x46434332;
+    private static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    private final long maxBytes;
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Create a cache that keeps the response bodies in memory.
+     *
+     * @param maxBytes The maximum total size of the cached bodies.
+     */
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.directory = null;
+    }
+
+    /**
+     * Create a cache that keeps the response bodies in files in the given
+     * directory. Entries already in the directory are used.
+     *
+     * @param maxBytes The maximum total size of the cached bodies.
+     * @param directory The directory to store the bodies in.
+     * @throws IOException If the directory can not be created or read.
+     */
+    public ResponseCache(long maxBytes, Path directory) throws IOException {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        Files.createDirectories(directory);
+        loadDirectory();
+    }
+
+    /**
+     * Prepares a request before it is sent. GET requests for a cached URL get
+     * conditional headers. For bodies stored on disk, the body is read here,
+     * so an eviction while the request is running can not take it away. If
+     * the file is gone already, the request is treated as a cache miss.
+     *
+     * @param request The request to prepare.
+     * @return The cache entry for the request, or null if there is none.
+     */
+    public Entry prepare(HttpRequestBase request) {
+        if (!HttpGet.METHOD_NAME.equals(request.getMethod())) {
+            return null;
+        }
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(request.getURI().toString());
+        } finally {
+            lock.unlock();
+        }
+        if (entry != null && entry.body == null) {
+            entry = loadBody(entry);
+        }
+        if (entry != null) {
+            if (entry.etag != null) {
+                request.setHeader("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader("If-Modified-Since", entry.lastModified);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Processes the response to a request prepared with
+     * {@link #prepare(HttpRequestBase)}. A 304 response is replaced by a
+     * {@link CachedHttpResponse} with the cached body, a cacheable 200
+     * response is buffered, stored, and replaced by a CachedHttpResponse. Other
+     * responses are returned unchanged. Bodies larger than the cache are
+     * never buffered completely: if the Content-Length is too large the
+     * response is returned as is, and if the length is unknown, reading stops
+     * once the body turns out to be too large, and the response is returned
+     * with the read part put back in front of the rest of the stream. Requests
+     * other than GET invalidate the cached entry for their URL.
+     *
+     * @param request The request.
+     * @param entry The entry returned by prepare.
+     * @param response The response from the server.
+     * @return The response to use, either the given one or a
+     * CachedHttpResponse.
+     * @throws IOException If reading the response or the cached body fails.
+     */
+    public HttpResponse process(HttpRequestBase request, Entry entry, HttpResponse response) throws IOException {
+        final String uri = request.getURI().toString();
+        if (!HttpGet.METHOD_NAME.equals(request.getMethod())) {
+            invalidate(uri);
+            return response;
+        }
+        final int status = response.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_NOT_MODIFIED && entry != null) {
+            close(response);
+            final byte[] body = entry.getBody();
+            countHit(entry);
+            LOGGER.debug("Not modified: {}", uri);
+            return new CachedHttpResponse(entry, body, true);
+        }
+        countMiss();
+        final HttpEntity entity = response.getEntity();
+        if (status != HttpStatus.SC_OK || entity == null || !isStorable(response) || entity.getContentLength() > maxBytes) {
+            if (entry != null) {
+                invalidate(uri);
+            }
+            return response;
+        }
+        final byte[] body;
+        try {
+            body = readAtMost(entity, maxBytes);
+        } catch (IOException | RuntimeException ex) {
+            close(response);
+            throw ex;
+        }
+        if (body.length > maxBytes) {
+            // Too large to cache, hand out the read part and the rest of the stream.
+            response.setEntity(prefixedEntity(entity, body));
+            if (entry != null) {
+                invalidate(uri);
+            }
+            return response;
+        }
+        close(response);
+        final Header contentType = entity.getContentType();
+        final Entry newEntry = new Entry(
+                uri,
+                headerValue(response, HEADER_ETAG),
+                headerValue(response, HEADER_LAST_MODIFIED),
+                contentType == null ? null : contentType.getValue(),
+                body.length);
+        if (body.length <= maxBytes) {
+            store(newEntry, body);
+        }
+        return new CachedHttpResponse(newEntry, body, false);
+    }
+
+    /**
+     * Reads the body of the given entity, but at most one byte more than
+     * limit, so bodies of unknown length are never buffered completely when
+     * they are too large to cache.
+     */
+    private static byte[] readAtMost(HttpEntity entity, long limit) throws IOException {
+        final long max = Math.min(limit + 1, Integer.MAX_VALUE - 8);
+        final long length = entity.getContentLength();
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(length < 0 ? 8192 : (int) Math.min(length, max));
+        final InputStream content = entity.getContent();
+        if (content == null) {
+            return new byte[0];
+        }
+        final byte[] chunk = new byte[8192];
+        while (buffer.size() < max) {
+            final int read = content.read(chunk, 0, (int) Math.min(chunk.length, max - buffer.size()));
+            if (read < 0) {
+                break;
+            }
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static HttpEntity prefixedEntity(HttpEntity entity, byte[] prefix) throws IOException {
+        final BasicHttpEntity prefixed = new BasicHttpEntity();
+        prefixed.setContent(new SequenceInputStream(new ByteArrayInputStream(prefix), entity.getContent()));
+        prefixed.setContentLength(entity.getContentLength());
+        prefixed.setContentType(entity.getContentType());
+        prefixed.setContentEncoding(entity.getContentEncoding());
+        prefixed.setChunked(entity.isChunked());
+        return prefixed;
+    }
+
+    private Entry loadBody(Entry entry) {
+        try {
+            final Entry loaded = readFileHeader(entry.file, true);
+            if (!entry.uri.equals(loaded.uri) || !Objects.equals(entry.etag, loaded.etag) || !Objects.equals(entry.lastModified, loaded.lastModified)) {
+                // The file was replaced by a newer response, use it next time.
+                return null;
+            }
+            return loaded;
+        } catch (NoSuchFileException ex) {
+            LOGGER.debug("Cache file for {} was evicted", entry.uri);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to read cache file {}: {}", entry.file, ex.getMessage());
+        }
+        lock.lock();
+        try {
+            if (entries.get(entry.uri) == entry) {
+                entries.remove(entry.uri);
+                totalBytes -= entry.size;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return null;
+    }
+
+    private static boolean isStorable(HttpResponse response) {
+        if (response.getFirstHeader(HEADER_ETAG) == null && response.getFirstHeader(HEADER_LAST_MODIFIED) == null) {
+            return false;
+        }
+        final String cacheControl = headerValue(response, HEADER_CACHE_CONTROL);
+        return cacheControl == null || !cacheControl.contains("no-store");
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        final Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    private static void close(HttpResponse response) throws IOException {
+        if (response instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException | RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            }
+        } else {
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+    private void store(Entry entry, byte[] body) throws IOException {
+        if (directory == null) {
+            entry.body = body;
+        } else {
+            entry.file = directory.resolve(fileName(entry.uri));
+            writeFile(entry, body);
+        }
+        final List<Entry> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            final Entry old = entries.put(entry.uri, entry);
+            if (old != null) {
+                totalBytes -= old.size;
+            }
+            totalBytes += entry.size;
+            final Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                final Entry eldest = it.next();
+                it.remove();
+                totalBytes -= eldest.size;
+                evicted.add(eldest);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Entry eldest : evicted) {
+            deleteFile(eldest, entry);
+        }
+    }
+
+    /**
+     * Remove the cached response for the given URL.
+     *
+     * @param uri The URL to remove the cached response for.
+     */
+    public void invalidate(String uri) {
+        final Entry removed;
+        lock.lock();
+        try {
+            removed = entries.remove(uri);
+            if (removed != null) {
+                totalBytes -= removed.size;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (removed != null) {
+            deleteFile(removed, null);
+        }
+    }
+
+    /**
+     * Remove all cached responses.
+     */
+    public void invalidateAll() {
+        final List<Entry> removed;
+        lock.lock();
+        try {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+            totalBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        for (Entry entry : removed) {
+            deleteFile(entry, null);
+        }
+    }
+
+    private void countHit(Entry entry) {
+        lock.lock();
+        try {
+            hitCount++;
+            // Mark the entry as recently used.
+            entries.get(entry.uri);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void countMiss() {
+        lock.lock();
+        try {
+            missCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of cached responses.
+     *
+     * @return The number of cached responses.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The total size of the cached bodies.
+     *
+     * @return The total size of the cached bodies in bytes.
+     */
+    public long getTotalBytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of requests that were answered with 304 Not Modified, and
+     * served from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        lock.lock();
+        try {
+            return hitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of GET requests for which the server sent a full response.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        lock.lock();
+        try {
+            return missCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String fileName(String uri) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(uri.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder(hash.length * 2 + FILE_SUFFIX.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.append(FILE_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // Should never happen, SHA-256 is required to be available.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 bytes. Unlike
+     * writeUTF, this has no 64 KiB limit, so long query URLs fit.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_LENGTH) {
+            throw new IOException("Invalid string length in cache file: " + length);
+        }
+        final byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFile(Entry entry, byte[] body) throws IOException {
+        final Path temp = Files.createTempFile(entry.file.getParent(), "tmp", ".part");
+        try (OutputStream fileOut = Files.newOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(fileOut)) {
+            out.writeInt(FILE_MAGIC);
+            writeString(out, entry.uri);
+            writeString(out, entry.etag);
+            writeString(out, entry.lastModified);
+            writeString(out, entry.contentType);
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, entry.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Entry readFileHeader(Path file, boolean readBody) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(fileIn)) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a cache file: " + file);
+            }
+            final Entry entry = new Entry(readString(in), readString(in), readString(in), readString(in), in.readInt());
+            entry.file = file;
+            if (readBody) {
+                entry.body = in.readNBytes(entry.size);
+                if (entry.body.length != entry.size) {
+                    throw new IOException("Cache file truncated: " + file);
+                }
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Deletes the file of the given entry, unless the replacement entry uses
+     * the same file.
+     */
+    private static void deleteFile(Entry entry, Entry replacement) {
+        if (entry.file == null || (replacement != null && entry.file.equals(replacement.file))) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(entry.file);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to delete cache file {}: {}", entry.file, ex.getMessage());
+        }
+    }
+
+    private void loadDirectory() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(ResponseCache::lastModifiedTime));
+        for (Path file : files) {
+            try {
+                final Entry entry = readFileHeader(file, false);
+                entries.put(entry.uri, entry);
+                totalBytes += entry.size;
+            } catch (IOException ex) {
+                LOGGER.warn("Ignoring unreadable cache file {}: {}", file, ex.getMessage());
+                Files.deleteIfExists(file);
+            }
+        }
+        final Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            final Entry eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.size;
+            deleteFile(eldest, null);
+        }
+        LOGGER.debug("Loaded {} cached responses from {}", entries.size(), directory);
+    }
+
+    private static long lastModifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+
+        private final String uri;
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+        private final int size;
+        private byte[] body;
+        private Path file;
+
+        private Entry(String uri, String etag, String lastModified, String contentType, int size) {
+            this.uri = uri;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * The cached body.
+         *
+         * @return the cached body.
+         * @throws IOException If the body is stored on disk and reading it
+         * fails.
+         */
+        public byte[] getBody() throws IOException {
+            if (body != null) {
+                return body;
+            }
+            return readFileHeader(file, true).body;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.dao;
+
+import com.github.fge.jsonpatch.JsonPatchOperation;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntity;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.query.AsyncQuery;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+
+/**
+ * A data access object that executes its requests asynchronously, using the
+ * non-blocking httpAsyncClient of the service. The returned futures complete
+ * exceptionally with a ServiceFailureException if a request fails.
+ */
+public class AsyncDao {
+
+    private final SensorThingsService service;
+    private final BaseDao dao;
+
+    /**
+     * Constructor.
+     *
+     * @param service the service to operate on
+     * @param entityType the type of entity to deal with.
+     */
+    public AsyncDao(SensorThingsService service, EntityType entityType) {
+        this.service = service;
+        this.dao = new BaseDao(service, entityType);
+    }
+
+    public AsyncDao(SensorThingsService service, Entity parent, NavigationPropertyEntitySet navigationLink) {
+        this.service = service;
+        this.dao = new BaseDao(service, parent, navigationLink);
+    }
+
+    /**
+     * Create the given entity. The entity is updated with the primary key
+     * assigned by the server.
+     *
+     * @param entity The entity to create.
+     * @return A future that completes with the given entity once it is
+     * created.
+     */
+    public CompletableFuture<Entity> create(Entity entity) {
+        final HttpPost httpPost;
+        try {
+            httpPost = dao.buildCreate(entity);
+        } catch (ServiceFailureException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return service.executeAsync(httpPost, response -> {
+            dao.handleCreateResponse(httpPost, response, entity);
+            return entity;
+        });
+    }
+
+    public CompletableFuture<Entity> find(Object... primaryKeyValues) {
+        final Entity cached = dao.findCached(primaryKeyValues);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        try {
+            return find(dao.buildUri(primaryKeyValues));
+        } catch (URISyntaxException ex) {
+            return CompletableFuture.failedFuture(new ServiceFailureException(ex));
+        }
+    }
+
+    public CompletableFuture<Entity> find(Entity parent, NavigationPropertyEntity npe) {
+        try {
+            return find(dao.buildFindUri(parent, npe));
+        } catch (ServiceFailureException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    public CompletableFuture<Entity> find(URI uri) {
+        final HttpGet httpGet = dao.buildFind(uri);
+        return service.executeAsync(httpGet, response -> dao.handleFindResponse(httpGet, response));
+    }
+
+    /**
+     * Update the given entity.
+     *
+     * @param entity The entity to update.
+     * @return A future that completes with the given entity once it is
+     * updated.
+     */
+    public CompletableFuture<Entity> update(Entity entity) {
+        final HttpPatch httpPatch;
+        try {
+            httpPatch = dao.buildUpdate(entity);
+        } catch (ServiceFailureException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (httpPatch == null) {
+            return CompletableFuture.completedFuture(entity);
+        }
+        return service.executeAsync(httpPatch, response -> {
+            dao.handleEmptyResponse(httpPatch, response);
+            dao.handleUpdated(entity);
+            return entity;
+        });
+    }
+
+    /**
+     * Update the given entity on the server with the given patch. Does not
+     * update the entity object itself.
+     *
+     * @param entity The entity to update on the server.
+     * @param patch The patch to apply to the entity.
+     * @return A future that completes with the given entity once it is
+     * patched.
+     */
+    public CompletableFuture<Entity> patch(Entity entity, List<JsonPatchOperation> patch) {
+        final HttpPatch httpPatch;
+        try {
+            httpPatch = dao.buildPatch(entity, patch);
+        } catch (ServiceFailureException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return service.executeAsync(httpPatch, response -> {
+            dao.handleEmptyResponse(httpPatch, response);
+            dao.invalidateCached(entity);
+            return entity;
+        });
+    }
+
+    public CompletableFuture<Void> delete(Entity entity) {
+        final HttpDelete httpDelete;
+        try {
+            httpDelete = dao.buildDelete(entity);
+        } catch (ServiceFailureException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return service.executeAsync(httpDelete, response -> {
+            dao.handleEmptyResponse(httpDelete, response);
+            dao.invalidateCached(entity);
+            return null;
+        });
+    }
+
+    public AsyncQuery query() {
+        return new AsyncQuery(dao.query());
+    }
+
+}
@@ -22,13 +22,14 @@
  */
 package de.fraunhofer.iosb.ilt.frostclient.dao;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.fge.jsonpatch.JsonPatchOperation;
 import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.cache.EntityCache;
 import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
-import de.fraunhofer.iosb.ilt.frostclient.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostclient.json.serialize.JsonHttpEntity;
 import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.Property;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntity;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntitySet;
 import de.fraunhofer.iosb.ilt.frostclient.query.Query;
@@ -42,15 +43,15 @@ import java.util.List;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.http.Consts;
 import org.apache.http.Header;
-import org.apache.http.ParseException;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -102,41 +103,46 @@ public class BaseDao implements Dao {
 
     @Override
     public void create(Entity entity) throws ServiceFailureException {
+        HttpPost httpPost = buildCreate(entity);
+        try (CloseableHttpResponse response = service.execute(httpPost)) {
+            handleCreateResponse(httpPost, response, entity);
+        } catch (IOException exc) {
+            throw ServiceFailureException.wrap("Failed to create entity.", exc);
+        }
+    }
+
+    HttpPost buildCreate(Entity entity) throws ServiceFailureException {
         URIBuilder uriBuilder;
-        String json;
         HttpPost httpPost;
         try {
             uriBuilder = new URIBuilder(getSetPath().toURI());
-            json = JsonWriter.writeEntity(entity);
             httpPost = new HttpPost(uriBuilder.build());
-        } catch (URISyntaxException | JsonProcessingException ex) {
+            httpPost.setEntity(new JsonHttpEntity(entity, ContentType.APPLICATION_JSON));
+        } catch (URISyntaxException | IOException ex) {
             throw new ServiceFailureException("Failed to create entity.", ex);
         }
 
         LOGGER.debug("Posting to: {}", httpPost.getURI());
-        httpPost.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return httpPost;
+    }
 
-        try (CloseableHttpResponse response = service.execute(httpPost)) {
-            Utils.throwIfNotOk(httpPost, response);
-            Header locationHeader = response.getLastHeader("location");
-            EntityUtils.consumeQuietly(response.getEntity());
-            if (locationHeader == null) {
-                throw new IllegalStateException("Server did not send a location header for the new entitiy.");
-            }
-            String newLocation = locationHeader.getValue();
-            int pos1 = newLocation.indexOf('(') + 1;
-            int pos2 = newLocation.indexOf(')', pos1);
-            String stringPkValue = newLocation.substring(pos1, pos2);
-            entity.setPrimaryKeyValues(ParserUtils.tryToParse(stringPkValue));
-            entity.setService(service);
-        } catch (IOException exc) {
-            throw new ServiceFailureException("Failed to create entity.", exc);
+    void handleCreateResponse(HttpPost httpPost, HttpResponse response, Entity entity) throws ServiceFailureException {
+        Utils.throwIfNotOk(httpPost, response);
+        Header locationHeader = response.getLastHeader("location");
+        EntityUtils.consumeQuietly(response.getEntity());
+        if (locationHeader == null) {
+            throw new IllegalStateException("Server did not send a location header for the new entitiy.");
         }
-
+        entity.setPrimaryKeyValues(ParserUtils.pkFromLocation(locationHeader.getValue()));
+        entity.setService(service);
     }
 
     @Override
     public Entity find(Object... pkValues) throws ServiceFailureException {
+        final Entity cached = findCached(pkValues);
+        if (cached != null) {
+            return cached;
+        }
         try {
             URI uri = buildUri(pkValues);
             return find(uri);
@@ -147,11 +153,15 @@ public class BaseDao implements Dao {
 
     @Override
     public Entity find(Entity parent, NavigationPropertyEntity npe) throws ServiceFailureException {
+        return find(buildFindUri(parent, npe));
+    }
+
+    URI buildFindUri(Entity parent, NavigationPropertyEntity npe) throws ServiceFailureException {
         if (!parent.getEntityType().getNavigationEntities().contains(npe)) {
             throw new IllegalArgumentException("Entities of type " + parent + " don't have nav prop " + npe);
         }
         try {
-            return find(service.getFullPath(parent, npe).toURI());
+            return service.getFullPath(parent, npe).toURI();
         } catch (URISyntaxException ex) {
             throw new ServiceFailureException(ex);
         }
@@ -159,69 +169,144 @@ public class BaseDao implements Dao {
 
     @Override
     public Entity find(URI uri) throws ServiceFailureException {
+        HttpGet httpGet = buildFind(uri);
+        try (CloseableHttpResponse response = service.execute(httpGet)) {
+            return handleFindResponse(httpGet, response);
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap(ex);
+        }
+    }
+
+    HttpGet buildFind(URI uri) {
         HttpGet httpGet = new HttpGet(uri);
         LOGGER.debug("Fetching: {}", uri);
         httpGet.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        return httpGet;
+    }
 
-        try (CloseableHttpResponse response = service.execute(httpGet)) {
-            Utils.throwIfNotOk(httpGet, response);
-            String returnContent = EntityUtils.toString(response.getEntity(), Consts.UTF_8);
-            Entity entity = service.getJsonReader().parseEntity(entityType, returnContent);
-            entity.setService(service);
-            return entity;
-        } catch (IOException | ParseException ex) {
-            throw new ServiceFailureException(ex);
+    Entity handleFindResponse(HttpGet httpGet, HttpResponse response) throws ServiceFailureException, IOException {
+        Utils.throwIfNotOk(httpGet, response);
+        // Responses served from the ResponseCache are parsed again, so each
+        // caller gets its own Entity, with its own Maps and Lists.
+        Entity entity = service.getJsonReader().parseEntity(entityType, response.getEntity().getContent());
+        entity.setService(service);
+        final EntityCache cache = service.getEntityCache();
+        if (cache != null && EntityCache.isCacheable(httpGet.getURI())) {
+            cache.putAll(entity);
+        }
+        return entity;
+    }
+
+    Entity findCached(Object[] pkValues) {
+        final EntityCache cache = service.getEntityCache();
+        if (cache == null) {
+            return null;
+        }
+        return cache.get(entityType, pkValues);
+    }
+
+    void invalidateCached(Entity entity) {
+        final EntityCache cache = service.getEntityCache();
+        if (cache != null) {
+            cache.invalidate(entity);
         }
     }
 
     @Override
     public void update(Entity entity) throws ServiceFailureException {
+        HttpPatch httpPatch = buildUpdate(entity);
+        if (httpPatch == null) {
+            return;
+        }
+        try (CloseableHttpResponse response = service.execute(httpPatch)) {
+            handleEmptyResponse(httpPatch, response);
+            handleUpdated(entity);
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap(ex);
+        }
+    }
+
+    /**
+     * Build the request for updating the given entity. If the entity tracks
+     * changes, only the changed properties are sent, as a JSON Patch if only
+     * the content of Map properties changed.
+     *
+     * @param entity The entity to update.
+     * @return The request, or null if the entity has no changes to send.
+     * @throws ServiceFailureException If building the request fails.
+     */
+    HttpPatch buildUpdate(Entity entity) throws ServiceFailureException {
         HttpPatch httpPatch;
-        String json;
         try {
             final URI uri = buildUri(entity.getPrimaryKeyValues());
-            json = JsonWriter.writeEntity(entity);
             httpPatch = new HttpPatch(uri);
-        } catch (JsonProcessingException | URISyntaxException ex) {
+            if (entity.isTrackingChanges()) {
+                final List<Property> changed = entity.getChangedProperties();
+                if (changed.isEmpty()) {
+                    LOGGER.debug("Not patching unchanged: {}", uri);
+                    return null;
+                }
+                final List<JsonPatchOperation> patch = EntityChanges.toMapPatch(entity, changed);
+                if (patch == null) {
+                    httpPatch.setEntity(new JsonHttpEntity(EntityChanges.toPartialEntity(entity, changed), ContentType.APPLICATION_JSON));
+                } else {
+                    httpPatch.setEntity(new JsonHttpEntity(patch, APPLICATION_JSON_PATCH));
+                }
+            } else {
+                httpPatch.setEntity(new JsonHttpEntity(entity, ContentType.APPLICATION_JSON));
+            }
+        } catch (IOException | URISyntaxException ex) {
             throw new ServiceFailureException(ex);
         }
 
         LOGGER.debug("Patching: {}", httpPatch.getURI());
-        httpPatch.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return httpPatch;
+    }
 
-        try (CloseableHttpResponse response = service.execute(httpPatch)) {
-            Utils.throwIfNotOk(httpPatch, response);
-            EntityUtils.consumeQuietly(response.getEntity());
-        } catch (IOException ex) {
-            throw new ServiceFailureException(ex);
+    void handleUpdated(Entity entity) {
+        if (entity.isTrackingChanges()) {
+            entity.markClean();
         }
+        invalidateCached(entity);
     }
 
     @Override
     public void patch(Entity entity, List<JsonPatchOperation> patch) throws ServiceFailureException {
+        HttpPatch httpPatch = buildPatch(entity, patch);
+        try (CloseableHttpResponse response = service.execute(httpPatch)) {
+            handleEmptyResponse(httpPatch, response);
+            invalidateCached(entity);
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap(ex);
+        }
+    }
+
+    HttpPatch buildPatch(Entity entity, List<JsonPatchOperation> patch) throws ServiceFailureException {
         HttpPatch httpPatch;
-        String json;
         try {
             final URI uri = buildUri(entity.getPrimaryKeyValues());
-            json = JsonWriter.writeObject(patch);
             httpPatch = new HttpPatch(uri);
-        } catch (URISyntaxException | JsonProcessingException ex) {
+            httpPatch.setEntity(new JsonHttpEntity(patch, APPLICATION_JSON_PATCH));
+        } catch (URISyntaxException | IOException ex) {
             throw new ServiceFailureException(ex);
         }
 
         LOGGER.debug("Patching: {} with patch {}", httpPatch.getURI(), patch);
-        httpPatch.setEntity(new StringEntity(json, APPLICATION_JSON_PATCH));
+        return httpPatch;
+    }
 
-        try (CloseableHttpResponse response = service.execute(httpPatch)) {
-            Utils.throwIfNotOk(httpPatch, response);
-            EntityUtils.consumeQuietly(response.getEntity());
+    @Override
+    public void delete(Entity entity) throws ServiceFailureException {
+        HttpDelete httpDelete = buildDelete(entity);
+        try (CloseableHttpResponse response = service.execute(httpDelete)) {
+            handleEmptyResponse(httpDelete, response);
+            invalidateCached(entity);
         } catch (IOException ex) {
-            throw new ServiceFailureException(ex);
+            throw ServiceFailureException.wrap(ex);
         }
     }
 
-    @Override
-    public void delete(Entity entity) throws ServiceFailureException {
+    HttpDelete buildDelete(Entity entity) throws ServiceFailureException {
         HttpDelete httpDelete;
         try {
             final URI uri = buildUri(entity.getPrimaryKeyValues());
@@ -230,13 +315,12 @@ public class BaseDao implements Dao {
             throw new ServiceFailureException(ex);
         }
         LOGGER.debug("Deleting: {}", httpDelete.getURI());
+        return httpDelete;
+    }
 
-        try (CloseableHttpResponse response = service.execute(httpDelete)) {
-            Utils.throwIfNotOk(httpDelete, response);
-            EntityUtils.consumeQuietly(response.getEntity());
-        } catch (IOException ex) {
-            throw new ServiceFailureException(ex);
-        }
+    void handleEmptyResponse(HttpRequestBase request, HttpResponse response) throws ServiceFailureException {
+        Utils.throwIfNotOk(request, response);
+        EntityUtils.consumeQuietly(response.getEntity());
     }
 
     @Override
@@ -247,7 +331,7 @@ public class BaseDao implements Dao {
         return new Query(service, parent, navigationLink);
     }
 
-    private URI buildUri(Object[] pkValues) throws NotImplementedException, URISyntaxException {
+    URI buildUri(Object[] pkValues) throws NotImplementedException, URISyntaxException {
         URIBuilder uriBuilder;
         if (pkValues.length == 1) {
             uriBuilder = new URIBuilder(service.getEndpoint().toString() + ParserUtils.entityPath(entityType, pkValues[0]));
@@ -73,7 +73,10 @@ public interface Dao {
     Entity find(URI uri) throws ServiceFailureException;
 
     /**
-     * Update an entity.
+     * Update an entity. If the entity tracks changes, as Entities loaded from
+     * the service do, only the properties that changed since it was loaded
+     * are sent, and no request is sent if nothing changed. See
+     * {@link Entity#markClean()}.
      *
      * @param entity the entity to update
      * @throws ServiceFailureException the operation failed
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.jsonpointer.JsonPointer;
+import com.github.fge.jsonpatch.AddOperation;
+import com.github.fge.jsonpatch.JsonPatchOperation;
+import com.github.fge.jsonpatch.RemoveOperation;
+import com.github.fge.jsonpatch.ReplaceOperation;
+import de.fraunhofer.iosb.ilt.frostclient.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.Property;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Turns the changes of an Entity, since it was marked clean, into the content
+ * of an update request.
+ */
+final class EntityChanges {
+
+    private EntityChanges() {
+        // Utility class.
+    }
+
+    /**
+     * Creates an Entity holding only the primary key and the given changed
+     * properties of the given Entity.
+     *
+     * @param entity The changed Entity.
+     * @param changed The properties that changed.
+     * @return An Entity with only the primary key and changed properties.
+     */
+    @SuppressWarnings("unchecked")
+    static Entity toPartialEntity(Entity entity, List<Property> changed) {
+        final Entity partial = new Entity(entity.getEntityType());
+        partial.setPrimaryKeyValues(entity.getPrimaryKeyValues());
+        for (Property property : changed) {
+            partial.setProperty(property, entity.getProperty(property, false));
+        }
+        return partial;
+    }
+
+    /**
+     * Creates a JSON Patch for the given changed properties, if all of them
+     * are Maps that existed before and after the change. When only a few keys
+     * of a large Map change, this is much smaller than sending the Map.
+     *
+     * @param entity The changed Entity.
+     * @param changed The properties that changed.
+     * @return The JSON Patch operations, or null if not all changed
+     * properties are Maps.
+     */
+    static List<JsonPatchOperation> toMapPatch(Entity entity, List<Property> changed) {
+        for (Property property : changed) {
+            if (!(property instanceof EntityPropertyMain)
+                    || !(entity.getProperty(property, false) instanceof Map)
+                    || !(entity.getCleanValue(property) instanceof Map)) {
+                return null;
+            }
+        }
+        final ObjectMapper mapper = JsonWriter.getObjectMapper();
+        final List<JsonPatchOperation> operations = new ArrayList<>();
+        for (Property property : changed) {
+            diffMaps(mapper,
+                    JsonPointer.empty().append(property.getName()),
+                    (Map<?, ?>) entity.getCleanValue(property),
+                    (Map<?, ?>) entity.getProperty(property, false),
+                    operations);
+        }
+        return operations;
+    }
+
+    private static void diffMaps(ObjectMapper mapper, JsonPointer path, Map<?, ?> oldMap, Map<?, ?> newMap, List<JsonPatchOperation> operations) {
+        for (Map.Entry<?, ?> entry : oldMap.entrySet()) {
+            if (!newMap.containsKey(entry.getKey())) {
+                operations.add(new RemoveOperation(path.append(String.valueOf(entry.getKey()))));
+            }
+        }
+        for (Map.Entry<?, ?> entry : newMap.entrySet()) {
+            final JsonPointer keyPath = path.append(String.valueOf(entry.getKey()));
+            final Object newValue = entry.getValue();
+            if (!oldMap.containsKey(entry.getKey())) {
+                operations.add(new AddOperation(keyPath, mapper.valueToTree(newValue)));
+                continue;
+            }
+            final Object oldValue = oldMap.get(entry.getKey());
+            if (Objects.equals(oldValue, newValue)) {
+                continue;
+            }
+            if (oldValue instanceof Map<?, ?> oldChild && newValue instanceof Map<?, ?> newChild) {
+                diffMaps(mapper, keyPath, oldChild, newChild, operations);
+            } else {
+                operations.add(new ReplaceOperation(keyPath, mapper.valueToTree(newValue)));
+            }
+        }
+    }
+
+}
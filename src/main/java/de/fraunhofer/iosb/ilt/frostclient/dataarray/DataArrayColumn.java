@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.dataarray;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeInstant;
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeInterval;
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeValue;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * One column of a dataArray. Ids, times and numeric results are stored in
+ * primitive arrays. When a value does not fit the primitive array, the column
+ * falls back to storing objects.
+ */
+class DataArrayColumn {
+
+    /**
+     * The kinds of primitive storage a column can use.
+     */
+    enum Kind {
+        LONG,
+        NUMBER,
+        TIME,
+        OBJECT
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+    /**
+     * Integers with a larger magnitude can not be stored exactly in a double.
+     */
+    private static final long MAX_EXACT_LONG = 1L << 53;
+
+    private final String component;
+    private final Kind kind;
+    private final boolean bigDecimals;
+    private final boolean longInts;
+    private int size;
+    private long[] longs;
+    private long[] ends;
+    private TimeValue[] times;
+    private double[] doubles;
+    /**
+     * For NUMBER columns, the rows that held an integer.
+     */
+    private BitSet integers;
+    private Object[] objects;
+
+    /**
+     * Create a new column.
+     *
+     * @param component The name of the component.
+     * @param kind The kind of storage to use.
+     * @param capacity The expected number of rows.
+     * @param bigDecimals If floating point numbers are returned as BigDecimal,
+     * like the ObjectMapper does for other values.
+     * @param longInts If all integers are returned as Long, like the
+     * ObjectMapper does for other values.
+     */
+    DataArrayColumn(String component, Kind kind, int capacity, boolean bigDecimals, boolean longInts) {
+        this.component = component;
+        this.kind = kind;
+        this.bigDecimals = bigDecimals;
+        this.longInts = longInts;
+        final int initial = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+        switch (kind) {
+            case LONG:
+                longs = new long[initial];
+                break;
+
+            case NUMBER:
+                doubles = new double[initial];
+                integers = new BitSet();
+                break;
+
+            case TIME:
+                longs = new long[initial];
+                ends = new long[initial];
+                times = new TimeValue[initial];
+                break;
+
+            default:
+                objects = new Object[initial];
+        }
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * Reads the current value from the parser, and adds it to the column.
+     *
+     * @param parser The parser, positioned on the value to add.
+     * @throws IOException If reading the value fails.
+     */
+    void add(JsonParser parser) throws IOException {
+        ensureCapacity(size + 1);
+        if (objects == null) {
+            final JsonToken token = parser.currentToken();
+            if (kind == Kind.LONG && token == JsonToken.VALUE_NUMBER_INT) {
+                longs[size++] = parser.getLongValue();
+                return;
+            }
+            if (kind == Kind.NUMBER && token.isNumeric() && addNumber(parser)) {
+                return;
+            }
+            if (kind == Kind.TIME && token == JsonToken.VALUE_STRING && addTime(parser.getText())) {
+                return;
+            }
+            toObjects();
+        }
+        if (kind == Kind.TIME && parser.currentToken() == JsonToken.VALUE_STRING) {
+            objects[size++] = parseTime(parser.getText());
+        } else {
+            objects[size++] = parser.readValueAs(Object.class);
+        }
+    }
+
+    /**
+     * Adds the current number to the primitive storage, if it can be returned
+     * unchanged later.
+     *
+     * @return false if the number does not fit.
+     */
+    private boolean addNumber(JsonParser parser) throws IOException {
+        final JsonParser.NumberType type = parser.getNumberType();
+        if (type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG) {
+            final long value = parser.getLongValue();
+            if (value > MAX_EXACT_LONG || value < -MAX_EXACT_LONG) {
+                return false;
+            }
+            doubles[size] = value;
+            integers.set(size);
+            size++;
+            return true;
+        }
+        if (type == JsonParser.NumberType.BIG_INTEGER) {
+            return false;
+        }
+        if (bigDecimals) {
+            final BigDecimal decimal = parser.getDecimalValue();
+            final double value = decimal.doubleValue();
+            if (Double.isInfinite(value) || !BigDecimal.valueOf(value).equals(decimal)) {
+                return false;
+            }
+            doubles[size++] = value;
+            return true;
+        }
+        doubles[size++] = parser.getDoubleValue();
+        return true;
+    }
+
+    /**
+     * Adds the given time to the primitive storage.
+     *
+     * @return false if the time can not be parsed.
+     */
+    private boolean addTime(String value) {
+        final TimeValue time;
+        try {
+            time = parseTimeValue(value);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        if (time.isInterval()) {
+            longs[size] = time.getInterval().getStart().toTemporalAccessor().toEpochMilli();
+            ends[size] = time.getInterval().getEnd().toTemporalAccessor().toEpochMilli();
+        } else {
+            longs[size] = time.getInstant().getDateTime().toTemporalAccessor().toEpochMilli();
+            ends[size] = longs[size];
+        }
+        times[size] = time;
+        size++;
+        return true;
+    }
+
+    private static TimeValue parseTimeValue(String value) {
+        if (value.indexOf('/') >= 0) {
+            return TimeValue.create(TimeInterval.parse(value));
+        }
+        return TimeValue.create(TimeInstant.parse(value));
+    }
+
+    /**
+     * Parses the given time, or returns it as String if it can not be parsed.
+     */
+    private static Object parseTime(String value) {
+        try {
+            return parseTimeValue(value);
+        } catch (IllegalArgumentException ex) {
+            return value;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        final int current = objects != null ? objects.length : (longs != null ? longs.length : doubles.length);
+        if (capacity <= current) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, current * 2);
+        if (objects != null) {
+            objects = Arrays.copyOf(objects, newCapacity);
+            return;
+        }
+        if (longs != null) {
+            longs = Arrays.copyOf(longs, newCapacity);
+        }
+        if (ends != null) {
+            ends = Arrays.copyOf(ends, newCapacity);
+        }
+        if (times != null) {
+            times = Arrays.copyOf(times, newCapacity);
+        }
+        if (doubles != null) {
+            doubles = Arrays.copyOf(doubles, newCapacity);
+        }
+    }
+
+    private void toObjects() {
+        final int capacity = longs != null ? longs.length : doubles.length;
+        final Object[] converted = new Object[capacity];
+        for (int i = 0; i < size; i++) {
+            converted[i] = get(i);
+        }
+        objects = converted;
+        longs = null;
+        ends = null;
+        times = null;
+        doubles = null;
+        integers = null;
+    }
+
+    /**
+     * Trims the storage to the number of values in the column.
+     */
+    void trim() {
+        if (objects != null) {
+            objects = Arrays.copyOf(objects, size);
+        }
+        if (longs != null) {
+            longs = Arrays.copyOf(longs, size);
+        }
+        if (ends != null) {
+            ends = Arrays.copyOf(ends, size);
+        }
+        if (times != null) {
+            times = Arrays.copyOf(times, size);
+        }
+        if (doubles != null) {
+            doubles = Arrays.copyOf(doubles, size);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the value of the given row as an object. Numbers have the type the
+     * ObjectMapper would give them, times are the parsed TimeValues.
+     *
+     * @param row The row to get the value for.
+     * @return The value as an object.
+     */
+    Object get(int row) {
+        if (objects != null) {
+            return objects[row];
+        }
+        switch (kind) {
+            case LONG:
+                return longs[row];
+
+            case NUMBER:
+                return getNumber(row);
+
+            case TIME:
+                return times[row];
+
+            default:
+                return null;
+        }
+    }
+
+    private Number getNumber(int row) {
+        final double value = doubles[row];
+        if (integers.get(row)) {
+            final long longValue = (long) value;
+            if (!longInts && longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                return (int) longValue;
+            }
+            return longValue;
+        }
+        if (bigDecimals) {
+            return BigDecimal.valueOf(value);
+        }
+        return value;
+    }
+
+    /**
+     * The primitive long values of the column, or null if the column is not a
+     * LONG or TIME column, or contained values that did not fit. For TIME
+     * columns these are the (start) times in milliseconds since the epoch.
+     *
+     * @return The long values, or null.
+     */
+    long[] getLongs() {
+        return longs;
+    }
+
+    /**
+     * The end times of a TIME column in milliseconds since the epoch, equal to
+     * the start time for time instants.
+     *
+     * @return The end times, or null.
+     */
+    long[] getEnds() {
+        return ends;
+    }
+
+    double[] getDoubles() {
+        return doubles;
+    }
+
+    Object[] getObjects() {
+        if (objects != null) {
+            return objects;
+        }
+        final Object[] result = new Object[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+}
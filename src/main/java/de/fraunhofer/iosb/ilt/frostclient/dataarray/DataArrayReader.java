@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.dataarray;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses query responses in the dataArray format into columns, without
+ * creating an Entity for each Observation.
+ */
+public class DataArrayReader {
+
+    private static final String AT_IOT_COUNT = "@iot.count";
+    private static final String AT_IOT_NEXT_LINK = "@iot.nextLink";
+    private static final String AT_IOT_NAVIGATION_LINK = "@iot.navigationLink";
+    private static final String DATA_ARRAY = "dataArray";
+    private static final String DATA_ARRAY_COUNT = DATA_ARRAY + AT_IOT_COUNT;
+    /**
+     * The maximum initial size of the columns. The count sent by the server is
+     * only a hint, the columns grow when more rows arrive.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+
+    private final ObjectMapper mapper;
+
+    /**
+     * Create a new reader.
+     *
+     * @param mapper The mapper to use for parsing values that are not stored
+     * in primitive arrays, and for converting values when Entities are
+     * created.
+     */
+    public DataArrayReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Parse a dataArray response from the given stream. The stream is closed
+     * when parsing finishes.
+     *
+     * @param entityType The type of the Entities in the result.
+     * @param input The stream to read the JSON from.
+     * @return The parsed result.
+     * @throws IOException If reading or parsing fails.
+     */
+    public DataArrayResult read(EntityType entityType, InputStream input) throws IOException {
+        try (JsonParser parser = mapper.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object, found " + parser.currentToken());
+            }
+            long count = -1;
+            String nextLink = null;
+            List<DataArrayValue> values = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.currentName();
+                final JsonToken token = parser.nextToken();
+                if (AT_IOT_COUNT.equals(fieldName)) {
+                    count = parser.getLongValue();
+                } else if (AT_IOT_NEXT_LINK.equals(fieldName)) {
+                    nextLink = parser.getValueAsString();
+                } else if ("value".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        values.add(readValue(entityType, parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new DataArrayResult(entityType, values, count, nextLink);
+        }
+    }
+
+    private DataArrayValue readValue(EntityType entityType, JsonParser parser) throws IOException {
+        String navigationLink = null;
+        List<String> components = null;
+        List<DataArrayColumn> columns = new ArrayList<>();
+        int capacity = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.currentName();
+            final JsonToken token = parser.nextToken();
+            if (fieldName.endsWith(AT_IOT_NAVIGATION_LINK)) {
+                navigationLink = parser.getValueAsString();
+            } else if ("components".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                components = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                    components.add(parser.getText());
+                }
+            } else if (DATA_ARRAY_COUNT.equals(fieldName)) {
+                capacity = (int) Math.max(0, Math.min(parser.getLongValue(), MAX_INITIAL_CAPACITY));
+            } else if (DATA_ARRAY.equals(fieldName) && token == JsonToken.START_ARRAY) {
+                if (components == null) {
+                    throw new IOException("dataArray found before components.");
+                }
+                columns = createColumns(components, capacity, mapper.getDeserializationConfig());
+                readRows(parser, columns);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (columns.isEmpty() && components != null) {
+            columns = createColumns(components, 0, mapper.getDeserializationConfig());
+        }
+        for (DataArrayColumn column : columns) {
+            column.trim();
+        }
+        return new DataArrayValue(entityType, mapper, navigationLink, columns);
+    }
+
+    private static List<DataArrayColumn> createColumns(List<String> components, int capacity, DeserializationConfig config) {
+        final boolean bigDecimals = config.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        final boolean longInts = config.isEnabled(DeserializationFeature.USE_LONG_FOR_INTS);
+        List<DataArrayColumn> columns = new ArrayList<>(components.size());
+        for (String component : components) {
+            columns.add(new DataArrayColumn(component, kindFor(component), capacity, bigDecimals, longInts));
+        }
+        return columns;
+    }
+
+    private static DataArrayColumn.Kind kindFor(String component) {
+        switch (component) {
+            case DataArrayValue.COMPONENT_ID:
+                return DataArrayColumn.Kind.LONG;
+
+            case DataArrayValue.COMPONENT_PHENOMENON_TIME:
+                return DataArrayColumn.Kind.TIME;
+
+            case DataArrayValue.COMPONENT_RESULT:
+                return DataArrayColumn.Kind.NUMBER;
+
+            default:
+                return DataArrayColumn.Kind.OBJECT;
+        }
+    }
+
+    private static void readRows(JsonParser parser, List<DataArrayColumn> columns) throws IOException {
+        final int columnCount = columns.size();
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            int idx = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (idx < columnCount) {
+                    columns.get(idx).add(parser);
+                } else {
+                    parser.skipChildren();
+                }
+                idx++;
+            }
+            if (idx != columnCount) {
+                throw new IOException("Row has " + idx + " values, expected " + columnCount);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.dataarray;
+
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One page of a query result in the dataArray format. The page holds one
+ * {@link DataArrayValue} for each Datastream or MultiDatastream in the result.
+ * Iterating over the result creates the Observation Entities of the currently
+ * loaded page on demand.
+ */
+public class DataArrayResult implements Iterable<Entity> {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataArrayResult.class);
+
+    private final EntityType entityType;
+    private final List<DataArrayValue> values;
+    private final long count;
+    private final String nextLink;
+    private SensorThingsService service;
+
+    DataArrayResult(EntityType entityType, List<DataArrayValue> values, long count, String nextLink) {
+        this.entityType = entityType;
+        this.values = Collections.unmodifiableList(values);
+        this.count = count;
+        this.nextLink = nextLink;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * The values of this page, one for each Datastream or MultiDatastream.
+     *
+     * @return The values of this page.
+     */
+    public List<DataArrayValue> getValues() {
+        return values;
+    }
+
+    /**
+     * Get The total number of entities that exist on the server. Returns -1 if
+     * the count is not requested.
+     *
+     * @return The total number of entities that exist on the server.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The number of Observations in this page.
+     *
+     * @return The number of Observations in this page.
+     */
+    public int size() {
+        int size = 0;
+        for (DataArrayValue value : values) {
+            size += value.size();
+        }
+        return size;
+    }
+
+    public boolean hasNextLink() {
+        return !StringHelper.isNullOrEmpty(nextLink);
+    }
+
+    public String getNextLink() {
+        return nextLink;
+    }
+
+    /**
+     * Fetch the next page, by following the nextLink.
+     *
+     * @return The next page, or null if there is no nextLink.
+     * @throws ServiceFailureException If fetching the next page fails.
+     */
+    public DataArrayResult fetchNext() throws ServiceFailureException {
+        if (!hasNextLink()) {
+            return null;
+        }
+        HttpGet httpGet = new HttpGet(nextLink);
+        httpGet.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        LOGGER.debug("Fetching: {}", httpGet.getURI());
+        try (CloseableHttpResponse response = service.execute(httpGet)) {
+            Utils.throwIfNotOk(httpGet, response);
+            DataArrayResult next = new DataArrayReader(service.getJsonReader().getMapper())
+                    .read(entityType, response.getEntity().getContent());
+            next.setService(service);
+            return next;
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap("Failed to fetch dataArray result.", ex);
+        }
+    }
+
+    /**
+     * Returns an iterator that creates the Observation Entities of this page
+     * while iterating. Does not follow nextLinks.
+     *
+     * @return An iterator over the Observation Entities of this page.
+     */
+    @Override
+    public Iterator<Entity> iterator() {
+        return new Iterator<Entity>() {
+            private final Iterator<DataArrayValue> valueIterator = values.iterator();
+            private Iterator<Entity> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!valueIterator.hasNext()) {
+                        return false;
+                    }
+                    current = valueIterator.next().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Entity next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Sets the service, that is used to follow the nextLink and is set on the
+     * created Entities.
+     *
+     * @param service the service to set.
+     */
+    public void setService(SensorThingsService service) {
+        this.service = service;
+        for (DataArrayValue value : values) {
+            value.setService(service);
+        }
+    }
+
+}
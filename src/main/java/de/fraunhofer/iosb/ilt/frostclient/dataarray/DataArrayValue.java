@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.dataarray;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyAbstract;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Observations of one Datastream or MultiDatastream in a dataArray
+ * response, stored in columns. The id, phenomenonTime and numeric results are
+ * available as primitive arrays. Entities are only created when requested.
+ *
+ * Times in the primitive arrays have millisecond precision. The Entities and
+ * {@link #getColumn(java.lang.String)} return the times and results as they
+ * were parsed, with full precision and with the same types as in normal
+ * responses.
+ */
+public class DataArrayValue implements Iterable<Entity> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataArrayValue.class);
+
+    public static final String COMPONENT_ID = "id";
+    public static final String COMPONENT_PHENOMENON_TIME = "phenomenonTime";
+    public static final String COMPONENT_RESULT = "result";
+    public static final String COMPONENT_FOI_ID = "FeatureOfInterest/id";
+
+    private final EntityType entityType;
+    private final ObjectMapper mapper;
+    private final String navigationLink;
+    private final List<String> components;
+    private final List<DataArrayColumn> columns;
+    private final int size;
+    private SensorThingsService service;
+
+    DataArrayValue(EntityType entityType, ObjectMapper mapper, String navigationLink, List<DataArrayColumn> columns) {
+        this.entityType = entityType;
+        this.mapper = mapper;
+        this.navigationLink = navigationLink;
+        this.columns = columns;
+        List<String> names = new ArrayList<>(columns.size());
+        for (DataArrayColumn column : columns) {
+            names.add(column.getComponent());
+        }
+        this.components = Collections.unmodifiableList(names);
+        this.size = columns.isEmpty() ? 0 : columns.get(0).size();
+    }
+
+    /**
+     * The navigationLink to the Datastream or MultiDatastream of the
+     * Observations, as given by the server.
+     *
+     * @return The navigationLink to the Datastream or MultiDatastream.
+     */
+    public String getNavigationLink() {
+        return navigationLink;
+    }
+
+    /**
+     * The names of the components, in the order of the columns.
+     *
+     * @return The names of the components.
+     */
+    public List<String> getComponents() {
+        return components;
+    }
+
+    /**
+     * The number of Observations.
+     *
+     * @return The number of Observations.
+     */
+    public int size() {
+        return size;
+    }
+
+    private DataArrayColumn getColumnFor(String component) {
+        for (DataArrayColumn column : columns) {
+            if (column.getComponent().equals(component)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The ids of the Observations, or null if the ids were not requested or
+     * are not all integers.
+     *
+     * @return The ids of the Observations, or null.
+     */
+    public long[] getIds() {
+        final DataArrayColumn column = getColumnFor(COMPONENT_ID);
+        return column == null ? null : column.getLongs();
+    }
+
+    /**
+     * The phenomenonTimes, or the start of the phenomenonTimes for intervals,
+     * in milliseconds since the epoch. Null if the phenomenonTimes were not
+     * requested or could not all be parsed.
+     *
+     * @return The (start of the) phenomenonTimes, or null.
+     */
+    public long[] getPhenomenonTimes() {
+        final DataArrayColumn column = getColumnFor(COMPONENT_PHENOMENON_TIME);
+        return column == null ? null : column.getLongs();
+    }
+
+    /**
+     * The end of the phenomenonTimes in milliseconds since the epoch. For time
+     * instants, this is the same as the start. Null if the phenomenonTimes
+     * were not requested or could not all be parsed.
+     *
+     * @return The end of the phenomenonTimes, or null.
+     */
+    public long[] getPhenomenonTimeEnds() {
+        final DataArrayColumn column = getColumnFor(COMPONENT_PHENOMENON_TIME);
+        return column == null ? null : column.getEnds();
+    }
+
+    /**
+     * The numeric results, or null if the results were not requested, or not
+     * all results are numbers that a double can hold exactly. In the latter
+     * case, use {@link #getColumn(java.lang.String)}.
+     *
+     * @return The numeric results, or null.
+     */
+    public double[] getResults() {
+        final DataArrayColumn column = getColumnFor(COMPONENT_RESULT);
+        return column == null ? null : column.getDoubles();
+    }
+
+    /**
+     * The values of the given component as objects. Values stored in
+     * primitive arrays are boxed.
+     *
+     * @param component The name of the component.
+     * @return The values of the given component, or null if the component is
+     * not present.
+     */
+    public Object[] getColumn(String component) {
+        final DataArrayColumn column = getColumnFor(component);
+        return column == null ? null : column.getObjects();
+    }
+
+    /**
+     * Create an Observation Entity for the given row.
+     *
+     * @param row The row to create the Entity for.
+     * @return The Observation Entity for the given row.
+     */
+    public Entity getEntity(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " not in [0, " + size + ")");
+        }
+        final Entity entity = new Entity(entityType);
+        for (DataArrayColumn column : columns) {
+            setValue(entity, column.getComponent(), column.get(row));
+        }
+        if (service != null) {
+            entity.setService(service);
+        }
+        return entity;
+    }
+
+    private void setValue(Entity entity, String component, Object value) {
+        if (COMPONENT_ID.equals(component)) {
+            entity.setPrimaryKeyValues(value);
+            return;
+        }
+        if (COMPONENT_FOI_ID.equals(component)) {
+            final NavigationPropertyAbstract np = entityType.getNavigationProperty(component.substring(0, component.indexOf('/')));
+            if (np != null && value != null) {
+                final Entity foi = new Entity(np.getEntityType()).setPrimaryKeyValues(value);
+                if (service != null) {
+                    foi.setService(service);
+                }
+                entity.setProperty(np, foi);
+            }
+            return;
+        }
+        final EntityPropertyMain property = entityType.getEntityProperty(component);
+        if (property != null) {
+            entity.setProperty(property, convert(property, value));
+        }
+    }
+
+    private Object convert(EntityPropertyMain property, Object value) {
+        if (value == null || COMPONENT_RESULT.equals(property.getName())) {
+            return value;
+        }
+        final TypeReference[] typeRefs = property.getType().getTypeReference();
+        if (typeRefs == null || typeRefs.length == 0) {
+            return value;
+        }
+        // Like the EntityDeserializer: Strings use the String type, if there
+        // is one, other values the first type that is not String.
+        TypeReference selected = null;
+        for (TypeReference typeRef : typeRefs) {
+            final boolean isString = String.class.equals(TypeFactory.rawClass(typeRef.getType()));
+            if (isString == (value instanceof String)) {
+                selected = typeRef;
+                break;
+            }
+        }
+        if (selected == null) {
+            selected = typeRefs[0];
+        }
+        try {
+            return mapper.convertValue(value, selected);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.debug("Failed to convert value of {}, using it as is.", property.getName());
+            return value;
+        }
+    }
+
+    /**
+     * Creates Entities for all rows.
+     *
+     * @return The Observation Entities for all rows.
+     */
+    public List<Entity> toEntities() {
+        final List<Entity> result = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            result.add(getEntity(row));
+        }
+        return result;
+    }
+
+    /**
+     * Returns an iterator that creates the Observation Entities while
+     * iterating.
+     *
+     * @return An iterator over Observation Entities.
+     */
+    @Override
+    public Iterator<Entity> iterator() {
+        return new Iterator<Entity>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public Entity next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getEntity(row++);
+            }
+        };
+    }
+
+    void setService(SensorThingsService service) {
+        this.service = service;
+    }
+
+}
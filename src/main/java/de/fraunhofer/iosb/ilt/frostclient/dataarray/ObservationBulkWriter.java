@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.dataarray;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyAbstract;
+import de.fraunhofer.iosb.ilt.frostclient.utils.ParserUtils;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates Observations in bulk, using the dataArray extension of the
+ * SensorThings API (POST to CreateObservations). Observations are grouped by
+ * their Datastream or MultiDatastream, and by the set of properties they have
+ * a value for. Each Observation is sent as a row of values, instead of as a
+ * full JSON object. Because the properties are the same for all rows of a
+ * group, no null cells are sent for properties an Observation does not have.
+ *
+ * Each Observation must link to a Datastream or MultiDatastream that has a
+ * primary key. The FeatureOfInterest, if set, must also have a primary key.
+ */
+public class ObservationBulkWriter {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObservationBulkWriter.class);
+
+    public static final String PATH_CREATE_OBSERVATIONS = "CreateObservations";
+    public static final String NAME_DATASTREAM = "Datastream";
+    public static final String NAME_MULTI_DATASTREAM = "MultiDatastream";
+    public static final String NAME_FEATURE_OF_INTEREST = "FeatureOfInterest";
+    public static final String COMPONENT_ID = "id";
+    public static final String COMPONENT_FOI_ID = "FeatureOfInterest/id";
+    /**
+     * The Observation properties that can be sent as components.
+     */
+    private static final List<String> COMPONENT_PROPERTIES = Arrays.asList(
+            "phenomenonTime",
+            "result",
+            "resultTime",
+            "resultQuality",
+            "validTime",
+            "parameters");
+
+    private final SensorThingsService service;
+    private final Map<GroupKey, List<Entity>> groups = new LinkedHashMap<>();
+    private int size = 0;
+
+    public ObservationBulkWriter(SensorThingsService service) {
+        this.service = service;
+    }
+
+    /**
+     * Add an Observation to be created with the next {@link #send()}.
+     *
+     * @param observation The Observation to add.
+     * @return this ObservationBulkWriter.
+     */
+    public ObservationBulkWriter add(Entity observation) {
+        final EntityType type = observation.getEntityType();
+        Entity parent = getLinked(observation, NAME_DATASTREAM);
+        String parentName = NAME_DATASTREAM;
+        if (parent == null) {
+            parent = getLinked(observation, NAME_MULTI_DATASTREAM);
+            parentName = NAME_MULTI_DATASTREAM;
+        }
+        if (parent == null) {
+            throw new IllegalArgumentException("Observation must have a Datastream or MultiDatastream.");
+        }
+        final Object parentId = getPkValue(parent);
+        if (parentId == null) {
+            throw new IllegalArgumentException("The " + parentName + " of the Observation must have a primary key.");
+        }
+        final GroupKey key = new GroupKey(type, parentName, parent.getPrimaryKey().getKeyProperties().get(0).getName(), parentId, getComponents(observation));
+        groups.computeIfAbsent(key, t -> new ArrayList<>())
+                .add(observation);
+        size++;
+        return this;
+    }
+
+    /**
+     * Add Observations to be created with the next {@link #send()}.
+     *
+     * @param observations The Observations to add.
+     * @return this ObservationBulkWriter.
+     */
+    public ObservationBulkWriter addAll(Iterable<Entity> observations) {
+        for (Entity observation : observations) {
+            add(observation);
+        }
+        return this;
+    }
+
+    /**
+     * The number of Observations waiting to be sent.
+     *
+     * @return The number of Observations waiting to be sent.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Send all added Observations to the server. Created Observations get the
+     * primary key assigned by the server, and are linked to the service.
+     * Observations that the server failed to create are returned. After
+     * sending, the writer is empty and can be re-used.
+     *
+     * If the request as a whole fails, or its response can not be read, all
+     * Observations stay in the writer, so that send can be called again. If
+     * the failure happened after the server handled the request, some of the
+     * Observations may already have been created.
+     *
+     * @return The Observations that the server failed to create.
+     * @throws ServiceFailureException If the request as a whole fails.
+     */
+    public List<Entity> send() throws ServiceFailureException {
+        final List<Entity> failed = new ArrayList<>();
+        if (size == 0) {
+            return failed;
+        }
+        final List<Entity> ordered = new ArrayList<>(size);
+        HttpPost httpPost;
+        try {
+            httpPost = new HttpPost(service.getEndpoint().toURI().resolve(PATH_CREATE_OBSERVATIONS));
+            httpPost.setEntity(new ByteArrayEntity(writeGroups(ordered), ContentType.APPLICATION_JSON));
+        } catch (URISyntaxException | IOException ex) {
+            throw new ServiceFailureException("Failed to serialise Observations.", ex);
+        }
+        httpPost.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        LOGGER.debug("Posting {} Observations in {} groups to: {}", size, groups.size(), httpPost.getURI());
+
+        try (CloseableHttpResponse response = service.execute(httpPost)) {
+            Utils.throwIfNotOk(httpPost, response);
+            final JsonNode result = readResult(response.getEntity().getContent());
+            groups.clear();
+            size = 0;
+            applyResults(result, ordered, failed);
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap("Failed to create Observations.", ex);
+        }
+        return failed;
+    }
+
+    private byte[] writeGroups(List<Entity> ordered) throws IOException {
+        final ObjectMapper mapper = JsonWriter.getObjectMapper();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            gen.writeStartArray();
+            for (Map.Entry<GroupKey, List<Entity>> entry : groups.entrySet()) {
+                writeGroup(gen, entry.getKey(), entry.getValue());
+                ordered.addAll(entry.getValue());
+            }
+            gen.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+
+    private void writeGroup(JsonGenerator gen, GroupKey key, List<Entity> observations) throws IOException {
+        gen.writeStartObject();
+        gen.writeObjectFieldStart(key.parentName);
+        gen.writeObjectField(key.parentPkName, key.parentId);
+        gen.writeEndObject();
+
+        gen.writeArrayFieldStart("components");
+        for (String component : key.components) {
+            gen.writeString(component);
+        }
+        gen.writeEndArray();
+
+        gen.writeNumberField("dataArray@iot.count", observations.size());
+        gen.writeArrayFieldStart("dataArray");
+        for (Entity observation : observations) {
+            gen.writeStartArray();
+            for (String component : key.components) {
+                gen.writeObject(getComponentValue(observation, component));
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * The names of the components the given Observation has a value for, in
+     * the order they are sent in.
+     */
+    private static List<String> getComponents(Entity observation) {
+        final EntityType type = observation.getEntityType();
+        final List<String> components = new ArrayList<>();
+        if (getPkValue(observation) != null) {
+            components.add(COMPONENT_ID);
+        }
+        for (String name : COMPONENT_PROPERTIES) {
+            final EntityPropertyMain property = type.getEntityProperty(name);
+            if (property != null && observation.getProperty(property) != null) {
+                components.add(name);
+            }
+        }
+        if (getLinked(observation, NAME_FEATURE_OF_INTEREST) != null) {
+            components.add(COMPONENT_FOI_ID);
+        }
+        return components;
+    }
+
+    private static Object getComponentValue(Entity observation, String component) {
+        switch (component) {
+            case COMPONENT_ID:
+                return getPkValue(observation);
+            case COMPONENT_FOI_ID:
+                return getPkValue(getLinked(observation, NAME_FEATURE_OF_INTEREST));
+            default:
+                return observation.getProperty(observation.getEntityType().getEntityProperty(component));
+        }
+    }
+
+    private JsonNode readResult(InputStream content) throws IOException {
+        final JsonNode result;
+        try (InputStream input = content) {
+            result = service.getJsonReader().getMapper().readTree(input);
+        }
+        if (result == null || !result.isArray()) {
+            throw new IOException("CreateObservations response is not an array.");
+        }
+        return result;
+    }
+
+    private void applyResults(JsonNode result, List<Entity> ordered, List<Entity> failed) {
+        if (result.size() != ordered.size()) {
+            LOGGER.warn("Server returned {} results for {} Observations.", result.size(), ordered.size());
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            final Entity observation = ordered.get(i);
+            final String selfLink = result.path(i).asText(null);
+            if (selfLink == null || selfLink.startsWith("error") || selfLink.indexOf('(') < 0) {
+                LOGGER.debug("Failed to create Observation {}: {}", i, selfLink);
+                failed.add(observation);
+                continue;
+            }
+            observation.setPrimaryKeyValues(ParserUtils.pkFromLocation(selfLink));
+            observation.setService(service);
+        }
+    }
+
+    private static Entity getLinked(Entity observation, String navPropertyName) {
+        final NavigationPropertyAbstract np = observation.getEntityType().getNavigationProperty(navPropertyName);
+        if (np == null || np.isEntitySet()) {
+            return null;
+        }
+        return (Entity) observation.getProperty(np, false);
+    }
+
+    private static Object getPkValue(Entity entity) {
+        if (entity == null) {
+            return null;
+        }
+        final Object[] pkValues = entity.getPrimaryKeyValues();
+        return pkValues.length == 0 ? null : pkValues[0];
+    }
+
+    private static class GroupKey {
+
+        final EntityType entityType;
+        final String parentName;
+        final String parentPkName;
+        final Object parentId;
+        final List<String> components;
+
+        GroupKey(EntityType entityType, String parentName, String parentPkName, Object parentId, List<String> components) {
+            this.entityType = entityType;
+            this.parentName = parentName;
+            this.parentPkName = parentPkName;
+            this.parentId = parentId;
+            this.components = components;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entityType, parentName, parentId, components);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final GroupKey other = (GroupKey) obj;
+            return Objects.equals(entityType, other.entityType)
+                    && Objects.equals(parentName, other.parentName)
+                    && Objects.equals(parentId, other.parentId)
+                    && Objects.equals(components, other.components);
+        }
+
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.exception;
+
+import java.io.IOException;
+
+/**
+ * The IOException thrown by the execute methods of the SensorThingsService
+ * when a request is rejected before it is sent. The cause is a
+ * {@link ServiceUnavailableException} with the reason of the rejection.
+ */
+public class RequestRejectedException extends IOException {
+
+    private static final long serialVersionUID = -3120998567219376404L;
+
+    public RequestRejectedException(ServiceUnavailableException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized ServiceUnavailableException getCause() {
+        return (ServiceUnavailableException) super.getCause();
+    }
+
+    /**
+     * The reason the request was rejected.
+     *
+     * @return The reason the request was rejected.
+     */
+    public ServiceUnavailableException.Reason getReason() {
+        return getCause().getReason();
+    }
+
+}
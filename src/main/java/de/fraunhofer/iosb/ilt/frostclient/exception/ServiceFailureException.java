@@ -22,6 +22,8 @@
  */
 package de.fraunhofer.iosb.ilt.frostclient.exception;
 
+import java.io.IOException;
+
 /**
  * An error for failed operations of a SensorThings service.
  */
@@ -41,4 +43,35 @@ public class ServiceFailureException extends Exception {
         super(message, cause);
     }
 
+    /**
+     * Wraps an IOException from executing a request, see
+     * {@link #wrap(String, IOException)}.
+     *
+     * @param cause The IOException to wrap.
+     * @return The exception to throw.
+     */
+    public static ServiceFailureException wrap(IOException cause) {
+        if (cause instanceof RequestRejectedException rejected) {
+            return rejected.getCause();
+        }
+        return new ServiceFailureException(cause);
+    }
+
+    /**
+     * Wraps an IOException from executing a request. If the request was
+     * rejected by the client-side protection of the service, the
+     * {@link ServiceUnavailableException} describing the rejection is
+     * returned, so callers can tell these fast failures apart.
+     *
+     * @param message The message for the new exception.
+     * @param cause The IOException to wrap.
+     * @return The exception to throw.
+     */
+    public static ServiceFailureException wrap(String message, IOException cause) {
+        if (cause instanceof RequestRejectedException rejected) {
+            return rejected.getCause();
+        }
+        return new ServiceFailureException(message, cause);
+    }
+
 }
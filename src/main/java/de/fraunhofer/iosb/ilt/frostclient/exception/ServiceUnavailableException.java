@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.exception;
+
+/**
+ * The exception that is thrown when a request is not sent to the service,
+ * because the client-side protection of the service rejected it. These
+ * failures are immediate, the request did not reach the server.
+ */
+public class ServiceUnavailableException extends ServiceFailureException {
+
+    private static final long serialVersionUID = 4710276384563012745L;
+
+    /**
+     * The reasons a request can be rejected for.
+     */
+    public enum Reason {
+        /**
+         * The circuit breaker of the service is open, because too many recent
+         * requests failed or were too slow.
+         */
+        CIRCUIT_OPEN,
+        /**
+         * The maximum number of concurrent requests to the service is reached.
+         */
+        BULKHEAD_FULL,
+        /**
+         * The request would have to wait too long for the rate limit of the
+         * service.
+         */
+        RATE_LIMITED,
+        /**
+         * Too many requests are waiting for the adaptive concurrency limit of
+         * the service.
+         */
+        CONCURRENCY_LIMITED
+    }
+
+    private final Reason reason;
+
+    public ServiceUnavailableException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * The reason the request was rejected.
+     *
+     * @return The reason the request was rejected.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+}
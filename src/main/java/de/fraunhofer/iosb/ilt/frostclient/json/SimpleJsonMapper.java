@@ -31,7 +31,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class SimpleJsonMapper {
 
-    private static ObjectMapper simpleObjectMapper;
+    private static volatile ObjectMapper simpleObjectMapper;
 
     private SimpleJsonMapper() {
         // Utility class.
@@ -43,6 +43,14 @@ public class SimpleJsonMapper {
      * @return an ObjectMapper for generic, non-STA use.
      */
     public static ObjectMapper getSimpleObjectMapper() {
+        ObjectMapper result = simpleObjectMapper;
+        if (result == null) {
+            result = initSimpleObjectMapper();
+        }
+        return result;
+    }
+
+    private static synchronized ObjectMapper initSimpleObjectMapper() {
         if (simpleObjectMapper == null) {
             simpleObjectMapper = new ObjectMapper()
                     .setSerializationInclusion(JsonInclude.Include.ALWAYS)
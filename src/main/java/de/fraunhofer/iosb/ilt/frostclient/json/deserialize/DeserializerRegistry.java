@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.json.deserialize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.ModelRegistry;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The ObjectMapper and deserializers for one ModelRegistry. Instances are
+ * created once per ModelRegistry, see {@link ModelRegistry#getDeserializers()},
+ * and are immutable after creation, so they can be shared between threads
+ * without locking.
+ */
+public final class DeserializerRegistry {
+
+    private final ModelRegistry modelRegistry;
+    private final Map<EntityType, EntityDeserializer> entityDeserializers;
+    private final Map<EntityType, EntitySetDeserializer> entitySetDeserializers;
+    private final ObjectMapper mapper;
+
+    /**
+     * Create the deserializers for all EntityTypes in the given, initialised
+     * ModelRegistry.
+     *
+     * @param modelRegistry The ModelRegistry to create the deserializers for.
+     */
+    public DeserializerRegistry(ModelRegistry modelRegistry) {
+        this.modelRegistry = modelRegistry;
+        final Map<EntityType, EntityDeserializer> entityDesers = new HashMap<>();
+        final Map<EntityType, EntitySetDeserializer> setDesers = new HashMap<>();
+        for (EntityType entityType : modelRegistry.getEntityTypes()) {
+            entityDesers.put(entityType, new EntityDeserializer(modelRegistry, entityType));
+            setDesers.put(entityType, new EntitySetDeserializer(modelRegistry, entityType));
+        }
+        this.entityDeserializers = Collections.unmodifiableMap(entityDesers);
+        this.entitySetDeserializers = Collections.unmodifiableMap(setDesers);
+        this.mapper = JsonReader.createObjectMapper();
+    }
+
+    /**
+     * The ObjectMapper to use for reading JSON for the ModelRegistry.
+     *
+     * @return The ObjectMapper for the ModelRegistry.
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Get the deserializer for Entities of the given type. For types that were
+     * registered after this DeserializerRegistry was created a new, uncached
+     * deserializer is returned.
+     *
+     * @param entityType The type to get the deserializer for.
+     * @return the deserializer for the given type.
+     */
+    public EntityDeserializer getEntityDeserializer(EntityType entityType) {
+        final EntityDeserializer deserializer = entityDeserializers.get(entityType);
+        if (deserializer == null) {
+            return new EntityDeserializer(modelRegistry, entityType);
+        }
+        return deserializer;
+    }
+
+    /**
+     * Get the deserializer for EntitySets of the given type. For types that
+     * were registered after this DeserializerRegistry was created a new,
+     * uncached deserializer is returned.
+     *
+     * @param entityType The type to get the deserializer for.
+     * @return the deserializer for the given type.
+     */
+    public EntitySetDeserializer getEntitySetDeserializer(EntityType entityType) {
+        final EntitySetDeserializer deserializer = entitySetDeserializers.get(entityType);
+        if (deserializer == null) {
+            return new EntitySetDeserializer(modelRegistry, entityType);
+        }
+        return deserializer;
+    }
+
+}
@@ -24,13 +24,17 @@ package de.fraunhofer.iosb.ilt.frostclient.json.deserialize;
 
 import static de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper.isNullOrEmpty;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntitySetImpl;
@@ -40,6 +44,7 @@ import de.fraunhofer.iosb.ilt.frostclient.model.Property;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationProperty;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntitySet;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -50,15 +55,24 @@ import java.util.Set;
  */
 public class EntityDeserializer extends JsonDeserializer<Entity> {
 
-    private static final Map<ModelRegistry, Map<EntityType, EntityDeserializer>> instancePerModelAndType = new HashMap<>();
+    /**
+     * The deserialisation attribute that, when set to Boolean.TRUE, makes the
+     * deserializer keep the raw JSON of fields that are not in the data model.
+     * By default these fields are skipped.
+     */
+    public static final String ATTR_COLLECT_UNKNOWN_FIELDS = "frostClient.collectUnknownFields";
 
+    private static final JsonFactory RAW_FACTORY = new JsonFactory();
+
+    /**
+     * Get the shared instance for the given ModelRegistry and EntityType.
+     *
+     * @param modelRegistry The ModelRegistry the EntityType belongs to.
+     * @param entityType The EntityType to get the deserializer for.
+     * @return The deserializer.
+     */
     public static EntityDeserializer getInstance(final ModelRegistry modelRegistry, final EntityType entityType) {
-        return instancePerModelAndType
-                .computeIfAbsent(
-                        modelRegistry,
-                        t -> new HashMap<>())
-                .computeIfAbsent(entityType,
-                        t -> new EntityDeserializer(modelRegistry, t));
+        return modelRegistry.getDeserializers().getEntityDeserializer(entityType);
     }
 
     private final EntityType entityType;
@@ -115,27 +129,33 @@ public class EntityDeserializer extends JsonDeserializer<Entity> {
         while (currentToken == JsonToken.FIELD_NAME) {
             String fieldName = parser.getCurrentName();
             parser.nextValue();
-            if (fieldName.endsWith("@iot.count")) {
+            PropertyData propertyData = propertyByName.get(fieldName);
+            if (propertyData != null) {
+                deserializeProperty(parser, ctxt, result, propertyData);
+            } else if (fieldName.endsWith("@iot.count")) {
                 deserialiseEntitySetCount(parser, fieldName, result);
             } else if (fieldName.endsWith("@iot.nextLink")) {
                 deserialiseEntitySetNextLink(parser, fieldName, result);
+            } else if (failOnUnknown) {
+                final String message = "Unknown field: " + fieldName + " on " + entityType.entityName + " expected one of: " + propertyByName.keySet();
+                throw new UnrecognizedPropertyException(parser, message, parser.getCurrentLocation(), Entity.class, fieldName, null);
+            } else if (Boolean.TRUE.equals(ctxt.getAttribute(ATTR_COLLECT_UNKNOWN_FIELDS))) {
+                result.setUnknownField(fieldName, readRaw(parser));
             } else {
-                PropertyData propertyData = propertyByName.get(fieldName);
-                if (propertyData == null) {
-                    if (failOnUnknown) {
-                        final String message = "Unknown field: " + fieldName + " on " + entityType.entityName + " expected one of: " + propertyByName.keySet();
-                        throw new UnrecognizedPropertyException(parser, message, parser.getCurrentLocation(), Entity.class, fieldName, null);
-                    } else {
-                        parser.readValueAsTree();
-                    }
-                } else {
-                    deserializeProperty(parser, ctxt, result, propertyData);
-                }
+                parser.skipChildren();
             }
             currentToken = parser.nextToken();
         }
 
-        return result;
+        return result.markLoaded();
+    }
+
+    private static RawJson readRaw(JsonParser parser) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        try (JsonGenerator gen = RAW_FACTORY.createGenerator(out)) {
+            gen.copyCurrentStructure(parser);
+        }
+        return new RawJson(out.toByteArray());
     }
 
     private void deserializeProperty(JsonParser parser, DeserializationContext ctxt, Entity result, PropertyData propertyData) throws IOException {
@@ -160,23 +180,17 @@ public class EntityDeserializer extends JsonDeserializer<Entity> {
 
     private void deserializeEntityProperty(JsonParser parser, DeserializationContext ctxt, PropertyData propertyData, Entity result) throws IOException {
         EntityPropertyMain entityPropertyMain = (EntityPropertyMain) propertyData.property;
-        if (isNullOrEmpty(propertyData.valueTypeRef)) {
-            Object value = parser.readValueAs(Object.class);
-            result.setProperty(entityPropertyMain, value);
-        } else {
-            int idx = 0;
-            Exception last = null;
-            while (idx < propertyData.valueTypeRef.length) {
-                try {
-                    Object value = parser.readValueAs(propertyData.valueTypeRef[idx]);
-                    result.setProperty(entityPropertyMain, value);
-                    return;
-                } catch (IOException | RuntimeException ex) {
-                    last = ex;
-                    idx++;
-                }
+        final JsonDeserializer<Object> deserializer = propertyData.getDeserializer(parser.currentToken(), ctxt);
+        try {
+            final Object value;
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                value = deserializer.getNullValue(ctxt);
+            } else {
+                value = deserializer.deserialize(parser, ctxt);
             }
-            throw new IllegalArgumentException("Failed to parse content for property " + propertyData.property.getName(), last);
+            result.setProperty(entityPropertyMain, value);
+        } catch (IOException | RuntimeException ex) {
+            throw new IllegalArgumentException("Failed to parse content for property " + propertyData.property.getName(), ex);
         }
     }
 
@@ -227,14 +241,66 @@ public class EntityDeserializer extends JsonDeserializer<Entity> {
 
     private static class PropertyData {
 
+        private static final TypeReference[] TYPE_REFS_OBJECT = {new TypeReference<Object>() {
+        }};
+
         final Property property;
         final TypeReference[] valueTypeRef;
         final boolean isEntitySet;
+        /**
+         * The index in valueTypeRef of the type to use for JSON String values.
+         */
+        final int stringTypeIdx;
+        /**
+         * The index in valueTypeRef of the type to use for all other values.
+         */
+        final int otherTypeIdx;
+        /**
+         * The deserializers for the types in valueTypeRef, resolved on first
+         * use.
+         */
+        private volatile JsonDeserializer<Object>[] deserializers;
 
         public PropertyData(Property property, boolean isEntitySet, TypeReference... valueTypeRef) {
             this.property = property;
-            this.valueTypeRef = valueTypeRef;
+            this.valueTypeRef = isNullOrEmpty(valueTypeRef) ? TYPE_REFS_OBJECT : valueTypeRef;
             this.isEntitySet = isEntitySet;
+            int stringIdx = -1;
+            int otherIdx = -1;
+            for (int idx = 0; idx < this.valueTypeRef.length; idx++) {
+                if (String.class.equals(TypeFactory.rawClass(this.valueTypeRef[idx].getType()))) {
+                    stringIdx = stringIdx < 0 ? idx : stringIdx;
+                } else {
+                    otherIdx = otherIdx < 0 ? idx : otherIdx;
+                }
+            }
+            this.stringTypeIdx = stringIdx < 0 ? 0 : stringIdx;
+            this.otherTypeIdx = otherIdx < 0 ? 0 : otherIdx;
+        }
+
+        /**
+         * Get the deserializer to use for the value starting at the given
+         * token. When a property has several types, JSON Strings are read
+         * using the String type, if there is one, and other values using the
+         * first type that is not String.
+         */
+        JsonDeserializer<Object> getDeserializer(JsonToken token, DeserializationContext ctxt) throws IOException {
+            JsonDeserializer<Object>[] resolved = deserializers;
+            if (resolved == null) {
+                resolved = resolveDeserializers(ctxt);
+                deserializers = resolved;
+            }
+            return resolved[token == JsonToken.VALUE_STRING ? stringTypeIdx : otherTypeIdx];
+        }
+
+        @SuppressWarnings("unchecked")
+        private JsonDeserializer<Object>[] resolveDeserializers(DeserializationContext ctxt) throws IOException {
+            final JsonDeserializer<Object>[] resolved = new JsonDeserializer[valueTypeRef.length];
+            for (int idx = 0; idx < valueTypeRef.length; idx++) {
+                final JavaType javaType = ctxt.getTypeFactory().constructType(valueTypeRef[idx]);
+                resolved[idx] = ctxt.findRootValueDeserializer(javaType);
+            }
+            return resolved;
         }
 
     }
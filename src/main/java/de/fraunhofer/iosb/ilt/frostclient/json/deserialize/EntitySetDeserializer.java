@@ -33,23 +33,21 @@ import de.fraunhofer.iosb.ilt.frostclient.model.EntitySetImpl;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostclient.model.ModelRegistry;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Deserialises top-level entity sets. Nested sets are handled separately.
  */
 public class EntitySetDeserializer extends JsonDeserializer<EntitySet> {
 
-    private static final Map<ModelRegistry, Map<EntityType, EntitySetDeserializer>> instancePerModelAndType = new HashMap<>();
-
+    /**
+     * Get the shared instance for the given ModelRegistry and EntityType.
+     *
+     * @param modelRegistry The ModelRegistry the EntityType belongs to.
+     * @param entityType The EntityType to get the deserializer for.
+     * @return The deserializer.
+     */
     public static EntitySetDeserializer getInstance(final ModelRegistry modelRegistry, final EntityType entityType) {
-        return instancePerModelAndType
-                .computeIfAbsent(
-                        modelRegistry,
-                        t -> new HashMap<>())
-                .computeIfAbsent(entityType,
-                        t -> new EntitySetDeserializer(modelRegistry, t));
+        return modelRegistry.getDeserializers().getEntitySetDeserializer(entityType);
     }
 
     private final EntityType entityType;
@@ -95,6 +93,8 @@ public class EntitySetDeserializer extends JsonDeserializer<EntitySet> {
             } else if (failOnUnknown) {
                 final String message = "Unknown field: " + fieldName + " on " + entityType.entityName + " set.";
                 throw new UnrecognizedPropertyException(parser, message, parser.getCurrentLocation(), EntitySet.class, fieldName, null);
+            } else {
+                parser.skipChildren();
             }
             currentToken = parser.nextToken();
         }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.json.deserialize;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the Entities of an EntitySet response one at a time, instead of
+ * building the entire page in memory before returning it.
+ */
+public class EntitySetStreamReader implements Closeable {
+
+    private final JsonParser parser;
+    private final DeserializationContext ctxt;
+    private final EntityDeserializer entityDeserializer;
+    private long count = -1;
+    private String nextLink;
+    private boolean inValue;
+
+    EntitySetStreamReader(JsonParser parser, DeserializationContext ctxt, EntityDeserializer entityDeserializer) throws IOException {
+        this.parser = parser;
+        this.ctxt = ctxt;
+        this.entityDeserializer = entityDeserializer;
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected an EntitySet object, found " + parser.currentToken());
+        }
+        readFields();
+    }
+
+    /**
+     * Reads the next Entity from the stream.
+     *
+     * @return the next Entity, or null if there are no more Entities.
+     * @throws IOException If reading or parsing fails.
+     */
+    public Entity next() throws IOException {
+        while (inValue) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                return entityDeserializer.deserialize(parser, ctxt);
+            }
+            if (token == JsonToken.END_ARRAY) {
+                inValue = false;
+                readFields();
+            } else if (token == null) {
+                inValue = false;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads fields until the start of the value array, or the end of the
+     * object.
+     */
+    private void readFields() throws IOException {
+        JsonToken currentToken = parser.nextToken();
+        while (currentToken == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextValue();
+            if (fieldName.endsWith("count")) {
+                count = parser.getValueAsLong(-1);
+            } else if (fieldName.endsWith("nextLink")) {
+                nextLink = parser.getValueAsString();
+            } else if ("value".equals(fieldName) && parser.currentToken() == JsonToken.START_ARRAY) {
+                inValue = true;
+                return;
+            } else {
+                parser.skipChildren();
+            }
+            currentToken = parser.nextToken();
+        }
+    }
+
+    /**
+     * The count of the EntitySet, if it has been read. Servers can send the
+     * count after the value array, so it is only guaranteed to be available
+     * after {@link #next()} returned null.
+     *
+     * @return The count, or -1 if no count was (yet) read.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The nextLink of the EntitySet, if it has been read. Servers can send
+     * the nextLink after the value array, so it is only guaranteed to be
+     * available after {@link #next()} returned null.
+     *
+     * @return The nextLink, or null if no nextLink was (yet) read.
+     */
+    public String getNextLink() {
+        return nextLink;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+}
@@ -43,9 +43,8 @@ import de.fraunhofer.iosb.ilt.swe.common.AbstractDataComponent;
 import de.fraunhofer.iosb.ilt.swe.common.AbstractSWEIdentifiable;
 import de.fraunhofer.iosb.ilt.swe.common.constraint.AbstractConstraint;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Allows parsing of STA entities from JSON.
@@ -53,30 +52,12 @@ import java.util.Map;
 public class JsonReader {
 
     /**
-     * The mappers to use for normal users.
-     */
-    private static final Map<ModelRegistry, ObjectMapper> mappers = new HashMap<>();
-
-    /**
-     * Get an object mapper for the given id Class. If the id class is the same
-     * as for the first call, the cached mapper is returned.
-     *
-     * @param modelRegistry The modelRegistry holding the data model to get a
-     * mapper for.
-     * @return The cached or created object mapper.
-     */
-    private static ObjectMapper getObjectMapper(ModelRegistry modelRegistry) {
-        return mappers.computeIfAbsent(modelRegistry, mr -> createObjectMapper(mr));
-    }
-
-    /**
-     * Create a new object mapper for the given model Registry.
+     * Create a new object mapper. Mappers are cached per ModelRegistry in the
+     * {@link DeserializerRegistry} of the ModelRegistry.
      *
-     * @param modelRegistry The modelRegistry holding the data model to create a
-     * mapper for.
      * @return The created object mapper.
      */
-    private static ObjectMapper createObjectMapper(ModelRegistry modelRegistry) {
+    static ObjectMapper createObjectMapper() {
         ObjectMapper mapper = new ObjectMapper()
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
                 .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
@@ -87,9 +68,6 @@ public class JsonReader {
 
         SimpleModule module = new SimpleModule();
         module.addAbstractTypeMapping(EntitySet.class, EntitySetImpl.class);
-        for (EntityType entityType : modelRegistry.getEntityTypes()) {
-            EntityDeserializer.getInstance(modelRegistry, entityType);
-        }
         module.addDeserializer(TimeInstant.class, new TimeInstantDeserializer());
         module.addDeserializer(TimeInterval.class, new TimeIntervalDeserializer());
         module.addDeserializer(TimeValue.class, new TimeValueDeserializer());
@@ -103,6 +81,7 @@ public class JsonReader {
      */
     private final ObjectMapper mapper;
     private final ModelRegistry modelRegistry;
+    private boolean collectUnknownFields;
 
     /**
      * Create a JsonReader.
@@ -111,13 +90,31 @@ public class JsonReader {
      */
     public JsonReader(ModelRegistry modelRegistry) {
         this.modelRegistry = modelRegistry;
-        mapper = getObjectMapper(modelRegistry);
+        mapper = modelRegistry.getDeserializers().getMapper();
     }
 
     public ObjectMapper getMapper() {
         return mapper;
     }
 
+    /**
+     * Sets whether fields that are not in the data model are kept as raw JSON
+     * on the parsed Entities, see {@link Entity#getUnknownFields()}. By default
+     * these fields are skipped without being parsed.
+     *
+     * @param collectUnknownFields Flag indicating unknown fields should be
+     * kept.
+     * @return this JsonReader.
+     */
+    public JsonReader setCollectUnknownFields(boolean collectUnknownFields) {
+        this.collectUnknownFields = collectUnknownFields;
+        return this;
+    }
+
+    public boolean isCollectUnknownFields() {
+        return collectUnknownFields;
+    }
+
     public Entity parseEntity(EntityType entityType, byte[] value) throws IOException {
         try (final JsonParser parser = mapper.createParser(value)) {
             return parseEntity(parser, entityType);
@@ -142,18 +139,42 @@ public class JsonReader {
         }
     }
 
-    private Entity parseEntity(final JsonParser parser, EntityType entityType) throws IOException {
+    /**
+     * Parse an Entity directly from the given stream, without buffering the
+     * content in a String first. The stream is closed when parsing finishes.
+     *
+     * @param entityType The type of the Entity to parse.
+     * @param value The stream to read the JSON from.
+     * @return The parsed Entity.
+     * @throws IOException If reading or parsing fails.
+     */
+    public Entity parseEntity(EntityType entityType, InputStream value) throws IOException {
+        try (final JsonParser parser = mapper.createParser(value)) {
+            return parseEntity(parser, entityType);
+        } catch (StackOverflowError err) {
+            throw new IOException("Json is too deeply nested.");
+        }
+    }
+
+    private DefaultDeserializationContext createContext(JsonParser parser) {
         DefaultDeserializationContext dsc = (DefaultDeserializationContext) mapper.getDeserializationContext();
         dsc = dsc.createInstance(mapper.getDeserializationConfig(), parser, mapper.getInjectableValues());
-        return EntityDeserializer.getInstance(modelRegistry, entityType)
+        if (collectUnknownFields) {
+            dsc.setAttribute(EntityDeserializer.ATTR_COLLECT_UNKNOWN_FIELDS, Boolean.TRUE);
+        }
+        return dsc;
+    }
+
+    private Entity parseEntity(final JsonParser parser, EntityType entityType) throws IOException {
+        final DefaultDeserializationContext dsc = createContext(parser);
+        return modelRegistry.getDeserializers().getEntityDeserializer(entityType)
                 .deserializeFull(parser, dsc);
     }
 
     public EntitySet parseEntitySet(EntityType entityType, String value) throws IOException {
         try (final JsonParser parser = mapper.createParser(value)) {
-            DefaultDeserializationContext dsc = (DefaultDeserializationContext) mapper.getDeserializationContext();
-            dsc = dsc.createInstance(mapper.getDeserializationConfig(), parser, mapper.getInjectableValues());
-            return EntitySetDeserializer.getInstance(modelRegistry, entityType)
+            final DefaultDeserializationContext dsc = createContext(parser);
+            return modelRegistry.getDeserializers().getEntitySetDeserializer(entityType)
                     .deserializeFull(parser, dsc);
         } catch (StackOverflowError err) {
             throw new IOException("Json is too deeply nested.");
@@ -162,15 +183,53 @@ public class JsonReader {
 
     public EntitySet parseEntitySet(EntityType entityType, Reader value) throws IOException {
         try (final JsonParser parser = mapper.createParser(value)) {
-            DefaultDeserializationContext dsc = (DefaultDeserializationContext) mapper.getDeserializationContext();
-            dsc = dsc.createInstance(mapper.getDeserializationConfig(), parser, mapper.getInjectableValues());
-            return EntitySetDeserializer.getInstance(modelRegistry, entityType)
+            final DefaultDeserializationContext dsc = createContext(parser);
+            return modelRegistry.getDeserializers().getEntitySetDeserializer(entityType)
                     .deserializeFull(parser, dsc);
         } catch (StackOverflowError err) {
             throw new IOException("Json is too deeply nested.");
         }
     }
 
+    /**
+     * Parse an EntitySet directly from the given stream, without buffering the
+     * content in a String first. The stream is closed when parsing finishes.
+     *
+     * @param entityType The type of the Entities in the set.
+     * @param value The stream to read the JSON from.
+     * @return The parsed EntitySet.
+     * @throws IOException If reading or parsing fails.
+     */
+    public EntitySet parseEntitySet(EntityType entityType, InputStream value) throws IOException {
+        try (final JsonParser parser = mapper.createParser(value)) {
+            final DefaultDeserializationContext dsc = createContext(parser);
+            return modelRegistry.getDeserializers().getEntitySetDeserializer(entityType)
+                    .deserializeFull(parser, dsc);
+        } catch (StackOverflowError err) {
+            throw new IOException("Json is too deeply nested.");
+        }
+    }
+
+    /**
+     * Open a reader that parses the Entities of an EntitySet one at a time
+     * from the given stream. Closing the reader closes the stream.
+     *
+     * @param entityType The type of the Entities in the set.
+     * @param value The stream to read the JSON from.
+     * @return A reader returning the Entities of the set one by one.
+     * @throws IOException If reading or parsing the start of the set fails.
+     */
+    public EntitySetStreamReader readEntitySet(EntityType entityType, InputStream value) throws IOException {
+        final JsonParser parser = mapper.createParser(value);
+        try {
+            final DefaultDeserializationContext dsc = createContext(parser);
+            return new EntitySetStreamReader(parser, dsc, modelRegistry.getDeserializers().getEntityDeserializer(entityType));
+        } catch (IOException | RuntimeException ex) {
+            parser.close();
+            throw ex;
+        }
+    }
+
     public <T> T parseObject(Class<T> clazz, String value) throws IOException {
         return mapper.readValue(value, clazz);
     }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.json.deserialize;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The raw JSON of a value, kept as UTF-8 bytes. The JSON is only parsed when
+ * it is requested.
+ */
+public class RawJson {
+
+    private static final ObjectMapper TREE_MAPPER = new ObjectMapper();
+
+    private final byte[] bytes;
+
+    public RawJson(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return The raw JSON as UTF-8 bytes. The returned array must not be
+     * modified.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Parse the raw JSON into a tree.
+     *
+     * @return The parsed JSON.
+     * @throws IOException If the JSON can not be parsed.
+     */
+    public JsonNode toTree() throws IOException {
+        return TREE_MAPPER.readTree(bytes);
+    }
+
+    /**
+     * Parse the raw JSON into an object of the given type, using the given
+     * mapper.
+     *
+     * @param <T> The type to parse into.
+     * @param mapper The mapper to use for parsing.
+     * @param type The type to parse into.
+     * @return The parsed JSON.
+     * @throws IOException If the JSON can not be parsed.
+     */
+    public <T> T read(ObjectMapper mapper, Class<T> type) throws IOException {
+        return mapper.readValue(bytes, type);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return Arrays.equals(bytes, ((RawJson) obj).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -31,9 +31,8 @@ import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeValue;
 import java.io.IOException;
 
 /**
- * Helper for deserialization of TimeValue objects from JSON. May not work
- * properly in every case as deciding wether input is a TimeInstant or a
- * TimeInterval is based on exceptions while parsing
+ * Helper for deserialization of TimeValue objects from JSON. Values containing
+ * a '/' are parsed as TimeInterval, all others as TimeInstant.
  */
 public class TimeValueDeserializer extends StdDeserializer<TimeValue> {
 
@@ -47,11 +46,10 @@ public class TimeValueDeserializer extends StdDeserializer<TimeValue> {
         if (node == null) {
             return null;
         }
-        try {
-            return new TimeValue(TimeInstant.parse(node));
-        } catch (IllegalArgumentException e) {
+        if (node.indexOf('/') >= 0) {
             return new TimeValue(TimeInterval.parse(node));
         }
+        return new TimeValue(TimeInstant.parse(node));
     }
 
 }
@@ -31,6 +31,7 @@ import de.fraunhofer.iosb.ilt.frostclient.model.ModelRegistry;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationProperty;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,27 +43,43 @@ public class EntitySerializer extends JsonSerializer<Entity> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EntitySerializer.class.getName());
 
+    /**
+     * The serialisation attribute holding a Map&lt;Entity, String&gt; of
+     * Entities that are created earlier in the same batch request, with their
+     * content-ID references. Linked Entities found in the map are written as a
+     * reference instead of being written in full.
+     */
+    public static final String ATTR_CONTENT_IDS = "frostClient.contentIds";
+
     @Override
     public void serialize(Entity entity, JsonGenerator gen, SerializerProvider serializers) throws IOException {
         gen.writeStartObject();
         try {
-            writeContent(entity, gen);
-        } catch (IOException | RuntimeException exc) {
+            writeContent(entity, gen, serializers);
+        } catch (RuntimeException exc) {
             LOGGER.error("Failed to serialise entity.", exc);
-            throw new IOException("could not serialize Entity");
-        } finally {
-            gen.writeEndObject();
+            throw new IOException("could not serialize Entity", exc);
         }
+        gen.writeEndObject();
     }
 
     public void writeContent(Entity entity, JsonGenerator gen) throws IOException {
+        writeContent(entity, gen, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void writeContent(Entity entity, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        Map<Entity, String> contentIds = null;
+        if (serializers != null) {
+            contentIds = (Map<Entity, String>) serializers.getAttribute(ATTR_CONTENT_IDS);
+        }
         Set<EntityPropertyMain> entityProps = entity.getEntityType().getEntityProperties();
         Set<NavigationProperty> navigationProps = entity.getEntityType().getNavigationProperties();
         for (EntityPropertyMain ep : entityProps) {
             writeEntityProp(ep, entity, gen);
         }
         for (NavigationProperty np : navigationProps) {
-            writeNavProp(entity, np, gen);
+            writeNavProp(entity, np, gen, contentIds);
         }
     }
 
@@ -80,12 +97,15 @@ public class EntitySerializer extends JsonSerializer<Entity> {
         }
     }
 
-    private void writeNavProp(Entity entity, NavigationProperty np, JsonGenerator gen) throws IOException {
+    private void writeNavProp(Entity entity, NavigationProperty np, JsonGenerator gen, Map<Entity, String> contentIds) throws IOException {
         Object entityOrSet = entity.getProperty(np, false);
         if (entityOrSet instanceof EntitySet entitySet) {
-            writeEntitySet(np, entitySet, gen);
+            writeEntitySet(np, entitySet, gen, contentIds);
         } else if (entityOrSet instanceof Entity expandedEntity) {
-            if (expandedEntity.hasService()) {
+            if (contentIds != null && contentIds.containsKey(expandedEntity)) {
+                gen.writeFieldName(np.getJsonName());
+                writeReference(expandedEntity, contentIds.get(expandedEntity), gen);
+            } else if (expandedEntity.hasService()) {
                 gen.writeObjectField(np.getJsonName(), expandedEntity.withOnlyPk());
             } else {
                 gen.writeObjectField(np.getJsonName(), expandedEntity);
@@ -93,16 +113,26 @@ public class EntitySerializer extends JsonSerializer<Entity> {
         }
     }
 
-    private void writeEntitySet(NavigationProperty np, EntitySet entitySet, JsonGenerator gen) throws IOException {
+    private void writeEntitySet(NavigationProperty np, EntitySet entitySet, JsonGenerator gen, Map<Entity, String> contentIds) throws IOException {
         if (entitySet == null || entitySet.isEmpty()) {
             return;
         }
         String jsonName = np.getJsonName();
         gen.writeArrayFieldStart(jsonName);
-        for (Object child : entitySet) {
-            gen.writeObject(child);
+        for (Entity child : entitySet) {
+            if (contentIds != null && contentIds.containsKey(child)) {
+                writeReference(child, contentIds.get(child), gen);
+            } else {
+                gen.writeObject(child);
+            }
         }
         gen.writeEndArray();
     }
 
+    private void writeReference(Entity entity, String contentId, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField(entity.getPrimaryKey().getKeyProperties().get(0).getName(), contentId);
+        gen.writeEndObject();
+    }
+
 }
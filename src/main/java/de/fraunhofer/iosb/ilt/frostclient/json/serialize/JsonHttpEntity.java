@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.json.serialize;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * An HttpEntity that serialises an object, like an Entity or a JSON Patch,
+ * straight into the request body using the JsonWriter ObjectMapper, without
+ * creating a String first.
+ *
+ * Small objects are serialised into a pooled buffer when the HttpEntity is
+ * created, so the content length is known and the request does not need to be
+ * chunked. Objects that do not fit in the buffer are serialised directly to
+ * the output stream each time the HttpEntity is written.
+ */
+public class JsonHttpEntity extends AbstractHttpEntity {
+
+    /**
+     * The maximum size of objects that are serialised up front.
+     */
+    public static final int SMALL_ENTITY_LIMIT = 16 * 1024;
+
+    /**
+     * The maximum number of idle buffers kept in the pool.
+     */
+    private static final int MAX_POOLED_BUFFERS = 32;
+    private static final Queue<byte[]> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+    private final Object value;
+    private final byte[] content;
+
+    /**
+     * Create a new JsonHttpEntity for the given value.
+     *
+     * @param value The value to serialise.
+     * @param contentType The content type of the request body.
+     * @throws IOException If serialising the value fails.
+     */
+    public JsonHttpEntity(Object value, ContentType contentType) throws IOException {
+        this.value = value;
+        setContentType(contentType.toString());
+        content = serialiseSmall(value);
+    }
+
+    private static byte[] serialiseSmall(Object value) throws IOException {
+        byte[] buffer = BUFFER_POOL.poll();
+        if (buffer == null) {
+            buffer = new byte[SMALL_ENTITY_LIMIT];
+        }
+        try {
+            final BoundedOutputStream out = new BoundedOutputStream(buffer);
+            write(value, out);
+            if (out.isOverflowed()) {
+                return null;
+            }
+            return Arrays.copyOf(buffer, out.size());
+        } finally {
+            if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+                BUFFER_POOL.offer(buffer);
+            }
+        }
+    }
+
+    private static void write(Object value, OutputStream out) throws IOException {
+        final ObjectMapper mapper = JsonWriter.getObjectMapper();
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            mapper.writeValue(gen, value);
+        }
+    }
+
+    /**
+     * Check if the value was small enough to be serialised up front.
+     *
+     * @return true if the content length is known.
+     */
+    public boolean isBuffered() {
+        return content != null;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        if (content == null) {
+            return -1;
+        }
+        return content.length;
+    }
+
+    /**
+     * Get the content as a stream. For large values this serialises the value
+     * into memory, use {@link #writeTo(java.io.OutputStream)} to stream it.
+     *
+     * @return The serialised value.
+     * @throws IOException If serialising the value fails.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(SMALL_ENTITY_LIMIT * 2);
+        write(value, out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        if (content != null) {
+            out.write(content);
+        } else {
+            write(value, out);
+        }
+        out.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Writes into a fixed buffer. Once the buffer is full, all further bytes
+     * are discarded and the stream is marked as overflowed, so the serialiser
+     * can finish normally.
+     */
+    private static class BoundedOutputStream extends OutputStream {
+
+        private final byte[] buffer;
+        private int size;
+        private boolean overflowed;
+
+        public BoundedOutputStream(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            if (overflowed || size >= buffer.length) {
+                overflowed = true;
+                return;
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+            if (overflowed || size + len > buffer.length) {
+                overflowed = true;
+                return;
+            }
+            System.arraycopy(bytes, off, buffer, size, len);
+            size += len;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isOverflowed() {
+            return overflowed;
+        }
+    }
+
+}
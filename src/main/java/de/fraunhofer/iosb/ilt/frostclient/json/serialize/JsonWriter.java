@@ -44,19 +44,21 @@ import net.time4j.Moment;
  */
 public class JsonWriter {
 
-    private static ObjectMapper objectMapperInstance;
+    private static volatile ObjectMapper objectMapperInstance;
 
     public static ObjectMapper getObjectMapper() {
-        if (objectMapperInstance == null) {
-            initObjectMapper();
+        ObjectMapper result = objectMapperInstance;
+        if (result == null) {
+            result = initObjectMapper();
         }
-        return objectMapperInstance;
+        return result;
     }
 
-    private static synchronized void initObjectMapper() {
+    private static synchronized ObjectMapper initObjectMapper() {
         if (objectMapperInstance == null) {
             objectMapperInstance = createObjectMapper();
         }
+        return objectMapperInstance;
     }
 
     private static ObjectMapper createObjectMapper() {
@@ -25,6 +25,7 @@ package de.fraunhofer.iosb.ilt.frostclient.json.serialize;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Iso8601Codec;
 import de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper;
 import java.io.IOException;
 import net.time4j.Moment;
@@ -36,7 +37,13 @@ public class MomentSerializer extends JsonSerializer<Moment> {
 
     @Override
     public void serialize(Moment value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
-        gen.writeString(StringHelper.FORMAT_MOMENT.print(value));
+        final char[] buffer = new char[Iso8601Codec.MAX_MOMENT_LENGTH];
+        final int end = Iso8601Codec.printMoment(value, buffer, 0);
+        if (end < 0) {
+            gen.writeString(StringHelper.FORMAT_MOMENT.print(value));
+        } else {
+            gen.writeString(buffer, 0, end);
+        }
     }
 
 }
@@ -27,18 +27,21 @@ import de.fraunhofer.iosb.ilt.frostclient.dao.BaseDao;
 import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
 import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
 import de.fraunhofer.iosb.ilt.frostclient.exception.StatusCodeException;
+import de.fraunhofer.iosb.ilt.frostclient.json.deserialize.RawJson;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationProperty;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntity;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntitySet;
 import de.fraunhofer.iosb.ilt.frostclient.query.Query;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -48,10 +51,25 @@ public class Entity {
 
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Entity.class.getName());
 
+    private static final Object[] NO_VALUES = new Object[0];
+
     private EntityType entityType;
-    private final Map<EntityPropertyMain, Object> entityProperties = new HashMap<>();
-    private final Map<NavigationProperty, Object> navProperties = new HashMap<>();
-    private final Set<Property> setProperties = new HashSet<>();
+
+    /**
+     * The property values, indexed by {@link EntityType#getPropertyIndex}.
+     */
+    private Object[] values = NO_VALUES;
+
+    /**
+     * Flags for the properties that are set, for the first 64 properties.
+     */
+    private long setMask;
+
+    /**
+     * Flags for the properties that are set, for properties beyond the first
+     * 64. Only created when needed.
+     */
+    private BitSet setMaskExtra;
 
     /**
      * The STA service this entity is loaded from.
@@ -63,6 +81,22 @@ public class Entity {
      */
     private String selfLink;
 
+    /**
+     * The raw JSON of fields that are not in the data model, only filled when
+     * the JsonReader is set to collect unknown fields.
+     */
+    private Map<String, RawJson> unknownFields;
+
+    /**
+     * The property values at the time the entity was marked clean, or null if
+     * changes are not tracked. Maps and Lists are deep copies, EntitySets are
+     * stored as a List of their Entities, other values are the same
+     * instances as in values. After {@link #markLoaded()}, Maps, Lists and
+     * EntitySets are the same instances as in values, until they are first
+     * handed out.
+     */
+    private Object[] cleanValues;
+
     public Entity(EntityType entityType) {
         this.entityType = entityType;
     }
@@ -103,6 +137,27 @@ public class Entity {
         return this;
     }
 
+    /**
+     * Get the fields of this Entity that are not in the data model, if the
+     * JsonReader that read this Entity was set to collect them.
+     *
+     * @return The unknown fields, with their raw JSON, never null.
+     */
+    public Map<String, RawJson> getUnknownFields() {
+        if (unknownFields == null) {
+            return Collections.emptyMap();
+        }
+        return unknownFields;
+    }
+
+    public Entity setUnknownField(String name, RawJson value) {
+        if (unknownFields == null) {
+            unknownFields = new LinkedHashMap<>();
+        }
+        unknownFields.put(name, value);
+        return this;
+    }
+
     public EntityType getEntityType() {
         return entityType;
     }
@@ -119,7 +174,8 @@ public class Entity {
         if (property == ModelRegistry.EP_SELFLINK) {
             return true;
         }
-        return setProperties.contains(property);
+        final int index = entityType.getPropertyIndex(property);
+        return index >= 0 && isSetIndex(index);
     }
 
     public <P> P getProperty(Property<P> property) {
@@ -131,11 +187,11 @@ public class Entity {
     }
 
     public <P> P getProperty(NavigationPropertyEntity npe, boolean autoLoad) throws ServiceFailureException {
-        Entity entity = (Entity) navProperties.get(npe);
+        Entity entity = (Entity) getValue(indexOf(npe));
         if (entity == null && autoLoad) {
             try {
                 entity = service.dao(npe.getEntityType()).find(this, npe);
-                setProperty(npe, entity);
+                setLoadedProperty(npe, entity);
             } catch (StatusCodeException ex) {
                 if (ex.getStatusCode() == 404) {
                     // The entity doesn't have this navLink, all is fine.
@@ -155,11 +211,9 @@ public class Entity {
         if (property == ModelRegistry.EP_SELFLINK) {
             return (P) getSelfLink();
         }
-        if (!entityType.hasProperty(property)) {
-            throw new IllegalArgumentException(entityType.entityName + " has no property " + property.getName());
-        }
-        if (property instanceof EntityPropertyMain epm) {
-            return (P) entityProperties.get(epm);
+        final int index = indexOf(property);
+        if (property instanceof EntityPropertyMain) {
+            return (P) getValueForChange(index);
         }
         if (property instanceof NavigationPropertyEntity npe) {
             try {
@@ -170,46 +224,125 @@ public class Entity {
             }
         }
         if (property instanceof NavigationPropertyEntitySet npes) {
-            EntitySet entitySet = (EntitySet) navProperties.get(npes);
+            EntitySet entitySet = (EntitySet) getValueForChange(index);
             if (entitySet == null && autoLoad) {
                 entitySet = new EntitySetImpl(npes);
-                setProperty(npes, entitySet);
+                setLoadedProperty(npes, entitySet);
             }
             return (P) entitySet;
         }
         return null;
     }
 
+    /**
+     * Sets a value that is loaded from the server, and thus does not count
+     * as a change.
+     *
+     * @param <P> The type of the property.
+     * @param property The property to set.
+     * @param value The value loaded from the server.
+     * @return this Entity.
+     */
+    public <P> Entity setLoadedProperty(Property<P> property, P value) {
+        setProperty(property, value);
+        if (cleanValues != null) {
+            final int index = indexOf(property);
+            if (index >= cleanValues.length) {
+                cleanValues = Arrays.copyOf(cleanValues, Math.max(index + 1, entityType.getPropertyCount()));
+            }
+            cleanValues[index] = deepCopy(value);
+        }
+        return this;
+    }
+
     public <P> Entity setProperty(Property<P> property, P value) {
         if (property == ModelRegistry.EP_SELFLINK) {
             setSelfLink(String.valueOf(value));
             return this;
         }
-        if (!entityType.hasProperty(property)) {
+        final int index = indexOf(property);
+        if (property instanceof EntityPropertyMain) {
+            setValue(index, value, true);
+        } else if (property instanceof NavigationProperty) {
+            setValue(index, value, value != null);
+        }
+        return this;
+    }
+
+    public Entity unsetProperty(Property property) {
+        final int index = entityType.getPropertyIndex(property);
+        if (index >= 0) {
+            setValue(index, null, false);
+        }
+        return this;
+    }
+
+    private int indexOf(Property property) {
+        final int index = entityType.getPropertyIndex(property);
+        if (index < 0) {
             throw new IllegalArgumentException(entityType.entityName + " has no property " + property.getName());
         }
-        if (property instanceof EntityPropertyMain epm) {
-            entityProperties.put(epm, value);
-            setProperties.add(property);
-        } else if (property instanceof NavigationProperty np) {
-            navProperties.put(np, value);
+        return index;
+    }
+
+    private Object getValue(int index) {
+        return index < values.length ? values[index] : null;
+    }
+
+    /**
+     * Gets a value that the caller may change in place. If the clean state
+     * still shares the value, it is copied first.
+     */
+    private Object getValueForChange(int index) {
+        final Object value = getValue(index);
+        if (value != null && cleanValues != null && index < cleanValues.length && cleanValues[index] == value && isMutable(value)) {
+            cleanValues[index] = deepCopy(value);
+        }
+        return value;
+    }
+
+    private static boolean isMutable(Object value) {
+        return value instanceof Map || value instanceof List || value instanceof EntitySet;
+    }
+
+    private void setValue(int index, Object value, boolean set) {
+        if (index >= values.length) {
             if (value == null) {
-                setProperties.remove(property);
-            } else {
-                setProperties.add(property);
+                // Nothing stored yet, only the flag changes.
+                setFlag(index, set);
+                return;
             }
+            values = Arrays.copyOf(values, Math.max(index + 1, entityType.getPropertyCount()));
         }
-        return this;
+        values[index] = value;
+        setFlag(index, set);
     }
 
-    public Entity unsetProperty(Property property) {
-        if (property instanceof EntityPropertyMain epm) {
-            entityProperties.remove(epm);
-        } else if (property instanceof NavigationProperty np) {
-            navProperties.remove(np);
+    private boolean isSetIndex(int index) {
+        if (index < 64) {
+            return (setMask & (1L << index)) != 0;
+        }
+        return setMaskExtra != null && setMaskExtra.get(index - 64);
+    }
+
+    private void setFlag(int index, boolean set) {
+        if (index < 64) {
+            if (set) {
+                setMask |= 1L << index;
+            } else {
+                setMask &= ~(1L << index);
+            }
+        } else if (set) {
+            if (setMaskExtra == null) {
+                setMaskExtra = new BitSet();
+            }
+            setMaskExtra.set(index - 64);
+        } else if (setMaskExtra != null) {
+            setMaskExtra.clear(index - 64);
+            if (setMaskExtra.isEmpty()) {
+                setMaskExtra = null;
+            }
         }
-        setProperties.remove(property);
-        return this;
     }
 
     public Entity addNavigationEntity(NavigationPropertyEntitySet navProperty, Entity linkedEntity) {
@@ -269,6 +402,201 @@ public class Entity {
         return copy;
     }
 
+    /**
+     * Creates a deep copy of the entity. Maps, Lists, EntitySets and linked
+     * Entities are copied, so changes made to the copy do not affect this
+     * entity, and the other way around. Other values are shared, they should
+     * be replaced, not modified in place.
+     *
+     * If this entity tracks changes, the copy does too, with its current
+     * state as the clean state.
+     *
+     * @return a deep copy of this entity.
+     */
+    public Entity copy() {
+        return copy(new IdentityHashMap<>());
+    }
+
+    private Entity copy(Map<Entity, Entity> copies) {
+        final Entity existing = copies.get(this);
+        if (existing != null) {
+            return existing;
+        }
+        final Entity copy = new Entity(entityType);
+        copies.put(this, copy);
+        copy.service = service;
+        copy.selfLink = selfLink;
+        copy.setMask = setMask;
+        copy.setMaskExtra = setMaskExtra == null ? null : (BitSet) setMaskExtra.clone();
+        copy.unknownFields = unknownFields == null ? null : new LinkedHashMap<>(unknownFields);
+        if (values.length > 0) {
+            copy.values = new Object[values.length];
+            for (int idx = 0; idx < values.length; idx++) {
+                copy.values[idx] = copyValue(values[idx], copies);
+            }
+        }
+        if (cleanValues != null) {
+            copy.markLoaded();
+        }
+        return copy;
+    }
+
+    private Object copyValue(Object value, Map<Entity, Entity> copies) {
+        if (value instanceof Entity entity) {
+            return entity.copy(copies);
+        }
+        if (value instanceof EntitySet entitySet) {
+            final EntitySetImpl copy = entitySet.getNavigationProperty() == null
+                    ? new EntitySetImpl(entitySet.getEntityType())
+                    : new EntitySetImpl(entitySet.getNavigationProperty());
+            for (Entity item : entitySet.toList()) {
+                copy.add(item.copy(copies));
+            }
+            copy.setCount(entitySet.getCount());
+            copy.setNextLink(entitySet.getNextLink());
+            if (service != null) {
+                copy.setService(service);
+            }
+            return copy;
+        }
+        if (value instanceof Map || value instanceof List) {
+            return deepCopy(value);
+        }
+        return value;
+    }
+
+    /**
+     * Marks the current state of the entity as the state on the server.
+     * Entities loaded from a service are marked clean, using
+     * {@link #markLoaded()}, when they are parsed. Afterwards,
+     * {@link #getChangedProperties()} returns the properties that changed
+     * since, and updating the entity only sends those.
+     *
+     * Maps, Lists and the contents of EntitySets are copied, so changes made
+     * inside them are detected. Other values are compared using equals, but
+     * are not copied, so they should be replaced, not modified in place.
+     *
+     * @return this Entity.
+     */
+    public Entity markClean() {
+        final Object[] clean = new Object[values.length];
+        for (int idx = 0; idx < values.length; idx++) {
+            clean[idx] = deepCopy(values[idx]);
+        }
+        cleanValues = clean;
+        return this;
+    }
+
+    /**
+     * Marks the current state of the entity as the state on the server, like
+     * {@link #markClean()}, but without copying anything up front. Maps,
+     * Lists and EntitySets are copied the first time they are returned by
+     * getProperty, so changes made inside them are still detected. Only use
+     * this when nothing else holds a reference to those values, like for
+     * entities that were just parsed.
+     *
+     * @return this Entity.
+     */
+    public Entity markLoaded() {
+        cleanValues = values.length == 0 ? NO_VALUES : values.clone();
+        return this;
+    }
+
+    /**
+     * Stops tracking changes, updating the entity will send all properties.
+     *
+     * @return this Entity.
+     */
+    public Entity clearClean() {
+        cleanValues = null;
+        return this;
+    }
+
+    /**
+     * Check if changes to this entity are tracked, see {@link #markClean()}.
+     *
+     * @return true if changes are tracked.
+     */
+    public boolean isTrackingChanges() {
+        return cleanValues != null;
+    }
+
+    /**
+     * Get the properties that changed since the entity was marked clean. If
+     * changes are not tracked, all set properties are returned.
+     *
+     * @return The properties that changed since the entity was marked clean.
+     */
+    public List<Property> getChangedProperties() {
+        final List<Property> changed = new ArrayList<>();
+        for (Property property : entityType.getPropertySet()) {
+            final int index = entityType.getPropertyIndex(property);
+            if (index < 0) {
+                continue;
+            }
+            if (cleanValues == null) {
+                if (isSetIndex(index)) {
+                    changed.add(property);
+                }
+                continue;
+            }
+            final Object value = getValue(index);
+            final Object clean = index < cleanValues.length ? cleanValues[index] : null;
+            if (!isUnchanged(value, clean)) {
+                changed.add(property);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Get the value the given property had when the entity was marked clean.
+     *
+     * @param property The property to get the value for.
+     * @return The value at the time the entity was marked clean, or null if
+     * changes are not tracked. For EntitySets this is a List of the Entities
+     * that were in the set.
+     */
+    public Object getCleanValue(Property property) {
+        final int index = indexOf(property);
+        if (cleanValues == null || index >= cleanValues.length) {
+            return null;
+        }
+        getValueForChange(index);
+        return cleanValues[index];
+    }
+
+    private static boolean isUnchanged(Object value, Object clean) {
+        if (value == clean) {
+            return true;
+        }
+        if (value instanceof EntitySet entitySet) {
+            return clean instanceof List && entitySet.toList().equals(clean);
+        }
+        return Objects.equals(value, clean);
+    }
+
+    private static Object deepCopy(Object value) {
+        if (value instanceof EntitySet entitySet) {
+            return new ArrayList<>(entitySet.toList());
+        }
+        if (value instanceof Map<?, ?> map) {
+            final Map<Object, Object> copy = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), deepCopy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof List<?> list) {
+            final List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(deepCopy(item));
+            }
+            return copy;
+        }
+        return value;
+    }
+
     public Query query(NavigationPropertyEntitySet navigationPropery) {
         if (service == null) {
             throw new IllegalArgumentException("Can not query from an entity not associated with a service.");
@@ -298,15 +626,29 @@ public class Entity {
         if (!Objects.equals(this.entityType, other.entityType)) {
             return false;
         }
-        if (!Objects.equals(this.entityProperties, other.entityProperties)) {
+        if (this.setMask != other.setMask || !Objects.equals(this.setMaskExtra, other.setMaskExtra)) {
             return false;
         }
-        return Objects.equals(this.navProperties, other.navProperties);
+        final int length = Math.max(values.length, other.values.length);
+        for (int index = 0; index < length; index++) {
+            if (!Objects.equals(getValue(index), other.getValue(index))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(entityType, entityProperties, navProperties);
+        int hash = Objects.hashCode(entityType);
+        int length = values.length;
+        while (length > 0 && values[length - 1] == null) {
+            length--;
+        }
+        for (int index = 0; index < length; index++) {
+            hash = 31 * hash + Objects.hashCode(values[index]);
+        }
+        return hash;
     }
 
     @Override
@@ -28,6 +28,10 @@ import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntitySet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The EntitySet model element.
@@ -56,6 +60,71 @@ public interface EntitySet extends Iterable<Entity> {
     @Override
     public Iterator<Entity> iterator();
 
+    /**
+     * Get a lazily evaluated Stream over all entities, following nextLinks if
+     * needed. Close the Stream if it is not fully consumed. The default
+     * implementation streams the entities of {@link #iterator()}.
+     *
+     * @return A Stream over all entities, following nextLinks if needed.
+     */
+    public default Stream<Entity> stream() {
+        return toStream(iterator());
+    }
+
+    /**
+     * Get an iterator that iterates over all entities, following nextLinks if
+     * needed. While the entities of one page are consumed, up to
+     * prefetchDepth following pages are requested in the background using the
+     * executor of the service. Prefetched pages are held in memory completely.
+     *
+     * The default implementation does not prefetch, and returns
+     * {@link #iterator()}.
+     *
+     * @param prefetchDepth The number of pages to request ahead. If less than
+     * 1, no pages are prefetched.
+     * @return An iterator that iterates over all entities, following nextLinks
+     * if needed.
+     */
+    public default Iterator<Entity> iterator(int prefetchDepth) {
+        return iterator();
+    }
+
+    /**
+     * Get a Stream over all entities, following nextLinks if needed, while
+     * requesting up to prefetchDepth pages ahead in the background. Close the
+     * Stream if it is not fully consumed. The default implementation streams
+     * the entities of {@link #iterator(int)}.
+     *
+     * @param prefetchDepth The number of pages to request ahead. If less than
+     * 1, no pages are prefetched and the result is the same as
+     * {@link #stream()}.
+     * @return A Stream over all entities, following nextLinks if needed.
+     */
+    public default Stream<Entity> stream(int prefetchDepth) {
+        if (prefetchDepth < 1) {
+            return stream();
+        }
+        return toStream(iterator(prefetchDepth));
+    }
+
+    /**
+     * Wraps an iterator in a sequential Stream. If the iterator holds
+     * resources, closing the Stream closes the iterator.
+     */
+    private static Stream<Entity> toStream(Iterator<Entity> iterator) {
+        final Stream<Entity> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        if (iterator instanceof AutoCloseable closeable) {
+            return stream.onClose(() -> {
+                try {
+                    closeable.close();
+                } catch (Exception ex) {
+                    throw new IllegalStateException("Failed to close iterator.", ex);
+                }
+            });
+        }
+        return stream;
+    }
+
     /**
      * Check if there is a nextLink.
      *
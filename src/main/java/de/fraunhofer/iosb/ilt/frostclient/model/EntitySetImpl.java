@@ -26,8 +26,8 @@ import static de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper.cleanForLogg
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
 import de.fraunhofer.iosb.ilt.frostclient.exception.StatusCodeException;
-import de.fraunhofer.iosb.ilt.frostclient.json.deserialize.JsonReader;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntitySet;
 import de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper;
 import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
@@ -37,12 +37,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import org.apache.http.Consts;
-import org.apache.http.ParseException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.entity.ContentType;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -101,7 +100,13 @@ public class EntitySetImpl implements EntitySet {
                     currentIterator = null;
                     return;
                 }
-                fetchNext();
+                try {
+                    fetchNext();
+                } catch (ServiceFailureException ex) {
+                    currentIterator = null;
+                    LOGGER.error("Failed to fetch entities: {}", ex.getMessage());
+                    throw new RuntimeException(ex);
+                }
                 currentIterator = data.iterator();
             }
 
@@ -128,7 +133,30 @@ public class EntitySetImpl implements EntitySet {
     }
 
     @Override
-    public void fetchNext() {
+    public Stream<Entity> stream() {
+        EntitySetSpliterator spliterator = new EntitySetSpliterator(service, type, data.iterator(), nextLink);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::close);
+    }
+
+    @Override
+    public Iterator<Entity> iterator(int prefetchDepth) {
+        if (prefetchDepth < 1) {
+            return iterator();
+        }
+        return new PrefetchingEntityIterator(service, type, data.iterator(), nextLink, prefetchDepth);
+    }
+
+    /**
+     * Use the nextLink to fetch more Entities. On failure, the loaded
+     * Entities and the nextLink are left unchanged, so fetching can be tried
+     * again.
+     *
+     * @throws ServiceFailureException If there is a problem following the
+     * nextLink.
+     */
+    @Override
+    public void fetchNext() throws ServiceFailureException {
         if (nextLink == null) {
             data = new ArrayList<>();
             return;
@@ -138,21 +166,16 @@ public class EntitySetImpl implements EntitySet {
         LOGGER.debug("Fetching: {}", httpGet.getURI());
         try (CloseableHttpResponse response = service.execute(httpGet)) {
             Utils.throwIfNotOk(httpGet, response);
-            String json = EntityUtils.toString(response.getEntity(), Consts.UTF_8);
-            JsonReader reader = new JsonReader(service.getModelRegistry());
-            EntitySet nextSet = reader.parseEntitySet(type, json);
+            EntitySet nextSet = service.getJsonReader().parseEntitySet(type, response.getEntity().getContent());
             nextSet.setService(service);
             data = nextSet.toList();
             nextLink = nextSet.getNextLink();
-        } catch (IOException | ParseException exc) {
-            LOGGER.error("Failed deserializing collection.", exc);
-            nextLink = null;
-            data = new ArrayList<>();
+        } catch (IOException exc) {
+            throw ServiceFailureException.wrap("Failed to fetch entities from " + nextLink, exc);
         } catch (StatusCodeException exc) {
             LOGGER.error("Failed follow nextlink: {} - '{}' - {}", exc.getStatusCode(), nextLink, cleanForLogging(exc.getReturnedContent(), 100));
             LOGGER.debug("Response: {}", exc.getReturnedContent());
-            nextLink = null;
-            data = new ArrayList<>();
+            throw exc;
         }
     }
 
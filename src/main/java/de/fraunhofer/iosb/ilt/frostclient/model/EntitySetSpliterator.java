@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.model;
+
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.json.deserialize.EntitySetStreamReader;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Spliterator over all Entities of an EntitySet, following nextLinks. The
+ * Entities are parsed one at a time from the response stream, so memory use
+ * does not depend on the size of the pages.
+ *
+ * The Spliterator keeps the response of the current page open until all
+ * Entities of that page are consumed. Call {@link #close()} when not all
+ * Entities are consumed.
+ */
+public class EntitySetSpliterator extends Spliterators.AbstractSpliterator<Entity> implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntitySetSpliterator.class.getName());
+
+    private final SensorThingsService service;
+    private final EntityType entityType;
+    private Iterator<Entity> loaded;
+    private String nextLink;
+    private CloseableHttpResponse response;
+    private EntitySetStreamReader reader;
+
+    /**
+     * Create a Spliterator that starts by fetching the given URL.
+     *
+     * @param service The service to use for fetching pages.
+     * @param entityType The type of the Entities in the set.
+     * @param url The url of the first page.
+     */
+    public EntitySetSpliterator(SensorThingsService service, EntityType entityType, String url) {
+        this(service, entityType, null, url);
+    }
+
+    /**
+     * Create a Spliterator that first returns the already loaded Entities, and
+     * then follows the given nextLink.
+     *
+     * @param service The service to use for fetching pages.
+     * @param entityType The type of the Entities in the set.
+     * @param loaded The already loaded Entities, can be null.
+     * @param nextLink The link to the next page, can be null.
+     */
+    public EntitySetSpliterator(SensorThingsService service, EntityType entityType, Iterator<Entity> loaded, String nextLink) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.service = service;
+        this.entityType = entityType;
+        this.loaded = loaded;
+        this.nextLink = nextLink;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Entity> action) {
+        try {
+            Entity next = findNext();
+            if (next == null) {
+                return false;
+            }
+            action.accept(next);
+            return true;
+        } catch (ServiceFailureException ex) {
+            close();
+            LOGGER.error("Failed to fetch entities: {}", ex.getMessage());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Entity findNext() throws ServiceFailureException {
+        while (true) {
+            if (loaded != null) {
+                if (loaded.hasNext()) {
+                    return loaded.next();
+                }
+                loaded = null;
+            }
+            if (reader != null) {
+                Entity next = readNext();
+                if (next != null) {
+                    return next;
+                }
+                nextLink = reader.getNextLink();
+                EntityUtils.consumeQuietly(response.getEntity());
+                close();
+            }
+            if (nextLink == null) {
+                return null;
+            }
+            openPage(nextLink);
+            nextLink = null;
+        }
+    }
+
+    private Entity readNext() throws ServiceFailureException {
+        try {
+            Entity next = reader.next();
+            if (next != null) {
+                next.setService(service);
+            }
+            return next;
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Failed to parse entities.", ex);
+        }
+    }
+
+    private void openPage(String url) throws ServiceFailureException {
+        HttpGet httpGet = new HttpGet(url);
+        httpGet.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        LOGGER.debug("Fetching: {}", httpGet.getURI());
+        try {
+            response = service.execute(httpGet);
+            Utils.throwIfNotOk(httpGet, response);
+            reader = service.getJsonReader().readEntitySet(entityType, response.getEntity().getContent());
+        } catch (IOException ex) {
+            close();
+            throw ServiceFailureException.wrap("Failed to fetch entities.", ex);
+        } catch (ServiceFailureException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Closes the currently open page, if any. If the page is not fully read,
+     * the connection is aborted instead of reading the remaining content.
+     */
+    @Override
+    public void close() {
+        if (response != null) {
+            try {
+                response.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Exception closing response.", ex);
+            }
+            response = null;
+        }
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Exception closing reader.", ex);
+            }
+            reader = null;
+        }
+    }
+
+}
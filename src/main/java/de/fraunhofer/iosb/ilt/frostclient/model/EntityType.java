@@ -25,6 +25,8 @@ package de.fraunhofer.iosb.ilt.frostclient.model;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationProperty;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyAbstract;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -68,6 +70,19 @@ public class EntityType implements Comparable<EntityType> {
      */
     private final Map<String, Property> propertiesByName = new LinkedHashMap<>();
 
+    /**
+     * The index of each property in the value slots of Entities of this type.
+     * Indices are dense and assigned in registration order.
+     */
+    private final Map<Property, Integer> propertyIndices = new HashMap<>();
+
+    /**
+     * The same indices as propertyIndices, by property instance. Used to look
+     * up the registered property instances without hashing or comparing
+     * property names.
+     */
+    private final Map<Property, Integer> propertyIndicesByInstance = new IdentityHashMap<>();
+
     /**
      * The set of Entity properties.
      */
@@ -99,7 +114,11 @@ public class EntityType implements Comparable<EntityType> {
     }
 
     public EntityType registerProperty(Property property) {
-        properties.add(property);
+        if (properties.add(property)) {
+            final Integer index = propertyIndices.size();
+            propertyIndices.put(property, index);
+            propertyIndicesByInstance.put(property, index);
+        }
         propertiesByName.put(property.getName(), property);
         if (property instanceof EntityPropertyMain) {
             EntityPropertyMain<?> propertyMain = (EntityPropertyMain<?>) property;
@@ -183,7 +202,33 @@ public class EntityType implements Comparable<EntityType> {
     }
 
     public boolean hasProperty(Property property) {
-        return properties.contains(property);
+        return getPropertyIndex(property) >= 0;
+    }
+
+    /**
+     * Get the index of the given property in the value slots of Entities of
+     * this type.
+     *
+     * @param property The property to get the index of.
+     * @return The index of the property, or -1 if this type does not have the
+     * given property.
+     */
+    public int getPropertyIndex(Property property) {
+        Integer index = propertyIndicesByInstance.get(property);
+        if (index == null) {
+            // An equal property from another instance of the same model.
+            index = propertyIndices.get(property);
+        }
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * The number of properties Entities of this type have.
+     *
+     * @return The number of properties.
+     */
+    public int getPropertyCount() {
+        return propertyIndices.size();
     }
 
     /**
@@ -253,11 +298,7 @@ public class EntityType implements Comparable<EntityType> {
             return false;
         }
         EntityType other = (EntityType) obj;
-        if (entityName.equals(other.entityName)) {
-            LOGGER.error("Found other instance of {}", entityName);
-            return true;
-        }
-        return false;
+        return entityName.equals(other.entityName);
     }
 
     @Override
@@ -25,6 +25,7 @@ package de.fraunhofer.iosb.ilt.frostclient.model;
 import static de.fraunhofer.iosb.ilt.frostclient.model.property.type.TypeSimplePrimitive.EDM_STRING;
 import static de.fraunhofer.iosb.ilt.frostclient.utils.SpecialNames.AT_IOT_SELF_LINK;
 
+import de.fraunhofer.iosb.ilt.frostclient.json.deserialize.DeserializerRegistry;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.type.TypeComplex;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.type.TypeSimplePrimitive;
@@ -63,6 +64,12 @@ public class ModelRegistry {
     private final Map<String, PropertyType> propertyTypes = new TreeMap<>();
     private boolean initialised;
 
+    /**
+     * The ObjectMapper and deserializers for this ModelRegistry, created on
+     * first use.
+     */
+    private volatile DeserializerRegistry deserializers;
+
     /**
      * Register a new entity type. Registering the same type twice is a no-op,
      * registering a new entity type with a name that already exists causes an
@@ -85,6 +92,7 @@ public class ModelRegistry {
         entityTypesByName.put(type.plural, type);
         entityTypes.add(type);
         type.setModelRegistry(this);
+        deserializers = null;
         return this;
     }
 
@@ -139,4 +147,25 @@ public class ModelRegistry {
         initialised = true;
     }
 
+    /**
+     * Get the ObjectMapper and deserializers for this ModelRegistry. These are
+     * created once, and again after registering a new EntityType, and are safe
+     * to share between threads.
+     *
+     * @return The DeserializerRegistry for this ModelRegistry.
+     */
+    public DeserializerRegistry getDeserializers() {
+        DeserializerRegistry result = deserializers;
+        if (result == null) {
+            synchronized (this) {
+                result = deserializers;
+                if (result == null) {
+                    result = new DeserializerRegistry(this);
+                    deserializers = result;
+                }
+            }
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.model;
+
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An Iterator over all Entities of an EntitySet that follows nextLinks in the
+ * background. While the caller processes one page, up to prefetchDepth
+ * following pages are requested on the executor of the service.
+ *
+ * Since the nextLink of a page is only known once that page is parsed, each
+ * prefetched page is fully loaded into memory. Call {@link #close()} when not
+ * all Entities are consumed, to cancel pages that are not yet requested.
+ */
+public class PrefetchingEntityIterator implements Iterator<Entity>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingEntityIterator.class.getName());
+
+    private final SensorThingsService service;
+    private final EntityType entityType;
+    private final int prefetchDepth;
+    private final Deque<CompletableFuture<EntitySet>> pages = new ArrayDeque<>();
+    /**
+     * The last requested page, the next page to request follows its nextLink.
+     */
+    private CompletableFuture<EntitySet> tail;
+    private Iterator<Entity> currentIterator;
+    private volatile boolean closed;
+
+    /**
+     * Create an Iterator that first returns the already loaded Entities, and
+     * then follows the given nextLink.
+     *
+     * @param service The service to use for fetching pages.
+     * @param entityType The type of the Entities in the set.
+     * @param loaded The already loaded Entities, can be null.
+     * @param nextLink The link to the next page, can be null.
+     * @param prefetchDepth The number of pages to request ahead of the page
+     * that is being consumed, at least 1.
+     */
+    public PrefetchingEntityIterator(SensorThingsService service, EntityType entityType, Iterator<Entity> loaded, String nextLink, int prefetchDepth) {
+        if (prefetchDepth < 1) {
+            throw new IllegalArgumentException("prefetchDepth must be at least 1, got " + prefetchDepth);
+        }
+        this.service = service;
+        this.entityType = entityType;
+        this.prefetchDepth = prefetchDepth;
+        this.currentIterator = loaded == null ? Collections.emptyIterator() : loaded;
+        if (nextLink != null) {
+            tail = fetchAsync(nextLink);
+            pages.add(tail);
+            fillQueue();
+        }
+    }
+
+    private void fillQueue() {
+        while (!closed && tail != null && pages.size() < prefetchDepth) {
+            tail = tail.thenCompose(set -> {
+                if (set == null || !set.hasNextLink()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                return fetchAsync(set.getNextLink());
+            });
+            pages.add(tail);
+        }
+    }
+
+    private CompletableFuture<EntitySet> fetchAsync(String url) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetchPage(url);
+            } catch (ServiceFailureException ex) {
+                throw new CompletionException(ex);
+            }
+        }, service.getExecutor());
+    }
+
+    private EntitySet fetchPage(String url) throws ServiceFailureException {
+        if (closed) {
+            return null;
+        }
+        HttpGet httpGet = new HttpGet(url);
+        httpGet.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        LOGGER.debug("Prefetching: {}", httpGet.getURI());
+        try (CloseableHttpResponse response = service.execute(httpGet)) {
+            Utils.throwIfNotOk(httpGet, response);
+            EntitySet page = service.getJsonReader().parseEntitySet(entityType, response.getEntity().getContent());
+            page.setService(service);
+            return page;
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap("Failed to fetch entities.", ex);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (currentIterator != null) {
+            if (currentIterator.hasNext()) {
+                return true;
+            }
+            currentIterator = nextPage();
+        }
+        return false;
+    }
+
+    private Iterator<Entity> nextPage() {
+        final CompletableFuture<EntitySet> page = pages.pollFirst();
+        if (page == null) {
+            return null;
+        }
+        fillQueue();
+        try {
+            final EntitySet set = page.join();
+            if (set == null) {
+                close();
+                return null;
+            }
+            return set.toList().iterator();
+        } catch (CompletionException ex) {
+            close();
+            Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            LOGGER.error("Failed to fetch entities: {}", cause.getMessage());
+            throw new RuntimeException(cause);
+        }
+    }
+
+    @Override
+    public Entity next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentIterator.next();
+    }
+
+    /**
+     * Stops prefetching. Pages that are already being requested are finished
+     * and discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (CompletableFuture<EntitySet> page : pages) {
+            page.cancel(false);
+        }
+        pages.clear();
+        tail = null;
+    }
+
+}
@@ -22,6 +22,7 @@
  */
 package de.fraunhofer.iosb.ilt.frostclient.model.ext;
 
+import de.fraunhofer.iosb.ilt.frostclient.utils.Iso8601Codec;
 import de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper;
 import java.text.ParseException;
 import java.time.Instant;
@@ -93,7 +94,19 @@ public class TimeInstant implements TimeObject {
         return this.dateTime.equals(other.dateTime);
     }
 
+    /**
+     * Parse an ISO 8601 date-time. The common forms are parsed by
+     * {@link Iso8601Codec}, other forms are handled by time4j.
+     *
+     * @param value The text to parse.
+     * @return The parsed TimeInstant.
+     * @throws IllegalArgumentException if the value is not a valid date-time.
+     */
     public static TimeInstant parse(String value) {
+        final Moment moment = Iso8601Codec.parseMoment(value);
+        if (moment != null) {
+            return new TimeInstant(moment);
+        }
         try {
             return new TimeInstant(Iso8601Format.EXTENDED_DATE_TIME_OFFSET.parse(value));
         } catch (ParseException ex) {
@@ -115,7 +128,7 @@ public class TimeInstant implements TimeObject {
         if (dateTime == null) {
             return "";
         }
-        return StringHelper.FORMAT_MOMENT.print(dateTime);
+        return Iso8601Codec.printMoment(dateTime);
     }
 
     @Override
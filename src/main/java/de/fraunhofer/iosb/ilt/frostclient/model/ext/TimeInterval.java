@@ -26,6 +26,7 @@ import static de.fraunhofer.iosb.ilt.frostclient.model.property.type.TypeComplex
 import static de.fraunhofer.iosb.ilt.frostclient.model.property.type.TypeComplex.KEY_INTERVAL_START;
 
 import de.fraunhofer.iosb.ilt.frostclient.model.property.type.ComplexValue;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Iso8601Codec;
 import de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper;
 import java.text.ParseException;
 import java.time.Instant;
@@ -80,7 +81,23 @@ public class TimeInterval implements TimeObject, ComplexValue {
         return new TimeInterval(MomentInterval.between(start.toInstant(), end.toInstant()));
     }
 
+    /**
+     * Parse an ISO 8601 interval. Intervals of the form start/end are parsed
+     * by {@link Iso8601Codec}, other forms are handled by time4j.
+     *
+     * @param value The text to parse.
+     * @return The parsed TimeInterval.
+     * @throws IllegalArgumentException if the value is not a valid interval.
+     */
     public static TimeInterval parse(String value) {
+        final int slash = value.indexOf('/');
+        if (slash > 0) {
+            final Moment start = Iso8601Codec.parseMoment(value, 0, slash);
+            final Moment end = start == null ? null : Iso8601Codec.parseMoment(value, slash + 1, value.length());
+            if (end != null) {
+                return new TimeInterval(MomentInterval.between(start, end));
+            }
+        }
         try {
             return new TimeInterval(MomentInterval.parseISO(value));
         } catch (ParseException ex) {
@@ -99,7 +116,20 @@ public class TimeInterval implements TimeObject, ComplexValue {
 
     @Override
     public String asISO8601() {
-        return StringHelper.FORMAT_INTERVAL.print(interval);
+        final MomentInterval canonical = interval.toCanonical();
+        if (canonical.getStart().isInfinite() || canonical.getEnd().isInfinite()) {
+            return StringHelper.FORMAT_INTERVAL.print(interval);
+        }
+        final char[] buffer = new char[2 * Iso8601Codec.MAX_MOMENT_LENGTH + 1];
+        int end = Iso8601Codec.printMoment(canonical.getStartAsMoment(), buffer, 0);
+        if (end >= 0) {
+            buffer[end] = '/';
+            end = Iso8601Codec.printMoment(canonical.getEndAsMoment(), buffer, end + 1);
+        }
+        if (end < 0) {
+            return StringHelper.FORMAT_INTERVAL.print(interval);
+        }
+        return new String(buffer, 0, end);
     }
 
     @Override
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.query;
+
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A query that executes its requests asynchronously, using the non-blocking
+ * httpAsyncClient of the service. The query parameters are the same as for
+ * {@link Query}. The returned futures complete exceptionally with a
+ * ServiceFailureException if a request fails.
+ *
+ * The iterator of the returned EntitySets follows nextLinks synchronously. Use
+ * {@link #fetchNext(EntitySet)} to follow nextLinks asynchronously.
+ */
+public class AsyncQuery {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncQuery.class);
+
+    private final Query query;
+
+    public AsyncQuery(Query query) {
+        this.query = query;
+    }
+
+    public EntityType getEntityType() {
+        return query.getEntityType();
+    }
+
+    public SensorThingsService getService() {
+        return query.getService();
+    }
+
+    public AsyncQuery filter(String options) {
+        query.filter(options);
+        return this;
+    }
+
+    public AsyncQuery top(int n) {
+        query.top(n);
+        return this;
+    }
+
+    public AsyncQuery orderBy(String clause) {
+        query.orderBy(clause);
+        return this;
+    }
+
+    public AsyncQuery skip(int n) {
+        query.skip(n);
+        return this;
+    }
+
+    public AsyncQuery count() {
+        query.count();
+        return this;
+    }
+
+    public AsyncQuery expand(String expansion) {
+        query.expand(expansion);
+        return this;
+    }
+
+    public AsyncQuery select(String... fields) {
+        query.select(fields);
+        return this;
+    }
+
+    /**
+     * Get the first entity matching the query.
+     *
+     * @return A future that completes with the first entity, or null if there
+     * are no matching entities.
+     */
+    public CompletableFuture<Entity> first() {
+        query.top(1);
+        return list().thenApply(set -> {
+            List<Entity> asList = set.toList();
+            return asList.isEmpty() ? null : asList.get(0);
+        });
+    }
+
+    /**
+     * Get the first page of entities matching the query.
+     *
+     * @return A future that completes with the first page of entities.
+     */
+    public CompletableFuture<EntitySet> list() {
+        final HttpGet httpGet;
+        try {
+            httpGet = new HttpGet(query.buildUri());
+        } catch (URISyntaxException ex) {
+            return CompletableFuture.failedFuture(new ServiceFailureException("Failed to fetch entities from query.", ex));
+        } catch (ServiceFailureException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return fetch(httpGet, true);
+    }
+
+    /**
+     * Fetch the page following the given page, by following its nextLink.
+     * The Entities of the page are not put in the Entity cache of the service.
+     *
+     * @param previous The page to get the next page of.
+     * @return A future that completes with the next page, or with null if the
+     * given page has no nextLink.
+     */
+    public CompletableFuture<EntitySet> fetchNext(EntitySet previous) {
+        if (!previous.hasNextLink()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return fetch(new HttpGet(previous.getNextLink()), false);
+    }
+
+    private CompletableFuture<EntitySet> fetch(HttpGet httpGet, boolean cache) {
+        final SensorThingsService service = query.getService();
+        final EntityType entityType = query.getEntityType();
+        LOGGER.debug("Fetching: {}", httpGet.getURI());
+        httpGet.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+        return service.executeAsync(httpGet, response -> {
+            Utils.throwIfNotOk(httpGet, response);
+            EntitySet list = service.getJsonReader().parseEntitySet(entityType, response.getEntity().getContent());
+            list.setService(service);
+            if (cache) {
+                query.cacheResult(httpGet, list);
+            }
+            return list;
+        });
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.query;
+
+import static de.fraunhofer.iosb.ilt.frostclient.utils.SpecialNames.AT_IOT_ID;
+
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.cache.EntityCache;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.EntityPropertyMain;
+import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationProperty;
+import de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.apache.commons.lang3.NotImplementedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads navigation properties for many Entities at once, instead of with one
+ * request per Entity. For each batch of Entities a single query is sent, that
+ * filters on the ids of the Entities and expands the navigation property:
+ *
+ * <pre>
+ * Observations?$filter=id eq 1 or id eq 2&amp;$expand=Datastream&amp;$select=id
+ * </pre>
+ *
+ * The loaded Entities are set on the original Entities. Entities with the same
+ * primary key, loaded in the same call, are shared.
+ *
+ * <pre>
+ * NavigationLoader loader = service.navigationLoader();
+ * List&lt;Entity&gt; things = loader.load(observations, npObservationDatastream, npDatastreamThing);
+ * </pre>
+ */
+public class NavigationLoader {
+
+    /**
+     * The default number of Entities to load the navigation properties for in
+     * one request.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NavigationLoader.class);
+
+    private final SensorThingsService service;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public NavigationLoader(SensorThingsService service) {
+        this.service = service;
+    }
+
+    /**
+     * Sets the number of Entities to load the navigation properties for in one
+     * request. Larger batches give fewer requests, but longer URLs.
+     *
+     * @param batchSize The batch size.
+     * @return this NavigationLoader.
+     */
+    public NavigationLoader setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive.");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Load the given path of navigation properties for the given Entities.
+     * The first navigation property is loaded for the given Entities, the
+     * second for the Entities loaded by the first, and so on. Navigation
+     * properties that are already set are not loaded again.
+     *
+     * @param entities The Entities to load the navigation properties for.
+     * @param path The navigation properties to load.
+     * @return The distinct Entities at the end of the path.
+     * @throws ServiceFailureException if loading fails.
+     */
+    public List<Entity> load(Collection<Entity> entities, NavigationProperty... path) throws ServiceFailureException {
+        List<Entity> current = new ArrayList<>(entities);
+        for (NavigationProperty np : path) {
+            current = loadStep(current, np);
+        }
+        return current;
+    }
+
+    /**
+     * Wraps the given iterator, loading the given path of navigation
+     * properties for each batch of Entities before they are returned. This can
+     * be used to load the navigation properties of the Entities in an
+     * EntitySet, while iterating over it.
+     *
+     * @param source The iterator to wrap.
+     * @param path The navigation properties to load.
+     * @return An iterator returning the Entities of the source, with the
+     * navigation properties loaded.
+     */
+    public Iterator<Entity> iterator(Iterator<Entity> source, NavigationProperty... path) {
+        return new Iterator<Entity>() {
+            private Iterator<Entity> batch = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                if (batch.hasNext()) {
+                    return true;
+                }
+                if (!source.hasNext()) {
+                    return false;
+                }
+                final List<Entity> next = new ArrayList<>(batchSize);
+                while (next.size() < batchSize && source.hasNext()) {
+                    next.add(source.next());
+                }
+                try {
+                    load(next, path);
+                } catch (ServiceFailureException ex) {
+                    LOGGER.error("Failed to load navigation properties: {}", ex.getMessage());
+                    throw new RuntimeException(ex);
+                }
+                batch = next.iterator();
+                return true;
+            }
+
+            @Override
+            public Entity next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.next();
+            }
+        };
+    }
+
+    private List<Entity> loadStep(List<Entity> parents, NavigationProperty np) throws ServiceFailureException {
+        final Map<Object, Entity> targets = new LinkedHashMap<>();
+        final Map<EntityType, Map<Object, List<Entity>>> pendingByType = new LinkedHashMap<>();
+        for (Entity parent : parents) {
+            final EntityType type = parent.getEntityType();
+            if (!type.getNavigationProperties().contains(np)) {
+                throw new IllegalArgumentException("Entities of type " + type + " don't have a navigationProperty " + np);
+            }
+            if (parent.isSetProperty(np)) {
+                addTargets(targets, parent.getProperty(np, false));
+                continue;
+            }
+            final Object pk = primaryKey(parent);
+            if (pk != null) {
+                pendingByType.computeIfAbsent(type, t -> new LinkedHashMap<>())
+                        .computeIfAbsent(pk, k -> new ArrayList<>())
+                        .add(parent);
+            }
+        }
+        for (Map.Entry<EntityType, Map<Object, List<Entity>>> entry : pendingByType.entrySet()) {
+            final List<Object> pks = new ArrayList<>(entry.getValue().keySet());
+            for (int start = 0; start < pks.size(); start += batchSize) {
+                final List<Object> chunk = pks.subList(start, Math.min(start + batchSize, pks.size()));
+                loadChunk(entry.getKey(), chunk, entry.getValue(), np, targets);
+            }
+        }
+        return new ArrayList<>(targets.values());
+    }
+
+    private void loadChunk(EntityType type, List<Object> pks, Map<Object, List<Entity>> parentsByPk, NavigationProperty np, Map<Object, Entity> targets) throws ServiceFailureException {
+        final String pkName = filterName(type.getPrimaryKey().getKeyProperties().get(0));
+        final StringBuilder filter = new StringBuilder();
+        for (Object pk : pks) {
+            if (filter.length() > 0) {
+                filter.append(" or ");
+            }
+            filter.append(pkName).append(" eq ").append(StringHelper.quoteForUrl(pk));
+        }
+        LOGGER.debug("Loading {} for {} {}", np, pks.size(), type.plural);
+        final EntitySet loaded = service.query(type)
+                .filter(filter.toString())
+                .expand(np.getName())
+                .select(pkName)
+                .top(pks.size())
+                .list();
+        for (Entity loadedParent : loaded) {
+            final List<Entity> parents = parentsByPk.get(primaryKey(loadedParent));
+            if (parents == null || !loadedParent.isSetProperty(np)) {
+                continue;
+            }
+            Object value = loadedParent.getProperty(np, false);
+            if (value instanceof Entity target) {
+                value = addTarget(targets, target);
+            } else if (value instanceof EntitySet set) {
+                set.setService(service);
+                addTargets(targets, set);
+            }
+            for (Entity parent : parents) {
+                parent.setLoadedProperty(np, value);
+            }
+        }
+    }
+
+    private void addTargets(Map<Object, Entity> targets, Object value) {
+        if (value instanceof Entity target) {
+            addTarget(targets, target);
+        } else if (value instanceof EntitySet set) {
+            for (Entity target : set.toList()) {
+                addTarget(targets, target);
+            }
+        }
+    }
+
+    /**
+     * Adds the target to the loaded targets, returning the already loaded
+     * instance if there is one with the same primary key.
+     */
+    private Entity addTarget(Map<Object, Entity> targets, Entity target) {
+        final Object pk = primaryKey(target);
+        if (pk == null) {
+            return target;
+        }
+        final Entity existing = targets.get(pk);
+        if (existing != null) {
+            return existing;
+        }
+        target.setService(service);
+        targets.put(pk, target);
+        final EntityCache cache = service.getEntityCache();
+        if (cache != null) {
+            cache.putAll(target);
+        }
+        return target;
+    }
+
+    private static Object primaryKey(Entity entity) {
+        final Object[] pkValues = entity.getPrimaryKeyValues();
+        if (pkValues.length != 1) {
+            throw new NotImplementedException("Multi-valued primary keys are not supported yet.");
+        }
+        final Object pk = pkValues[0];
+        if (pk instanceof Integer || pk instanceof Short || pk instanceof Byte) {
+            return ((Number) pk).longValue();
+        }
+        return pk;
+    }
+
+    private static String filterName(EntityPropertyMain<?> property) {
+        if (AT_IOT_ID.equals(property.getName())) {
+            return "id";
+        }
+        return property.getName();
+    }
+
+}
@@ -23,18 +23,27 @@
 package de.fraunhofer.iosb.ilt.frostclient.query;
 
 import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.cache.EntityCache;
+import de.fraunhofer.iosb.ilt.frostclient.dataarray.DataArrayReader;
+import de.fraunhofer.iosb.ilt.frostclient.dataarray.DataArrayResult;
 import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
 import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySetSpliterator;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostclient.model.PrefetchingEntityIterator;
 import de.fraunhofer.iosb.ilt.frostclient.model.property.NavigationPropertyEntitySet;
 import de.fraunhofer.iosb.ilt.frostclient.utils.Utils;
 import java.io.IOException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import org.apache.http.Consts;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
@@ -160,6 +169,16 @@ public class Query implements QueryRequest, QueryParameter {
         return this;
     }
 
+    /**
+     * Get an asynchronous version of this query. The returned query shares
+     * the parameters with this query.
+     *
+     * @return an asynchronous version of this query.
+     */
+    public AsyncQuery async() {
+        return new AsyncQuery(this);
+    }
+
     @Override
     public Entity first() throws ServiceFailureException {
         this.top(1);
@@ -176,15 +195,7 @@ public class Query implements QueryRequest, QueryParameter {
         EntitySet list;
         HttpGet httpGet;
         try {
-            URIBuilder uriBuilder;
-            if (parent == null) {
-                uriBuilder = new URIBuilder(service.getFullPath(entityType).toURI());
-            } else {
-                uriBuilder = new URIBuilder(service.getFullPath(parent, navigationLink).toURI());
-            }
-
-            uriBuilder.addParameters(params);
-            httpGet = new HttpGet(uriBuilder.build());
+            httpGet = new HttpGet(buildUri());
         } catch (URISyntaxException ex) {
             throw new ServiceFailureException("Failed to fetch entities from query.", ex);
         }
@@ -194,16 +205,134 @@ public class Query implements QueryRequest, QueryParameter {
 
         try (CloseableHttpResponse response = service.execute(httpGet)) {
             Utils.throwIfNotOk(httpGet, response);
-            String json = EntityUtils.toString(response.getEntity(), Consts.UTF_8);
-            list = service.getJsonReader().parseEntitySet(entityType, json);
+            list = service.getJsonReader().parseEntitySet(entityType, response.getEntity().getContent());
         } catch (IOException ex) {
-            throw new ServiceFailureException("Failed to fetch entities from query.", ex);
+            throw ServiceFailureException.wrap("Failed to fetch entities from query.", ex);
         }
 
         list.setService(service);
+        cacheResult(httpGet, list);
         return list;
     }
 
+    /**
+     * Puts the Entities in the given result in the Entity cache of the
+     * service, if it has one and the request had no $select.
+     *
+     * @param httpGet The request that returned the result.
+     * @param result The result to cache.
+     */
+    void cacheResult(HttpGet httpGet, EntitySet result) {
+        final EntityCache cache = service.getEntityCache();
+        if (cache != null && EntityCache.isCacheable(httpGet.getURI())) {
+            cache.putAll(result);
+        }
+    }
+
+    /**
+     * Fetch the first page of the result in the dataArray format. Only
+     * Observations can be requested in this format. The result is stored in
+     * columns, Entities are only created when requested. The result format is
+     * only set for this request, the parameters of this Query are not
+     * changed.
+     *
+     * @return The first page of the result in the dataArray format.
+     * @throws ServiceFailureException If fetching or parsing the result fails.
+     */
+    public DataArrayResult listDataArray() throws ServiceFailureException {
+        final List<NameValuePair> dataArrayParams = new ArrayList<>(params);
+        dataArrayParams.add(new BasicNameValuePair("$resultFormat", "dataArray"));
+        HttpGet httpGet;
+        try {
+            httpGet = new HttpGet(buildUri(dataArrayParams));
+        } catch (URISyntaxException ex) {
+            throw new ServiceFailureException("Failed to fetch entities from query.", ex);
+        }
+
+        LOGGER.debug("Fetching: {}", httpGet.getURI());
+        httpGet.addHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+
+        DataArrayResult result;
+        try (CloseableHttpResponse response = service.execute(httpGet)) {
+            Utils.throwIfNotOk(httpGet, response);
+            result = new DataArrayReader(service.getJsonReader().getMapper())
+                    .read(entityType, response.getEntity().getContent());
+        } catch (IOException ex) {
+            throw ServiceFailureException.wrap("Failed to fetch entities from query.", ex);
+        }
+        result.setService(service);
+        return result;
+    }
+
+    /**
+     * Get a lazily evaluated Stream over all Entities matching the query,
+     * following nextLinks. Entities are parsed one at a time from the
+     * response, so memory use does not depend on the size of the result. The
+     * Stream keeps a connection open until it is fully consumed, so close it
+     * (preferably using try-with-resources) if it is not. The Entities are not
+     * put in the Entity cache of the service.
+     *
+     * @return A Stream over all Entities matching the query.
+     * @throws ServiceFailureException If generating the URL fails.
+     */
+    @Override
+    public Stream<Entity> stream() throws ServiceFailureException {
+        final String url;
+        try {
+            url = buildUri().toString();
+        } catch (URISyntaxException ex) {
+            throw new ServiceFailureException("Failed to fetch entities from query.", ex);
+        }
+        EntitySetSpliterator spliterator = new EntitySetSpliterator(service, entityType, url);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::close);
+    }
+
+    /**
+     * Get a Stream over all Entities matching the query, following nextLinks,
+     * while requesting up to prefetchDepth pages ahead in the background using
+     * the executor of the service. Unlike {@link #stream()}, each page is
+     * fully loaded into memory, so memory use grows with the page size and the
+     * prefetch depth. Close the Stream if it is not fully consumed. The
+     * Entities are not put in the Entity cache of the service.
+     *
+     * @param prefetchDepth The number of pages to request ahead. If less than
+     * 1, no pages are prefetched and the result is the same as
+     * {@link #stream()}.
+     * @return A Stream over all Entities matching the query.
+     * @throws ServiceFailureException If generating the URL fails.
+     */
+    @Override
+    public Stream<Entity> stream(int prefetchDepth) throws ServiceFailureException {
+        if (prefetchDepth < 1) {
+            return stream();
+        }
+        final String url;
+        try {
+            url = buildUri().toString();
+        } catch (URISyntaxException ex) {
+            throw new ServiceFailureException("Failed to fetch entities from query.", ex);
+        }
+        PrefetchingEntityIterator iterator = new PrefetchingEntityIterator(service, entityType, null, url, prefetchDepth);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    URI buildUri() throws URISyntaxException, ServiceFailureException {
+        return buildUri(params);
+    }
+
+    private URI buildUri(List<NameValuePair> params) throws URISyntaxException, ServiceFailureException {
+        URIBuilder uriBuilder;
+        if (parent == null) {
+            uriBuilder = new URIBuilder(service.getFullPath(entityType).toURI());
+        } else {
+            uriBuilder = new URIBuilder(service.getFullPath(parent, navigationLink).toURI());
+        }
+        uriBuilder.addParameters(params);
+        return uriBuilder.build();
+    }
+
     public void delete() throws ServiceFailureException {
         removeAllParams("$top");
         removeAllParams("$skip");
@@ -213,14 +342,7 @@ public class Query implements QueryRequest, QueryParameter {
 
         HttpDelete httpDelete;
         try {
-            URIBuilder uriBuilder;
-            if (parent != null) {
-                uriBuilder = new URIBuilder(service.getFullPath(parent, navigationLink).toURI());
-            } else {
-                uriBuilder = new URIBuilder(service.getFullPath(entityType).toURI());
-            }
-            uriBuilder.addParameters(params);
-            httpDelete = new HttpDelete(uriBuilder.build());
+            httpDelete = new HttpDelete(buildUri());
         } catch (URISyntaxException ex) {
             throw new ServiceFailureException("Failed to delete from query.", ex);
         }
@@ -232,7 +354,7 @@ public class Query implements QueryRequest, QueryParameter {
             Utils.throwIfNotOk(httpDelete, response);
             EntityUtils.consumeQuietly(response.getEntity());
         } catch (IOException ex) {
-            throw new ServiceFailureException("Failed to delete from query.", ex);
+            throw ServiceFailureException.wrap("Failed to delete from query.", ex);
         }
 
     }
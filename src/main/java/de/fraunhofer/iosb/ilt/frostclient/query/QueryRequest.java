@@ -25,6 +25,7 @@ package de.fraunhofer.iosb.ilt.frostclient.query;
 import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
 import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import java.util.stream.Stream;
 
 /**
  * Request methods a query should support.
@@ -46,4 +47,31 @@ public interface QueryRequest {
      * @throws ServiceFailureException the request failed
      */
     EntitySet list() throws ServiceFailureException;
+
+    /**
+     * Get a lazily evaluated Stream over all entities of the collection,
+     * following nextLinks. The default implementation streams the entity
+     * collection returned by {@link #list()}.
+     *
+     * @return A Stream over all entities of the collection.
+     * @throws ServiceFailureException the request failed
+     */
+    default Stream<Entity> stream() throws ServiceFailureException {
+        return list().stream();
+    }
+
+    /**
+     * Get a Stream over all entities of the collection, following nextLinks,
+     * while requesting up to prefetchDepth pages ahead in the background. The
+     * default implementation streams the entity collection returned by
+     * {@link #list()}.
+     *
+     * @param prefetchDepth The number of pages to request ahead. If less than
+     * 1, no pages are prefetched.
+     * @return A Stream over all entities of the collection.
+     * @throws ServiceFailureException the request failed
+     */
+    default Stream<Entity> stream(int prefetchDepth) throws ServiceFailureException {
+        return list().stream(prefetchDepth);
+    }
 }
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import de.fraunhofer.iosb.ilt.frostclient.exception.RequestRejectedException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException.Reason;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in progress to a limit that adapts to how the
+ * server copes, using Additive Increase, Multiplicative Decrease (AIMD).
+ *
+ * Each request that completes normally, while at least half the limit is in
+ * use, raises the limit by one. Each request that fails, is answered with a
+ * 429 or 5xx status, or takes much longer than the baseline latency, lowers
+ * the limit by the backoff ratio. The baseline latency is an exponentially
+ * weighted moving average of the latency of requests that were not dropped,
+ * so that a single fast outlier does not make all following requests count
+ * as slow, and the baseline follows lasting changes in both directions.
+ *
+ * Requests over the limit wait in a queue. Synchronous requests block,
+ * asynchronous requests are started when a slot becomes free.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<CompletableFuture<Void>> queue = new ArrayDeque<>();
+    private int minLimit = 1;
+    private int maxLimit = 200;
+    private double backoffRatio = 0.9;
+    private double latencyTolerance = 2.0;
+    private double baselineSmoothing = 0.05;
+    private int maxQueueDepth = Integer.MAX_VALUE;
+    private double limit;
+    private int inFlight;
+    private double baselineNanos = -1;
+
+    /**
+     * Create a limit that starts at 10 concurrent requests.
+     */
+    public AdaptiveConcurrencyLimit() {
+        this(10);
+    }
+
+    /**
+     * Create a limit.
+     *
+     * @param initialLimit The initial number of concurrent requests.
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit) {
+        if (initialLimit < 1) {
+            throw new IllegalArgumentException("initialLimit must be at least 1, got " + initialLimit);
+        }
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Takes a slot, without blocking. Every slot must be returned with
+     * {@link #onComplete(long, boolean)} or {@link #release()}.
+     *
+     * @return A future that completes when the slot is taken, or completes
+     * exceptionally with a RequestRejectedException if the queue is full.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (queue.size() >= maxQueueDepth) {
+                return CompletableFuture.failedFuture(new RequestRejectedException(new ServiceUnavailableException(
+                        Reason.CONCURRENCY_LIMITED, "Maximum of " + maxQueueDepth + " requests waiting for the concurrency limit reached.")));
+            }
+            final CompletableFuture<Void> waiter = new CompletableFuture<>();
+            queue.add(waiter);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a slot, blocking until one is available. Every slot must be
+     * returned with {@link #onComplete(long, boolean)} or {@link #release()}.
+     *
+     * @throws IOException If the queue is full, or the thread is interrupted
+     * while waiting.
+     */
+    public void acquire() throws IOException {
+        final CompletableFuture<Void> waiter = acquireAsync();
+        try {
+            waiter.get();
+        } catch (ExecutionException ex) {
+            throw (IOException) ex.getCause();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (!waiter.cancel(false)) {
+                // The slot was given to us just now.
+                release();
+            }
+            throw new InterruptedIOException("Interrupted while waiting for the concurrency limit.");
+        }
+    }
+
+    /**
+     * Returns a slot, and adapts the limit to the outcome of the request.
+     *
+     * @param durationNanos The duration of the request in nanoseconds.
+     * @param dropped Flag indicating the request failed, or the server
+     * indicated it is overloaded.
+     */
+    public void onComplete(long durationNanos, boolean dropped) {
+        final List<CompletableFuture<Void>> ready;
+        lock.lock();
+        try {
+            final boolean slow = baselineNanos > 0 && durationNanos > baselineNanos * latencyTolerance;
+            if (!dropped) {
+                if (baselineNanos < 0) {
+                    baselineNanos = durationNanos;
+                } else {
+                    baselineNanos += (durationNanos - baselineNanos) * baselineSmoothing;
+                }
+            }
+            if (dropped || slow) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            inFlight--;
+            ready = takeReady();
+        } finally {
+            lock.unlock();
+        }
+        complete(ready);
+    }
+
+    /**
+     * Returns a slot that was not used for a request.
+     */
+    public void release() {
+        final List<CompletableFuture<Void>> ready;
+        lock.lock();
+        try {
+            inFlight--;
+            ready = takeReady();
+        } finally {
+            lock.unlock();
+        }
+        complete(ready);
+    }
+
+    private List<CompletableFuture<Void>> takeReady() {
+        List<CompletableFuture<Void>> ready = null;
+        while (!queue.isEmpty() && inFlight < (int) limit) {
+            if (ready == null) {
+                ready = new ArrayList<>();
+            }
+            ready.add(queue.poll());
+            inFlight++;
+        }
+        return ready;
+    }
+
+    /**
+     * Completes the waiters outside the lock, since completing runs the
+     * dependent actions of the waiter.
+     */
+    private void complete(List<CompletableFuture<Void>> ready) {
+        if (ready == null) {
+            return;
+        }
+        for (CompletableFuture<Void> waiter : ready) {
+            if (!waiter.complete(null)) {
+                // The waiter was cancelled, pass the slot on.
+                release();
+            }
+        }
+    }
+
+    /**
+     * Get the current limit.
+     *
+     * @return The current number of requests allowed in progress.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of requests in progress.
+     *
+     * @return The number of requests in progress.
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of requests waiting for a slot.
+     *
+     * @return The number of waiting requests.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the baseline latency that requests are compared against.
+     *
+     * @return The baseline latency in nanoseconds, or -1 if no request has
+     * completed yet.
+     */
+    public long getBaselineNanos() {
+        lock.lock();
+        try {
+            return (long) baselineNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the lowest value the limit can drop to. The default is 1.
+     *
+     * @param minLimit The minimum limit.
+     * @return this AdaptiveConcurrencyLimit.
+     */
+    public AdaptiveConcurrencyLimit setMinLimit(int minLimit) {
+        lock.lock();
+        try {
+            this.minLimit = Math.max(1, minLimit);
+            this.limit = Math.max(this.minLimit, limit);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Sets the highest value the limit can grow to. The default is 200.
+     *
+     * @param maxLimit The maximum limit.
+     * @return this AdaptiveConcurrencyLimit.
+     */
+    public AdaptiveConcurrencyLimit setMaxLimit(int maxLimit) {
+        lock.lock();
+        try {
+            this.maxLimit = maxLimit;
+            this.limit = Math.min(maxLimit, limit);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Sets the factor the limit is multiplied with when a request is
+     * dropped. The default is 0.9.
+     *
+     * @param backoffRatio The backoff ratio, between 0 and 1.
+     * @return this AdaptiveConcurrencyLimit.
+     */
+    public AdaptiveConcurrencyLimit setBackoffRatio(double backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1, got " + backoffRatio);
+        }
+        lock.lock();
+        try {
+            this.backoffRatio = backoffRatio;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Sets how many times longer than the baseline latency a request may
+     * take before it counts as dropped. The default is 2.
+     *
+     * @param latencyTolerance The latency tolerance.
+     * @return this AdaptiveConcurrencyLimit.
+     */
+    public AdaptiveConcurrencyLimit setLatencyTolerance(double latencyTolerance) {
+        lock.lock();
+        try {
+            this.latencyTolerance = latencyTolerance;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * Sets the weight of the latest request in the moving average of the
+     * baseline latency. Higher values follow changes faster, but are more
+     * sensitive to outliers. The default is 0.05.
+     *
+     * @param baselineSmoothing The weight, between 0 and 1.
+     * @return this AdaptiveConcurrencyLimit.
+     */
+    public AdaptiveConcurrencyLimit setBaselineSmoothing(double baselineSmoothing) {
+        if (baselineSmoothing <= 0 || baselineSmoothing > 1) {
+            throw new IllegalArgumentException("baselineSmoothing must be between 0 and 1, got " + baselineSmoothing);
+        }
+        lock.lock();
+        try {
+            this.baselineSmoothing = baselineSmoothing;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public double getBaselineSmoothing() {
+        return baselineSmoothing;
+    }
+
+    /**
+     * Sets the maximum number of requests that can wait for a slot. Requests
+     * beyond that are rejected. By default the queue is not limited.
+     *
+     * @param maxQueueDepth The maximum number of waiting requests.
+     * @return this AdaptiveConcurrencyLimit.
+     */
+    public AdaptiveConcurrencyLimit setMaxQueueDepth(int maxQueueDepth) {
+        lock.lock();
+        try {
+            this.maxQueueDepth = maxQueueDepth;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * The default HttpTransport, using the Apache httpClient and httpAsyncClient of
+ * the SensorThingsService.
+ */
+public class ApacheHttpTransport implements HttpTransport {
+
+    private final SensorThingsService service;
+
+    public ApacheHttpTransport(SensorThingsService service) {
+        this.service = service;
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+        return service.getHttpClient().execute(request);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequestBase request) {
+        final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        final Future<HttpResponse> future = service.getHttpAsyncClient().execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                result.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        // Aborting the request cancels the exchange.
+        request.setCancellable(() -> future.cancel(true));
+        return result;
+    }
+
+}
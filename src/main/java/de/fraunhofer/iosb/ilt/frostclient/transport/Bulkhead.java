@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import de.fraunhofer.iosb.ilt.frostclient.exception.RequestRejectedException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException.Reason;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests to a service that are in progress at the same
+ * time, so a slow service can not block all threads of the application. A
+ * request that does not get a permit within the maximum wait time is
+ * rejected. Asynchronous requests never wait.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrent;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+
+    /**
+     * Create a bulkhead that rejects requests immediately when the maximum
+     * number of requests is in progress.
+     *
+     * @param maxConcurrent The maximum number of requests in progress.
+     */
+    public Bulkhead(int maxConcurrent) {
+        this(maxConcurrent, 0);
+    }
+
+    /**
+     * Create a bulkhead.
+     *
+     * @param maxConcurrent The maximum number of requests in progress.
+     * @param maxWaitMs The maximum time a synchronous request waits for a
+     * permit.
+     */
+    public Bulkhead(int maxConcurrent, long maxWaitMs) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be at least 1, got " + maxConcurrent);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Acquire a permit, waiting at most the maximum wait time. Every permit
+     * must be returned with {@link #release()}.
+     *
+     * @throws RequestRejectedException If no permit is available in time.
+     * @throws InterruptedIOException If the thread is interrupted while
+     * waiting.
+     */
+    public void acquire() throws RequestRejectedException, InterruptedIOException {
+        try {
+            if (maxWaitMs <= 0 ? permits.tryAcquire() : permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request permit.");
+        }
+        throw rejection();
+    }
+
+    /**
+     * Acquire a permit without waiting. Every permit must be returned with
+     * {@link #release()}.
+     *
+     * @throws RequestRejectedException If no permit is available.
+     */
+    public void tryAcquire() throws RequestRejectedException {
+        if (!permits.tryAcquire()) {
+            throw rejection();
+        }
+    }
+
+    private RequestRejectedException rejection() {
+        return new RequestRejectedException(new ServiceUnavailableException(Reason.BULKHEAD_FULL, "Maximum of " + maxConcurrent + " concurrent requests reached."));
+    }
+
+    /**
+     * Return a permit.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    /**
+     * Get the number of requests currently in progress.
+     *
+     * @return The number of requests in progress.
+     */
+    public int getInProgress() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of threads waiting for a permit.
+     *
+     * @return The number of waiting threads.
+     */
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import de.fraunhofer.iosb.ilt.frostclient.exception.RequestRejectedException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException.Reason;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A circuit breaker that stops requests to a service that is failing or slow,
+ * so callers fail fast instead of waiting for timeouts, and the service gets
+ * time to recover.
+ *
+ * The outcomes of the last calls are kept in a sliding window. When, after at
+ * least the minimum number of calls, the rate of failed calls or the rate of
+ * slow calls reaches its threshold, the breaker opens and rejects all
+ * requests. After the open duration, the breaker is half-open and lets a few
+ * probe requests through. If those do well, the breaker closes, otherwise it
+ * opens again.
+ *
+ * A call failed if it threw an IOException, or if the server answered with a
+ * 5xx status code. Each permission is tagged with the state it was granted
+ * in. Results of calls that were permitted in an earlier state, for instance
+ * slow calls that started before the breaker opened, are ignored, so that
+ * only the probe requests decide if a half-open breaker closes.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final byte OUTCOME_FAILED = 1;
+    private static final byte OUTCOME_SLOW = 2;
+
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 1.0;
+    private long slowCallDurationNanos = TimeUnit.SECONDS.toNanos(60);
+    private long openDurationNanos = TimeUnit.SECONDS.toNanos(30);
+    private int halfOpenCalls = 3;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private State state = State.CLOSED;
+    /**
+     * Incremented on every state change, to recognise permissions that were
+     * granted in an earlier state.
+     */
+    private long generation;
+    private byte[] window = new byte[windowSize];
+    private int windowPos;
+    private int windowCount;
+    private int failedCount;
+    private int slowCount;
+    private long openedAt;
+    private int halfOpenPermitted;
+    private int halfOpenDone;
+    private int halfOpenFailed;
+    private int halfOpenSlow;
+    private long rejectedCount;
+
+    /**
+     * Checks if a call may be made. Every call for which this method returns
+     * normally must be followed by {@link #onResult(long, long, boolean)} or
+     * {@link #releasePermission(long)}, passing the returned permission.
+     *
+     * @return The permission, identifying the state it was granted in.
+     * @throws RequestRejectedException If the breaker is open.
+     */
+    public long acquirePermission() throws RequestRejectedException {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    rejectedCount++;
+                    throw new RequestRejectedException(new ServiceUnavailableException(Reason.CIRCUIT_OPEN, "Circuit breaker is open."));
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermitted >= halfOpenCalls) {
+                    rejectedCount++;
+                    throw new RequestRejectedException(new ServiceUnavailableException(Reason.CIRCUIT_OPEN, "Circuit breaker is half-open, and waiting for probe requests."));
+                }
+                halfOpenPermitted++;
+            }
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permission that was acquired, but not used to make a call.
+     *
+     * @param permission The permission returned by {@link #acquirePermission()}.
+     */
+    public void releasePermission(long permission) {
+        lock.lock();
+        try {
+            if (permission == generation && state == State.HALF_OPEN && halfOpenPermitted > halfOpenDone) {
+                halfOpenPermitted--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the outcome of a call. Outcomes of calls that were permitted in
+     * an earlier state of the breaker are ignored.
+     *
+     * @param permission The permission returned by {@link #acquirePermission()}.
+     * @param durationNanos The duration of the call, in nanoseconds.
+     * @param failed Flag indicating the call failed.
+     */
+    public void onResult(long permission, long durationNanos, boolean failed) {
+        lock.lock();
+        try {
+            if (permission != generation) {
+                return;
+            }
+            final boolean slow = durationNanos >= slowCallDurationNanos;
+            switch (state) {
+                case HALF_OPEN:
+                    halfOpenDone++;
+                    halfOpenFailed += failed ? 1 : 0;
+                    halfOpenSlow += slow ? 1 : 0;
+                    if (halfOpenDone >= halfOpenCalls) {
+                        if (exceedsThresholds(halfOpenFailed, halfOpenSlow, halfOpenDone)) {
+                            transitionTo(State.OPEN);
+                        } else {
+                            transitionTo(State.CLOSED);
+                        }
+                    }
+                    break;
+
+                case CLOSED:
+                    record((byte) ((failed ? OUTCOME_FAILED : 0) | (slow ? OUTCOME_SLOW : 0)));
+                    if (windowCount >= minimumCalls && exceedsThresholds(failedCount, slowCount, windowCount)) {
+                        transitionTo(State.OPEN);
+                    }
+                    break;
+
+                default:
+                    // No calls are permitted while open.
+                    break;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean exceedsThresholds(int failed, int slow, int total) {
+        return failed >= failureRateThreshold * total || slow >= slowCallRateThreshold * total;
+    }
+
+    private void record(byte outcome) {
+        if (windowCount == window.length) {
+            final byte old = window[windowPos];
+            failedCount -= (old & OUTCOME_FAILED) == 0 ? 0 : 1;
+            slowCount -= (old & OUTCOME_SLOW) == 0 ? 0 : 1;
+        } else {
+            windowCount++;
+        }
+        window[windowPos] = outcome;
+        failedCount += (outcome & OUTCOME_FAILED) == 0 ? 0 : 1;
+        slowCount += (outcome & OUTCOME_SLOW) == 0 ? 0 : 1;
+        windowPos = (windowPos + 1) % window.length;
+    }
+
+    private void transitionTo(State newState) {
+        LOGGER.info("Circuit breaker changes from {} to {}", state, newState);
+        state = newState;
+        generation++;
+        windowPos = 0;
+        windowCount = 0;
+        failedCount = 0;
+        slowCount = 0;
+        halfOpenPermitted = 0;
+        halfOpenDone = 0;
+        halfOpenFailed = 0;
+        halfOpenSlow = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Get the current state of the breaker. An open breaker whose open
+     * duration has passed is reported as open until the next request.
+     *
+     * @return The current state.
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of requests rejected by this breaker.
+     *
+     * @return The number of rejected requests.
+     */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the breaker and forgets all recorded calls.
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            transitionTo(State.CLOSED);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of recent calls used to calculate the failure and slow
+     * call rates. The default is 20. Resets the recorded calls.
+     *
+     * @param windowSize The number of calls in the sliding window.
+     * @return this CircuitBreaker.
+     */
+    public CircuitBreaker setWindowSize(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1, got " + windowSize);
+        }
+        lock.lock();
+        try {
+            this.windowSize = windowSize;
+            this.window = new byte[windowSize];
+            transitionTo(state);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public int getWindowSize() {
+        lock.lock();
+        try {
+            return windowSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of calls that must be recorded before the breaker can
+     * open. The default is 10.
+     *
+     * @param minimumCalls The minimum number of calls.
+     * @return this CircuitBreaker.
+     */
+    public CircuitBreaker setMinimumCalls(int minimumCalls) {
+        lock.lock();
+        try {
+            this.minimumCalls = minimumCalls;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public int getMinimumCalls() {
+        lock.lock();
+        try {
+            return minimumCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the rate of failed calls at which the breaker opens. The default
+     * is 0.5.
+     *
+     * @param failureRateThreshold The failure rate, between 0 and 1.
+     * @return this CircuitBreaker.
+     */
+    public CircuitBreaker setFailureRateThreshold(double failureRateThreshold) {
+        lock.lock();
+        try {
+            this.failureRateThreshold = failureRateThreshold;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public double getFailureRateThreshold() {
+        lock.lock();
+        try {
+            return failureRateThreshold;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the rate of slow calls at which the breaker opens. The default is
+     * 1, the breaker only opens when all calls are slow.
+     *
+     * @param slowCallRateThreshold The slow call rate, between 0 and 1.
+     * @return this CircuitBreaker.
+     */
+    public CircuitBreaker setSlowCallRateThreshold(double slowCallRateThreshold) {
+        lock.lock();
+        try {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public double getSlowCallRateThreshold() {
+        lock.lock();
+        try {
+            return slowCallRateThreshold;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the duration from which calls count as slow. The default is 60
+     * seconds.
+     *
+     * @param slowCallDurationMs The duration in milliseconds.
+     * @return this CircuitBreaker.
+     */
+    public CircuitBreaker setSlowCallDurationMs(long slowCallDurationMs) {
+        lock.lock();
+        try {
+            this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationMs);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public long getSlowCallDurationMs() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(slowCallDurationNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the time the breaker stays open before letting probe requests
+     * through. The default is 30 seconds.
+     *
+     * @param openDurationMs The duration in milliseconds.
+     * @return this CircuitBreaker.
+     */
+    public CircuitBreaker setOpenDurationMs(long openDurationMs) {
+        lock.lock();
+        try {
+            this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public long getOpenDurationMs() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(openDurationNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of probe requests let through when half-open. The
+     * default is 3.
+     *
+     * @param halfOpenCalls The number of probe requests.
+     * @return this CircuitBreaker.
+     */
+    public CircuitBreaker setHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls < 1) {
+            throw new IllegalArgumentException("halfOpenCalls must be at least 1, got " + halfOpenCalls);
+        }
+        lock.lock();
+        try {
+            this.halfOpenCalls = halfOpenCalls;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public int getHalfOpenCalls() {
+        lock.lock();
+        try {
+            return halfOpenCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
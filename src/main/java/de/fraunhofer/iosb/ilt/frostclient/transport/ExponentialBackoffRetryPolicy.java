@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * A RetryPolicy that retries idempotent requests that failed with an
+ * IOException or with one of a set of status codes, waiting exponentially
+ * longer after each attempt. A random part of each delay is dropped (jitter),
+ * so that many clients failing at the same time do not retry at the same
+ * time. A Retry-After header sent by the server is honoured, up to the
+ * maximum delay.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    /**
+     * The methods that are retried by default.
+     */
+    public static final Set<String> DEFAULT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+    /**
+     * The status codes that are retried by default.
+     */
+    public static final Set<Integer> DEFAULT_STATUS_CODES = Set.of(429, 502, 503, 504);
+
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private int maxRetries = 3;
+    private long initialDelayMs = 500;
+    private long maxDelayMs = 30_000;
+    private double multiplier = 2;
+    private double jitter = 0.5;
+    private Set<String> methods = DEFAULT_METHODS;
+    private Set<Integer> statusCodes = DEFAULT_STATUS_CODES;
+
+    @Override
+    public long retryDelay(HttpRequestBase request, int attempt, HttpResponse response, IOException failure) {
+        if (attempt > maxRetries || !methods.contains(request.getMethod()) || !isRepeatable(request)) {
+            return -1;
+        }
+        long retryAfterMs = -1;
+        if (response != null) {
+            if (!statusCodes.contains(response.getStatusLine().getStatusCode())) {
+                return -1;
+            }
+            retryAfterMs = parseRetryAfter(response.getFirstHeader(HEADER_RETRY_AFTER));
+        }
+        final double backoff = Math.min(maxDelayMs, initialDelayMs * Math.pow(multiplier, attempt - 1.0));
+        final long delay = (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+        return Math.min(maxDelayMs, Math.max(delay, retryAfterMs));
+    }
+
+    private static boolean isRepeatable(HttpRequestBase request) {
+        if (request instanceof HttpEntityEnclosingRequest enclosing) {
+            final HttpEntity entity = enclosing.getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    /**
+     * Parses the value of a Retry-After header, that is either a number of
+     * seconds, or a date.
+     *
+     * @param header The header to parse, may be null.
+     * @return The delay in milliseconds, or -1 if there is no valid header.
+     */
+    static long parseRetryAfter(Header header) {
+        if (header == null) {
+            return -1;
+        }
+        final String value = header.getValue().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ex) {
+            final Date date = DateUtils.parseDate(value);
+            if (date == null) {
+                return -1;
+            }
+            return Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Sets the maximum number of times a request is retried. The default is
+     * 3.
+     *
+     * @param maxRetries The maximum number of retries.
+     * @return this ExponentialBackoffRetryPolicy.
+     */
+    public ExponentialBackoffRetryPolicy setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the delay before the first retry. The default is 500 ms.
+     *
+     * @param initialDelayMs The delay before the first retry in milliseconds.
+     * @return this ExponentialBackoffRetryPolicy.
+     */
+    public ExponentialBackoffRetryPolicy setInitialDelayMs(long initialDelayMs) {
+        this.initialDelayMs = initialDelayMs;
+        return this;
+    }
+
+    public long getInitialDelayMs() {
+        return initialDelayMs;
+    }
+
+    /**
+     * Sets the maximum delay between attempts, also for delays requested
+     * with a Retry-After header. The default is 30 seconds.
+     *
+     * @param maxDelayMs The maximum delay in milliseconds.
+     * @return this ExponentialBackoffRetryPolicy.
+     */
+    public ExponentialBackoffRetryPolicy setMaxDelayMs(long maxDelayMs) {
+        this.maxDelayMs = maxDelayMs;
+        return this;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    /**
+     * Sets the factor the delay grows with after each attempt. The default is
+     * 2.
+     *
+     * @param multiplier The factor the delay grows with.
+     * @return this ExponentialBackoffRetryPolicy.
+     */
+    public ExponentialBackoffRetryPolicy setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Sets the part of each delay that is randomly dropped. With a jitter of
+     * 0.5, the default, the delay is between half and all of the exponential
+     * delay.
+     *
+     * @param jitter The jitter, between 0 and 1.
+     * @return this ExponentialBackoffRetryPolicy.
+     */
+    public ExponentialBackoffRetryPolicy setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1, got " + jitter);
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Sets the http methods that are retried. The default is
+     * {@link #DEFAULT_METHODS}. Only add methods that are idempotent on the
+     * server.
+     *
+     * @param methods The http methods that are retried.
+     * @return this ExponentialBackoffRetryPolicy.
+     */
+    public ExponentialBackoffRetryPolicy setMethods(Set<String> methods) {
+        this.methods = Set.copyOf(methods);
+        return this;
+    }
+
+    public Set<String> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Sets the status codes that are retried. The default is
+     * {@link #DEFAULT_STATUS_CODES}.
+     *
+     * @param statusCodes The status codes that are retried.
+     * @return this ExponentialBackoffRetryPolicy.
+     */
+    public ExponentialBackoffRetryPolicy setStatusCodes(Set<Integer> statusCodes) {
+        this.statusCodes = Set.copyOf(statusCodes);
+        return this;
+    }
+
+    public Set<Integer> getStatusCodes() {
+        return statusCodes;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Sends the http requests of a SensorThingsService to the server. Requests and
+ * responses are represented using the Apache HttpClient classes, the transport
+ * decides how they are sent.
+ *
+ * The SensorThingsService prepares the request before passing it to the
+ * transport: the url is fixed, the timeouts are set in the RequestConfig of the
+ * request and any authentication headers are added.
+ */
+public interface HttpTransport {
+
+    /**
+     * Execute the given request, blocking until the response headers are
+     * received. The caller must close the response.
+     *
+     * @param request The request to execute.
+     * @return the response.
+     * @throws IOException in case of problems.
+     */
+    public CloseableHttpResponse execute(HttpRequestBase request) throws IOException;
+
+    /**
+     * Execute the given request asynchronously. The returned future completes
+     * with the response, with the content of the response fully buffered, or
+     * exceptionally with an IOException.
+     *
+     * @param request The request to execute.
+     * @return a future that completes with the response.
+     */
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequestBase request);
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+/**
+ * An HttpTransport using the java.net.http.HttpClient of the JDK. The client
+ * negotiates HTTP/2 with the server, so concurrent requests to the same server
+ * share a single connection. Servers that do not support HTTP/2 are talked to
+ * using HTTP/1.1.
+ *
+ * The TokenManagers still use the Apache httpClient of the SensorThingsService
+ * to fetch their tokens.
+ *
+ * The timeouts of the RequestConfig are mapped as well as the JDK client
+ * allows. The connect timeout is set on the HttpClient. The JDK client has no
+ * socket timeout, the time to wait for data between packets. Instead, the
+ * socket timeout limits the time until the response headers are received,
+ * after the connection is established. Reading the response body is not
+ * limited.
+ */
+public class JdkHttpTransport implements HttpTransport {
+
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+
+    /**
+     * Headers that are set by the JDK HttpClient itself, and that it refuses
+     * to accept from the caller.
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    /**
+     * The client, with the connect timeout it was built with, or null if the
+     * client was given by the user.
+     */
+    private record TimedClient(HttpClient client, Integer connectTimeoutMs) {
+    }
+
+    private volatile TimedClient timedClient;
+
+    /**
+     * Create a transport with a new HttpClient that prefers HTTP/2 and follows
+     * redirects. The client is built using the connect timeout of the
+     * requests, and is built anew when that timeout changes.
+     */
+    public JdkHttpTransport() {
+        // The client is built when the first request comes in.
+    }
+
+    /**
+     * Create a transport using the given HttpClient. The connect timeout of
+     * the client is not changed to match the connect timeout of the requests.
+     *
+     * @param client The client to use for sending requests.
+     */
+    public JdkHttpTransport(HttpClient client) {
+        this.timedClient = new TimedClient(client, null);
+    }
+
+    /**
+     * Get the client used for the last request. For a transport created
+     * without a client this is null until the first request is made.
+     *
+     * @return The HttpClient used for requests.
+     */
+    public HttpClient getClient() {
+        final TimedClient current = timedClient;
+        return current == null ? null : current.client();
+    }
+
+    private HttpClient getClient(HttpRequestBase request) {
+        final RequestConfig config = request.getConfig();
+        final int connectTimeoutMs = config == null ? -1 : config.getConnectTimeout();
+        final TimedClient current = timedClient;
+        if (current != null && (current.connectTimeoutMs() == null || current.connectTimeoutMs() == connectTimeoutMs)) {
+            return current.client();
+        }
+        final HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (connectTimeoutMs > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeoutMs));
+        }
+        final TimedClient created = new TimedClient(builder.build(), connectTimeoutMs);
+        // If requests with different timeouts race, the last one wins, which is fine.
+        timedClient = created;
+        return created.client();
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+        final java.net.http.HttpResponse<InputStream> response;
+        try {
+            response = getClient(request).send(toJdkRequest(request), BodyHandlers.ofInputStream());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response to " + request.getURI());
+        }
+        return toApacheResponse(response, response.body());
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequestBase request) {
+        final HttpRequest jdkRequest;
+        final HttpClient client;
+        try {
+            jdkRequest = toJdkRequest(request);
+            client = getClient(request);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        final CompletableFuture<java.net.http.HttpResponse<byte[]>> future = client.sendAsync(jdkRequest, BodyHandlers.ofByteArray());
+        // Aborting the request cancels the exchange.
+        request.setCancellable(() -> future.cancel(true));
+        return future.thenApply(response -> toApacheResponse(response, new ByteArrayInputStream(response.body())));
+    }
+
+    private static HttpRequest toJdkRequest(HttpRequestBase request) throws IOException {
+        final HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.getURI());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid request URI: " + request.getURI(), ex);
+        }
+        final RequestConfig config = request.getConfig();
+        if (config != null && config.getSocketTimeout() > 0) {
+            // The request timeout runs from sending until the response headers
+            // arrive, and includes connecting, so the connect time is added.
+            final long connectMs = Math.max(0, config.getConnectTimeout());
+            builder.timeout(Duration.ofMillis(config.getSocketTimeout() + connectMs));
+        }
+        for (Header header : request.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+        HttpEntity entity = null;
+        if (request instanceof HttpEntityEnclosingRequest enclosing) {
+            entity = enclosing.getEntity();
+        }
+        if (entity == null) {
+            return builder.method(request.getMethod(), BodyPublishers.noBody()).build();
+        }
+        if (entity.getContentType() != null && !request.containsHeader(HEADER_CONTENT_TYPE)) {
+            builder.header(HEADER_CONTENT_TYPE, entity.getContentType().getValue());
+        }
+        if (entity.getContentEncoding() != null && !request.containsHeader(HEADER_CONTENT_ENCODING)) {
+            builder.header(HEADER_CONTENT_ENCODING, entity.getContentEncoding().getValue());
+        }
+        return builder.method(request.getMethod(), toBodyPublisher(entity)).build();
+    }
+
+    private static BodyPublisher toBodyPublisher(HttpEntity entity) throws IOException {
+        final long length = entity.getContentLength();
+        if (!entity.isRepeatable() || length < 0) {
+            // Entities of unknown length may only support writeTo, like the
+            // GzipCompressingEntity used for compressed requests.
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            entity.writeTo(buffer);
+            return BodyPublishers.ofByteArray(buffer.toByteArray());
+        }
+        if (length == 0) {
+            return BodyPublishers.noBody();
+        }
+        final BodyPublisher publisher = BodyPublishers.ofInputStream(() -> {
+            try {
+                return entity.getContent();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        return BodyPublishers.fromPublisher(publisher, length);
+    }
+
+    private static CloseableHttpResponse toApacheResponse(java.net.http.HttpResponse<?> response, InputStream content) {
+        final int status = response.statusCode();
+        final ProtocolVersion version = response.version() == HttpClient.Version.HTTP_2
+                ? new ProtocolVersion("HTTP", 2, 0)
+                : HttpVersion.HTTP_1_1;
+        final String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH);
+        final JdkResponse result = new JdkResponse(new BasicStatusLine(version, status, reason == null ? "" : reason));
+        for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+            if (entry.getKey().startsWith(":")) {
+                // HTTP/2 pseudo-headers.
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                result.addHeader(entry.getKey(), value);
+            }
+        }
+        final BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(content);
+        entity.setContentLength(response.headers().firstValueAsLong(HEADER_CONTENT_LENGTH).orElse(-1));
+        response.headers().firstValue(HEADER_CONTENT_TYPE).ifPresent(entity::setContentType);
+        response.headers().firstValue(HEADER_CONTENT_ENCODING).ifPresent(entity::setContentEncoding);
+        result.setEntity(entity);
+        return result;
+    }
+
+    /**
+     * A response that closes its content stream when it is closed, releasing
+     * the underlying connection or stream.
+     */
+    private static class JdkResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        public JdkResponse(BasicStatusLine statusLine) {
+            super(statusLine);
+        }
+
+        @Override
+        public void close() throws IOException {
+            final HttpEntity entity = getEntity();
+            if (entity != null) {
+                entity.getContent().close();
+            }
+        }
+    }
+
+}
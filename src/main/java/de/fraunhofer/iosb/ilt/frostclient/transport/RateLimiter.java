@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import de.fraunhofer.iosb.ilt.frostclient.exception.RequestRejectedException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException.Reason;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket that limits the rate at which requests are sent. The bucket
+ * holds at most the burst size in tokens, and is refilled at the configured
+ * rate. Each request takes one token, and waits until one is available.
+ * Synchronous requests sleep, asynchronous requests are delayed without
+ * blocking a thread. Requests that would have to wait longer than the maximum
+ * wait time are rejected.
+ */
+public class RateLimiter {
+
+    private final double permitsPerSecond;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long maxWaitNanos = Long.MAX_VALUE;
+
+    /**
+     * The time at which the bucket would be full, if no more tokens are
+     * taken.
+     */
+    private long theoreticalArrival = System.nanoTime();
+
+    /**
+     * Create a rate limiter that allows bursts of one second worth of
+     * requests.
+     *
+     * @param permitsPerSecond The number of requests per second.
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this(permitsPerSecond, Math.max(1, (int) permitsPerSecond));
+    }
+
+    /**
+     * Create a rate limiter.
+     *
+     * @param permitsPerSecond The number of requests per second.
+     * @param burstSize The number of requests that can be sent at once, after
+     * a quiet period.
+     */
+    public RateLimiter(double permitsPerSecond, int burstSize) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive, got " + permitsPerSecond);
+        }
+        if (burstSize < 1) {
+            throw new IllegalArgumentException("burstSize must be at least 1, got " + burstSize);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = (burstSize - 1) * intervalNanos;
+    }
+
+    /**
+     * Reserves a token.
+     *
+     * @return The time to wait before using the token, in nanoseconds.
+     * @throws RequestRejectedException If the wait would be longer than the
+     * maximum wait time. No token is taken in that case.
+     */
+    private long reserve() throws RequestRejectedException {
+        lock.lock();
+        try {
+            final long now = System.nanoTime();
+            final long arrival = Math.max(theoreticalArrival, now);
+            final long wait = Math.max(0, arrival - burstNanos - now);
+            if (wait > maxWaitNanos) {
+                throw new RequestRejectedException(new ServiceUnavailableException(Reason.RATE_LIMITED, "Rate limit of " + permitsPerSecond + " requests per second exceeded."));
+            }
+            theoreticalArrival = arrival + intervalNanos;
+            return wait;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a token, sleeping until it is available.
+     *
+     * @throws RequestRejectedException If the wait would be longer than the
+     * maximum wait time.
+     * @throws InterruptedIOException If the thread is interrupted while
+     * waiting.
+     */
+    public void acquire() throws RequestRejectedException, InterruptedIOException {
+        final long wait = reserve();
+        if (wait == 0) {
+            return;
+        }
+        waiting.incrementAndGet();
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit.");
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a token, without blocking.
+     *
+     * @return A future that completes when the token is available, or
+     * completes exceptionally with a RequestRejectedException if the wait
+     * would be longer than the maximum wait time.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        final long wait;
+        try {
+            wait = reserve();
+        } catch (RequestRejectedException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (wait == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        waiting.incrementAndGet();
+        return CompletableFuture.runAsync(waiting::decrementAndGet, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Sets the maximum time a request waits for a token. Requests that would
+     * have to wait longer are rejected. By default requests are never
+     * rejected.
+     *
+     * @param maxWaitMs The maximum wait time in milliseconds.
+     * @return this RateLimiter.
+     */
+    public RateLimiter setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitNanos = maxWaitMs == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        return this;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitNanos == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+    }
+
+    /**
+     * Get the number of requests currently waiting for a token.
+     *
+     * @return The number of waiting requests.
+     */
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.transport;
+
+import java.io.IOException;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Decides if, and after how long, a failed request is sent again. A request
+ * failed if executing it threw an IOException, or if the policy considers the
+ * status code of the response a failure.
+ */
+public interface RetryPolicy {
+
+    /**
+     * A policy that never retries.
+     */
+    public static final RetryPolicy NONE = (request, attempt, response, failure) -> -1;
+
+    /**
+     * Determine if the given attempt should be followed by another one.
+     *
+     * @param request The request that was sent.
+     * @param attempt The number of the attempt that just finished, starting at
+     * 1.
+     * @param response The response of the attempt, or null if the attempt
+     * failed with an exception.
+     * @param failure The exception the attempt failed with, or null if there
+     * is a response.
+     * @return The time in milliseconds to wait before sending the request
+     * again, or a negative value to not retry and use the given response or
+     * failure.
+     */
+    public long retryDelay(HttpRequestBase request, int attempt, HttpResponse response, IOException failure);
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.utils;
+
+import net.time4j.Moment;
+import net.time4j.scale.TimeScale;
+
+/**
+ * A fast parser and printer for the subset of ISO 8601 used by the
+ * SensorThings API: date-times with a UTC or numeric offset, like
+ * {@code 2016-01-07T02:00:00.123Z} or {@code 2016-01-07T04:00:00+02:00}.
+ *
+ * The parse methods return null for input outside this subset, like leap
+ * seconds, week dates or years outside 0000-9999, so the caller can fall back
+ * to time4j. The print methods produce the same output as
+ * {@link StringHelper#FORMAT_MOMENT}, and return -1 for moments they can not
+ * print.
+ */
+public class Iso8601Codec {
+
+    /**
+     * The maximum number of characters a printed Moment can have.
+     */
+    public static final int MAX_MOMENT_LENGTH = 30;
+
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int[] FRACTION_SCALE = {
+        0, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+    };
+
+    private Iso8601Codec() {
+        // Utility class.
+    }
+
+    /**
+     * Parse a date-time from the given part of the text.
+     *
+     * @param text The text to parse from.
+     * @param start The index of the first character of the date-time.
+     * @param end The index after the last character of the date-time.
+     * @return The parsed Moment, or null if the text is not a date-time this
+     * parser understands.
+     */
+    public static Moment parseMoment(CharSequence text, int start, int end) {
+        // yyyy-MM-ddTHH:mm:ssZ is the shortest form.
+        if (end - start < 20) {
+            return null;
+        }
+        final int year = digits(text, start, 4);
+        final int month = digits(text, start + 5, 2);
+        final int day = digits(text, start + 8, 2);
+        final int hour = digits(text, start + 11, 2);
+        final int minute = digits(text, start + 14, 2);
+        final int second = digits(text, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+                || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-'
+                || text.charAt(start + 10) != 'T' || text.charAt(start + 13) != ':' || text.charAt(start + 16) != ':') {
+            return null;
+        }
+        int pos = start + 19;
+        int nanos = 0;
+        char c = text.charAt(pos);
+        if (c == '.' || c == ',') {
+            pos++;
+            int count = 0;
+            while (pos < end && isDigit(text.charAt(pos))) {
+                nanos = nanos * 10 + (text.charAt(pos) - '0');
+                count++;
+                pos++;
+            }
+            if (count == 0 || count > 9 || pos >= end) {
+                return null;
+            }
+            nanos *= FRACTION_SCALE[count];
+        }
+        final int offsetSeconds = parseOffset(text, pos, end);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return null;
+        }
+        final long epochSecond = daysFromCivil(year, month, day) * SECONDS_PER_DAY
+                + hour * 3600L + minute * 60L + second
+                - offsetSeconds;
+        return Moment.of(epochSecond, nanos, TimeScale.POSIX);
+    }
+
+    /**
+     * Parse a date-time from the given text.
+     *
+     * @param text The text to parse.
+     * @return The parsed Moment, or null if the text is not a date-time this
+     * parser understands.
+     */
+    public static Moment parseMoment(CharSequence text) {
+        return parseMoment(text, 0, text.length());
+    }
+
+    /**
+     * Parses the offset: Z, ±HH or ±HH:mm, which must end exactly at end.
+     *
+     * @return The offset in seconds, or Integer.MIN_VALUE if there is no valid
+     * offset.
+     */
+    private static int parseOffset(CharSequence text, int pos, int end) {
+        final char sign = text.charAt(pos);
+        if (sign == 'Z') {
+            return pos + 1 == end ? 0 : Integer.MIN_VALUE;
+        }
+        if (sign != '+' && sign != '-') {
+            return Integer.MIN_VALUE;
+        }
+        final int length = end - pos - 1;
+        final int hours = length >= 2 ? digits(text, pos + 1, 2) : -1;
+        final int minutes;
+        switch (length) {
+            case 2:
+                minutes = 0;
+                break;
+
+            case 5:
+                minutes = text.charAt(pos + 3) == ':' ? digits(text, pos + 4, 2) : -1;
+                break;
+
+            default:
+                return Integer.MIN_VALUE;
+        }
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        final int offset = hours * 3600 + minutes * 60;
+        return sign == '-' ? -offset : offset;
+    }
+
+    /**
+     * Print the given Moment in UTC into the buffer.
+     *
+     * @param moment The Moment to print.
+     * @param buffer The buffer to print into, with room for at least
+     * {@link #MAX_MOMENT_LENGTH} characters after the offset.
+     * @param offset The index to start printing at.
+     * @return The index after the last printed character, or -1 if the Moment
+     * can not be printed by this printer.
+     */
+    public static int printMoment(Moment moment, char[] buffer, int offset) {
+        if (moment.isLeapSecond()) {
+            return -1;
+        }
+        final long epochSecond = moment.getPosixTime();
+        final long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        final int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        // Civil date from the epoch day, see daysFromCivil.
+        final long z = epochDay + 719468;
+        final long era = Math.floorDiv(z, 146097);
+        final int doe = (int) (z - era * 146097);
+        final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final int mp = (5 * doy + 2) / 153;
+        final int day = doy - (153 * mp + 2) / 5 + 1;
+        final int month = mp < 10 ? mp + 3 : mp - 9;
+        final long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return -1;
+        }
+        int pos = offset;
+        pos = writeDigits(buffer, pos, (int) year, 4);
+        buffer[pos++] = '-';
+        pos = writeDigits(buffer, pos, month, 2);
+        buffer[pos++] = '-';
+        pos = writeDigits(buffer, pos, day, 2);
+        buffer[pos++] = 'T';
+        pos = writeDigits(buffer, pos, secondOfDay / 3600, 2);
+        buffer[pos++] = ':';
+        pos = writeDigits(buffer, pos, (secondOfDay / 60) % 60, 2);
+        buffer[pos++] = ':';
+        pos = writeDigits(buffer, pos, secondOfDay % 60, 2);
+        int nanos = moment.getNanosecond();
+        if (nanos != 0) {
+            int digits = 9;
+            while (nanos % 10 == 0) {
+                nanos /= 10;
+                digits--;
+            }
+            buffer[pos++] = '.';
+            pos = writeDigits(buffer, pos, nanos, digits);
+        }
+        buffer[pos++] = 'Z';
+        return pos;
+    }
+
+    /**
+     * Print the given Moment in UTC, falling back to
+     * {@link StringHelper#FORMAT_MOMENT} for Moments this printer can not
+     * print.
+     *
+     * @param moment The Moment to print.
+     * @return The ISO 8601 representation of the Moment.
+     */
+    public static String printMoment(Moment moment) {
+        final char[] buffer = new char[MAX_MOMENT_LENGTH];
+        final int end = printMoment(moment, buffer, 0);
+        if (end < 0) {
+            return StringHelper.FORMAT_MOMENT.print(moment);
+        }
+        return new String(buffer, 0, end);
+    }
+
+    private static int writeDigits(char[] buffer, int pos, int value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            buffer[pos + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + count;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Reads a fixed number of digits.
+     *
+     * @return The value, or -1 if not all characters are digits.
+     */
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * The number of days since 1970-01-01 of the given date in the proleptic
+     * Gregorian calendar, using the algorithm by Howard Hinnant.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(y, 400);
+        final int yoe = y - era * 400;
+        final int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+}
@@ -77,6 +77,23 @@ public class ParserUtils {
         }
     }
 
+    /**
+     * Parse the primary key values from the URL of an entity, as found in the
+     * location header of a create response. e.g.
+     * <code>http://example.org/v1.1/Things(5)</code> gives [5].
+     *
+     * @param location The URL of the entity.
+     * @return The primary key values.
+     */
+    public static Object[] pkFromLocation(String location) {
+        int pos1 = location.indexOf('(') + 1;
+        int pos2 = location.indexOf(')', pos1);
+        if (pos1 == 0 || pos2 < 0) {
+            throw new IllegalArgumentException("No primary key found in location " + location);
+        }
+        return tryToParse(location.substring(pos1, pos2));
+    }
+
     public static Object[] tryToParse(String input) {
         if (input.startsWith("'")) {
             return new Object[]{StringUtils.replace(input.substring(1, input.length() - 1), "''", "'")};
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.fraunhofer.iosb.ilt.frostclient.utils;
+
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import java.io.IOException;
+import org.apache.http.HttpResponse;
+
+/**
+ * Turns the response of an asynchronously executed request into a result.
+ *
+ * @param <T> The type of the result.
+ */
+@FunctionalInterface
+public interface ResponseProcessor<T> {
+
+    /**
+     * Process the given response.
+     *
+     * @param response The response to process.
+     * @return The result.
+     * @throws ServiceFailureException If the response indicates a failure.
+     * @throws IOException If reading the response fails.
+     */
+    public T process(HttpResponse response) throws ServiceFailureException, IOException;
+
+}
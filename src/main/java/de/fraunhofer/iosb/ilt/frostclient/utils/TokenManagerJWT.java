@@ -26,6 +26,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.util.Calendar;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.http.Consts;
 import org.apache.http.HttpRequest;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -51,8 +52,9 @@ public class TokenManagerJWT implements TokenManager<TokenManagerJWT> {
     private String jwtId;
     private String jwtKey;
     private CloseableHttpClient client;
-    private String accessToken = "";
-    private Calendar expireTime = Calendar.getInstance();
+    private final ReentrantLock tokenLock = new ReentrantLock();
+    private volatile String accessToken = "";
+    private volatile Calendar expireTime = Calendar.getInstance();
     /*
      * Assume a Token expire time of 5 minutes unless the server specifies
      * otherwise.
@@ -104,7 +106,15 @@ public class TokenManagerJWT implements TokenManager<TokenManagerJWT> {
             return currentToken;
         }
 
-        synchronized (this) {
+        // A lock instead of synchronized, so virtual threads waiting for the
+        // token are not pinned while the token is fetched over the network.
+        tokenLock.lock();
+        try {
+            final String newToken = accessToken;
+            if (!newToken.isEmpty() && !isExpired()) {
+                // Another thread fetched a new token while we were waiting.
+                return newToken;
+            }
             accessToken = "";
             String json = fetchToken();
             try {
@@ -118,10 +128,11 @@ public class TokenManagerJWT implements TokenManager<TokenManagerJWT> {
                     accessToken = node.textValue();
                     validateToken(accessToken);
 
-                    expireTime = Calendar.getInstance();
+                    final Calendar newExpireTime = Calendar.getInstance();
                     // If tokens are valid for less than 10 seconds assume they're expired.
                     // unless the token is valid for less than 10 seconds to begin with.
-                    expireTime.add(Calendar.SECOND, Math.max(expireDuration - 10, 10));
+                    newExpireTime.add(Calendar.SECOND, Math.max(expireDuration - 10, 10));
+                    expireTime = newExpireTime;
                 }
 
                 LOGGER.debug("Token: {}", accessToken);
@@ -131,6 +142,8 @@ public class TokenManagerJWT implements TokenManager<TokenManagerJWT> {
                 LOGGER.error("Failed to parse response.", ex);
                 return null;
             }
+        } finally {
+            tokenLock.unlock();
         }
     }
 
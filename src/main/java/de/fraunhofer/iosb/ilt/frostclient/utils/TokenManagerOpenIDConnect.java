@@ -37,6 +37,7 @@ import java.util.Calendar;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.xml.bind.DatatypeConverter;
 import org.apache.http.Consts;
 import org.apache.http.HttpRequest;
@@ -63,7 +64,8 @@ public class TokenManagerOpenIDConnect implements TokenManager<TokenManagerOpenI
     private String userName;
     private String password;
     private CloseableHttpClient client;
-    private String accessToken = "";
+    private final ReentrantLock tokenLock = new ReentrantLock();
+    private volatile String accessToken = "";
     private String refreshToken = "";
     private String keyType;
     private byte[] apiKeyBytes;
@@ -72,7 +74,7 @@ public class TokenManagerOpenIDConnect implements TokenManager<TokenManagerOpenI
      * otherwise.
      */
     private int expireDuration = 300;
-    private Calendar expireTime = Calendar.getInstance();
+    private volatile Calendar expireTime = Calendar.getInstance();
     /**
      * Assume a RefreshToken expire time of 30 minutes unless the server
      * specifies otherwise.
@@ -155,7 +157,15 @@ public class TokenManagerOpenIDConnect implements TokenManager<TokenManagerOpenI
             return currentToken;
         }
 
-        synchronized (this) {
+        // A lock instead of synchronized, so virtual threads waiting for the
+        // token are not pinned while the token is fetched over the network.
+        tokenLock.lock();
+        try {
+            final String newToken = accessToken;
+            if (!newToken.isEmpty() && !isExpired()) {
+                // Another thread fetched a new token while we were waiting.
+                return newToken;
+            }
             accessToken = "";
             String json = null;
             if (!refreshToken.isEmpty()) {
@@ -183,10 +193,11 @@ public class TokenManagerOpenIDConnect implements TokenManager<TokenManagerOpenI
                     if (node.isNumber() && node.canConvertToInt()) {
                         expireDuration = node.intValue();
                     }
-                    expireTime = Calendar.getInstance();
+                    final Calendar newExpireTime = Calendar.getInstance();
                     // If tokens are valid for less than 10 seconds assume they're expired.
                     // unless the token is valid for less than 10 seconds to begin with.
-                    expireTime.add(Calendar.SECOND, Math.max(expireDuration - 10, 10));
+                    newExpireTime.add(Calendar.SECOND, Math.max(expireDuration - 10, 10));
+                    expireTime = newExpireTime;
 
                     node = tree.get("refresh_expires_in");
                     if (node.isNumber() && node.canConvertToInt()) {
@@ -203,6 +214,8 @@ public class TokenManagerOpenIDConnect implements TokenManager<TokenManagerOpenI
                 LOGGER.error("Failed to parse response.", ex);
                 return null;
             }
+        } finally {
+            tokenLock.unlock();
         }
     }
 
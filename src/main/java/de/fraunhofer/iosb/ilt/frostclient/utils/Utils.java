@@ -33,7 +33,7 @@ import java.security.NoSuchAlgorithmException;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import org.apache.http.Consts;
-import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
@@ -61,7 +61,7 @@ public class Utils {
      * @param response The response to check the status code of.
      * @throws StatusCodeException If the response was not 2xx.
      */
-    public static void throwIfNotOk(HttpRequestBase request, CloseableHttpResponse response) throws StatusCodeException {
+    public static void throwIfNotOk(HttpRequestBase request, HttpResponse response) throws StatusCodeException {
         final int statusCode = response.getStatusLine().getStatusCode();
         if (statusCode < 200 || statusCode >= 300) {
             String returnContent = null;
@@ -88,7 +88,6 @@ public class Utils {
                 .build();
         HostnameVerifier allowAllHosts = new NoopHostnameVerifier();
         SSLConnectionSocketFactory connectionFactory = new SSLConnectionSocketFactory(sslContext, allowAllHosts);
-        service.getClientBuilder().setSSLSocketFactory(connectionFactory);
-        service.rebuildHttpClient();
+        service.setSslSocketFactory(connectionFactory);
     }
 }
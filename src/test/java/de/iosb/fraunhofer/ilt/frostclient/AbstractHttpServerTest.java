@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+/**
+ * Base class for tests that talk to an in-process HTTP server on a random
+ * local port.
+ */
+public abstract class AbstractHttpServerTest {
+
+    protected HttpServer server;
+    protected String baseUrl;
+    protected SensorThingsSensingV11 modelSensing;
+    protected SensorThingsService service;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        createContexts(server);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/v1.1/";
+        modelSensing = new SensorThingsSensingV11();
+        service = createService();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Registers the handlers of the test on the server, before it starts.
+     *
+     * @param server The server to register the handlers on.
+     */
+    protected abstract void createContexts(HttpServer server);
+
+    /**
+     * Creates the service used by the test. Override to configure it.
+     *
+     * @return A service pointing to the test server.
+     * @throws MalformedURLException If the base url is broken.
+     */
+    protected SensorThingsService createService() throws MalformedURLException {
+        return new SensorThingsService(modelSensing.getModelRegistry(), new URL(baseUrl));
+    }
+
+}
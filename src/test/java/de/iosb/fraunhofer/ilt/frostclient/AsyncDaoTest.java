@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.dao.AsyncDao;
+import de.fraunhofer.iosb.ilt.frostclient.exception.NotFoundException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.StatusCodeException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.transport.Bulkhead;
+import de.fraunhofer.iosb.ilt.frostclient.utils.TokenManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the asynchronous data access object.
+ */
+public class AsyncDaoTest extends AbstractHttpServerTest {
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private ExecutorService serverExecutor;
+    private volatile boolean failing;
+    private volatile String lastAuthorization;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/Things", this::handleThings);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        serverExecutor.shutdownNow();
+    }
+
+    private void handleThings(HttpExchange exchange) throws IOException {
+        final String method = exchange.getRequestMethod();
+        final String path = exchange.getRequestURI().getPath();
+        requests.add(method + " " + path.substring(path.lastIndexOf('/') + 1));
+        lastAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+        exchange.getRequestBody().readAllBytes();
+        if (failing) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        switch (method) {
+            case "POST":
+                exchange.getResponseHeaders().add("Location", baseUrl + "Things(42)");
+                exchange.sendResponseHeaders(201, -1);
+                exchange.close();
+                return;
+            case "PATCH":
+            case "DELETE":
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            default:
+                break;
+        }
+        if (path.endsWith("(3)")) {
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (!path.endsWith("(1)")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = "{\"@iot.id\":1,\"name\":\"Thing 1\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void createUpdateDelete() throws Exception {
+        final AsyncDao dao = service.asyncDao(modelSensing.etThing);
+        final Entity thing = modelSensing.newThing("New Thing", "A new Thing");
+        assertEquals(thing, dao.create(thing).get(10, TimeUnit.SECONDS));
+        assertEquals(42L, thing.getProperty(EP_ID));
+
+        thing.setProperty(EP_NAME, "Renamed Thing");
+        assertEquals(thing, dao.update(thing).get(10, TimeUnit.SECONDS));
+        dao.delete(thing).get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("POST Things", "PATCH Things(42)", "DELETE Things(42)"), requests);
+    }
+
+    @Test
+    public void failuresPropagate() throws Exception {
+        final AsyncDao dao = service.asyncDao(modelSensing.etThing);
+        final ExecutionException notFound = assertThrows(ExecutionException.class, () -> dao.find(2L).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(NotFoundException.class, notFound.getCause());
+
+        failing = true;
+        final Entity thing = modelSensing.newThing("New Thing", "A new Thing");
+        final ExecutionException failed = assertThrows(ExecutionException.class, () -> dao.create(thing).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(StatusCodeException.class, failed.getCause());
+        assertEquals(500, ((StatusCodeException) failed.getCause()).getStatusCode());
+
+        final Entity deleted = modelSensing.newThing("Old Thing", "An old Thing");
+        deleted.setProperty(EP_ID, 7L);
+        final ExecutionException failedDelete = assertThrows(ExecutionException.class, () -> dao.delete(deleted).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(StatusCodeException.class, failedDelete.getCause());
+    }
+
+    @Test
+    public void cancelAbortsRequest() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead(1);
+        service.setBulkhead(bulkhead);
+        final AsyncDao dao = service.asyncDao(modelSensing.etThing);
+        final CompletableFuture<Entity> slow = dao.find(3L);
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        assertEquals(1, bulkhead.getInProgress());
+
+        assertTrue(slow.cancel(true));
+        assertThrows(CancellationException.class, () -> slow.get(10, TimeUnit.SECONDS));
+        // The aborted request frees its slot, while the server is still busy with it.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (bulkhead.getInProgress() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, bulkhead.getInProgress());
+        assertEquals("Thing 1", dao.find(1L).get(10, TimeUnit.SECONDS).getProperty(EP_NAME));
+    }
+
+    @Test
+    public void tokenIsFetchedOnExecutor() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final List<Thread> tokenThreads = new CopyOnWriteArrayList<>();
+        service.setTokenManager(new TokenManager() {
+            private CloseableHttpClient client;
+
+            @Override
+            public void addAuthHeader(HttpRequest request) {
+                tokenThreads.add(Thread.currentThread());
+                request.addHeader("Authorization", "Bearer token");
+            }
+
+            @Override
+            public TokenManager setHttpClient(CloseableHttpClient client) {
+                this.client = client;
+                return this;
+            }
+
+            @Override
+            public CloseableHttpClient getHttpClient() {
+                return client;
+            }
+        });
+        final Entity thing = service.asyncDao(modelSensing.etThing).find(1L).get(10, TimeUnit.SECONDS);
+        assertEquals("Thing 1", thing.getProperty(EP_NAME));
+        assertEquals("Bearer token", lastAuthorization);
+        assertEquals(1, tokenThreads.size());
+        assertNotEquals(caller, tokenThreads.get(0));
+    }
+
+}
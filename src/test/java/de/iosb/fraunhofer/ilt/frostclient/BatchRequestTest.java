@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.batch.BatchOperation;
+import de.fraunhofer.iosb.ilt.frostclient.batch.BatchRequest;
+import de.fraunhofer.iosb.ilt.frostclient.batch.ChangeSet;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.UnitOfMeasurement;
+import de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for JSON batch requests.
+ */
+public class BatchRequestTest extends AbstractHttpServerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private JsonNode lastRequest;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/$batch", this::handleBatch);
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            lastRequest = mapper.readTree(in);
+        }
+        StringBuilder json = new StringBuilder("{\"responses\":[");
+        int nr = 0;
+        for (JsonNode request : lastRequest.get("requests")) {
+            if (nr > 0) {
+                json.append(',');
+            }
+            String id = request.get("id").asText();
+            String method = request.get("method").asText();
+            if ("post".equals(method)) {
+                json.append("{\"id\":\"").append(id).append("\",\"status\":201,\"headers\":{\"location\":\"")
+                        .append(baseUrl).append(request.get("url").asText()).append('(').append(100 + nr).append(")\"}}");
+            } else if ("delete".equals(method)) {
+                json.append("{\"id\":\"").append(id).append("\",\"status\":404,\"body\":{\"message\":\"Not Found\"}}");
+            } else {
+                json.append("{\"id\":\"").append(id).append("\",\"status\":200}");
+            }
+            nr++;
+        }
+        json.append("]}");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void createWithReferences() throws ServiceFailureException {
+        Entity thing = modelSensing.newThing("Thing", "A Thing");
+        Entity sensor = modelSensing.newSensor("Sensor", "A Sensor", "text", "none");
+        Entity obsProp = modelSensing.newObservedProperty("Temp", "http://example.org", "Temperature");
+        Entity datastream = modelSensing.newDatastream("Ds", "A Datastream", new UnitOfMeasurement("Celsius", "°C", "ucum:Cel"))
+                .setProperty(modelSensing.npDatastreamThing, thing)
+                .setProperty(modelSensing.npDatastreamSensor, sensor)
+                .setProperty(modelSensing.npDatastreamObservedproperty, obsProp);
+        Entity oldThing = modelSensing.newThing(5L);
+
+        BatchRequest batch = service.batch();
+        ChangeSet changeSet = batch.changeSet();
+        changeSet.create(thing);
+        changeSet.create(sensor);
+        changeSet.create(obsProp);
+        changeSet.create(datastream);
+        changeSet.update(thing.setProperty(SensorThingsSensingV11.EP_NAME, "Renamed"));
+        BatchOperation deleteOp = batch.delete(oldThing);
+        List<BatchOperation> result = batch.execute();
+
+        JsonNode requests = lastRequest.get("requests");
+        assertEquals(6, requests.size());
+        JsonNode dsBody = requests.get(3).get("body");
+        assertEquals("$1", dsBody.get("Thing").get("@iot.id").asText());
+        assertEquals("$2", dsBody.get("Sensor").get("@iot.id").asText());
+        assertEquals("$1", requests.get(4).get("url").asText());
+        assertEquals("changeset1", requests.get(4).get("atomicityGroup").asText());
+        assertEquals("Things(5)", requests.get(5).get("url").asText());
+        assertFalse(requests.get(5).has("atomicityGroup"));
+
+        assertEquals(6, result.size());
+        assertEquals(100L, thing.getProperty(EP_ID));
+        assertEquals(103L, datastream.getProperty(EP_ID));
+        assertTrue(thing.hasService());
+        assertFalse(deleteOp.isSuccess());
+        assertEquals(404, deleteOp.getStatusCode());
+        assertTrue(deleteOp.getResponseBody().contains("Not Found"));
+    }
+
+    @Test
+    public void changeSetOperationsAreAdjacent() throws ServiceFailureException {
+        Entity thing = modelSensing.newThing("Thing", "A Thing");
+        Entity location = modelSensing.newLocation("Location", "A Location", "text/plain", "here");
+        BatchRequest batch = service.batch();
+        ChangeSet first = batch.changeSet();
+        ChangeSet second = batch.changeSet();
+        first.create(thing);
+        batch.delete(modelSensing.newThing(5L));
+        second.create(location);
+        first.update(thing.setProperty(SensorThingsSensingV11.EP_NAME, "Renamed"));
+        batch.delete(modelSensing.newThing(6L));
+        second.delete(modelSensing.newThing(7L));
+        batch.execute();
+
+        JsonNode requests = lastRequest.get("requests");
+        assertEquals(6, requests.size());
+        assertEquals("changeset1", requests.get(0).get("atomicityGroup").asText());
+        assertEquals("changeset1", requests.get(1).get("atomicityGroup").asText());
+        assertEquals("$1", requests.get(1).get("url").asText());
+        assertEquals("Things(5)", requests.get(2).get("url").asText());
+        assertEquals("changeset2", requests.get(3).get("atomicityGroup").asText());
+        assertEquals("changeset2", requests.get(4).get("atomicityGroup").asText());
+        assertEquals("Things(7)", requests.get(4).get("url").asText());
+        assertEquals("Things(6)", requests.get(5).get("url").asText());
+        assertFalse(requests.get(5).has("atomicityGroup"));
+        assertEquals(100L, thing.getProperty(EP_ID));
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
+import de.fraunhofer.iosb.ilt.frostclient.exception.RequestRejectedException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceUnavailableException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.StatusCodeException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.transport.Bulkhead;
+import de.fraunhofer.iosb.ilt.frostclient.transport.CircuitBreaker;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the circuit breaker and bulkhead of the service.
+ */
+public class CircuitBreakerTest extends AbstractHttpServerTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean failing;
+    private volatile boolean blocking;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/", this::handle);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (blocking) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failing) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        final byte[] bytes = "{\"@iot.id\":1,\"name\":\"Thing 1\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void opensAndRecovers() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker()
+                .setWindowSize(4)
+                .setMinimumCalls(4)
+                .setOpenDurationMs(100)
+                .setHalfOpenCalls(1);
+        service.setCircuitBreaker(breaker);
+        final Dao dao = service.dao(modelSensing.etThing);
+        failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertThrows(StatusCodeException.class, () -> dao.find(1L));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        final ServiceUnavailableException rejected = assertThrows(ServiceUnavailableException.class, () -> dao.find(1L));
+        assertEquals(ServiceUnavailableException.Reason.CIRCUIT_OPEN, rejected.getReason());
+        assertEquals(4, requests.get());
+        assertEquals(1, breaker.getRejectedCount());
+
+        failing = false;
+        Thread.sleep(150);
+        final Entity thing = dao.find(1L);
+        assertEquals("Thing 1", thing.getProperty(EP_NAME));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void bulkheadRejectsWhenFull() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead(1);
+        service.setBulkhead(bulkhead);
+        blocking = true;
+        final CompletableFuture<Entity> slow = service.asyncDao(modelSensing.etThing).find(1L);
+        assertEquals(1, bulkhead.getInProgress());
+
+        final ServiceUnavailableException rejected = assertThrows(ServiceUnavailableException.class, () -> service.dao(modelSensing.etThing).find(1L));
+        assertEquals(ServiceUnavailableException.Reason.BULKHEAD_FULL, rejected.getReason());
+
+        release.countDown();
+        assertEquals("Thing 1", slow.get(10, TimeUnit.SECONDS).getProperty(EP_NAME));
+        assertEquals(0, bulkhead.getInProgress());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void staleResultsAreNotProbes() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker()
+                .setWindowSize(2)
+                .setMinimumCalls(2)
+                .setHalfOpenCalls(1)
+                .setOpenDurationMs(0);
+        // A call that starts while closed, and finishes after the breaker opened.
+        final long slowCall = breaker.acquirePermission();
+        breaker.onResult(breaker.acquirePermission(), 0, true);
+        breaker.onResult(breaker.acquirePermission(), 0, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        final long probe = breaker.acquirePermission();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(slowCall, 0, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.releasePermission(slowCall);
+        assertThrows(RequestRejectedException.class, breaker::acquirePermission);
+
+        breaker.onResult(probe, 0, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_DESCRIPTION;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.transport.JdkHttpTransport;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for compressed requests and responses.
+ */
+public class CompressionTest extends AbstractHttpServerTest {
+
+    private static final String LONG_DESCRIPTION = "A long description. ".repeat(200);
+
+    private String lastAcceptEncoding;
+    private String lastContentEncoding;
+    private String lastBody;
+    private String lastTransferEncoding;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/Things", this::handleThings);
+    }
+
+    private void handleThings(HttpExchange exchange) throws IOException {
+        lastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if ("POST".equals(exchange.getRequestMethod())) {
+            lastContentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            lastTransferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(lastContentEncoding)) {
+                in = new GZIPInputStream(in);
+            }
+            lastBody = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Location", baseUrl + "Things(42)");
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = ("{\"@iot.id\":1,\"name\":\"Thing 1\",\"description\":\"" + LONG_DESCRIPTION + "\"}").getBytes(StandardCharsets.UTF_8);
+        if (lastAcceptEncoding != null && lastAcceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(bytes);
+            }
+            bytes = buffer.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void assertFindDecompresses() throws Exception {
+        Entity thing = service.dao(modelSensing.etThing).find(1L);
+        assertEquals(LONG_DESCRIPTION, thing.getProperty(EP_DESCRIPTION));
+        assertTrue(lastAcceptEncoding.contains("gzip"), lastAcceptEncoding);
+
+        thing = service.asyncDao(modelSensing.etThing).find(1L).get();
+        assertEquals(LONG_DESCRIPTION, thing.getProperty(EP_DESCRIPTION));
+        assertTrue(lastAcceptEncoding.contains("gzip"), lastAcceptEncoding);
+    }
+
+    @Test
+    public void compressedResponses() throws Exception {
+        assertFindDecompresses();
+        service.setTransport(new JdkHttpTransport());
+        assertFindDecompresses();
+    }
+
+    @Test
+    public void compressionDisabled() throws Exception {
+        service.setCompression(false)
+                .setRequestCompressionThreshold(0);
+        Entity thing = service.dao(modelSensing.etThing).find(1L);
+        assertEquals(LONG_DESCRIPTION, thing.getProperty(EP_DESCRIPTION));
+        assertEquals("identity", lastAcceptEncoding);
+
+        service.create(modelSensing.newThing("Thing", LONG_DESCRIPTION));
+        assertNull(lastContentEncoding);
+    }
+
+    @Test
+    public void compressedRequests() throws Exception {
+        service.setRequestCompressionThreshold(1024);
+
+        Entity small = modelSensing.newThing("Thing", "Short");
+        service.create(small);
+        assertNull(lastContentEncoding);
+        assertTrue(lastBody.contains("\"Short\""), lastBody);
+
+        Entity large = modelSensing.newThing("Thing", LONG_DESCRIPTION);
+        service.create(large);
+        assertEquals("gzip", lastContentEncoding);
+        assertTrue(lastBody.contains(LONG_DESCRIPTION), lastBody);
+        assertEquals(42L, large.getProperty(EP_ID));
+
+        service.setTransport(new JdkHttpTransport());
+        lastContentEncoding = null;
+        service.create(modelSensing.newThing("Thing", LONG_DESCRIPTION));
+        assertEquals("gzip", lastContentEncoding);
+        assertTrue(lastBody.contains(LONG_DESCRIPTION), lastBody);
+    }
+
+    @Test
+    public void unknownLengthRequestsAreStreamed() throws Exception {
+        service.setRequestCompressionThreshold(1024);
+        final byte[] body = ("{\"name\":\"Thing\",\"description\":\"" + LONG_DESCRIPTION + "\"}").getBytes(StandardCharsets.UTF_8);
+        final HttpPost post = new HttpPost(baseUrl + "Things");
+        post.setEntity(new InputStreamEntity(new ByteArrayInputStream(body), -1, ContentType.APPLICATION_JSON));
+        try (CloseableHttpResponse response = service.execute(post)) {
+            assertEquals(201, response.getStatusLine().getStatusCode());
+        }
+        assertEquals("gzip", lastContentEncoding);
+        assertEquals("chunked", lastTransferEncoding);
+        assertTrue(lastBody.contains(LONG_DESCRIPTION), lastBody);
+
+        service.setTransport(new JdkHttpTransport());
+        lastContentEncoding = null;
+        final HttpPost jdkPost = new HttpPost(baseUrl + "Things");
+        jdkPost.setEntity(new InputStreamEntity(new ByteArrayInputStream(body), -1, ContentType.APPLICATION_JSON));
+        try (CloseableHttpResponse response = service.execute(jdkPost)) {
+            assertEquals(201, response.getStatusLine().getStatusCode());
+        }
+        assertEquals("gzip", lastContentEncoding);
+        assertTrue(lastBody.contains(LONG_DESCRIPTION), lastBody);
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
+import de.fraunhofer.iosb.ilt.frostclient.json.deserialize.DeserializerRegistry;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that many threads using one service do not wait for each other, and
+ * that services can be started in parallel.
+ */
+public class ConcurrencyTest extends AbstractHttpServerTest {
+
+    private static final int THREADS = 64;
+    private static final int REQUESTS = 512;
+    private static final long SERVER_DELAY_MS = 50;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private ExecutorService serverExecutor;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/Things", this::handleThing);
+        serverExecutor = Executors.newFixedThreadPool(THREADS);
+        server.setExecutor(serverExecutor);
+    }
+
+    @Override
+    protected SensorThingsService createService() throws MalformedURLException {
+        return super.createService().setMaxConnections(THREADS, THREADS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        serverExecutor.shutdownNow();
+    }
+
+    private void handleThing(HttpExchange exchange) throws IOException {
+        final int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            Thread.sleep(SERVER_DELAY_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        final String path = exchange.getRequestURI().getPath();
+        final String id = path.substring(path.indexOf('(') + 1, path.indexOf(')'));
+        byte[] bytes = ("{\"@iot.id\":" + id + ",\"name\":\"Thing " + id + "\"}").getBytes(StandardCharsets.UTF_8);
+        inFlight.decrementAndGet();
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void concurrentFindsDoNotSerialize() throws Exception {
+        final Dao dao = service.dao(modelSensing.etThing);
+        final ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        try {
+            final long start = System.nanoTime();
+            final List<Future<Object>> results = new ArrayList<>();
+            for (long i = 1; i <= REQUESTS; i++) {
+                final long id = i;
+                results.add(clients.submit(() -> dao.find(id).getProperty(EP_ID)));
+            }
+            for (int i = 0; i < REQUESTS; i++) {
+                assertEquals(i + 1L, results.get(i).get());
+            }
+            final long durationMs = (System.nanoTime() - start) / 1_000_000;
+            // Serialised, the requests would take REQUESTS * SERVER_DELAY_MS = 25.6s.
+            assertTrue(durationMs < REQUESTS * SERVER_DELAY_MS / 4, "Requests took " + durationMs + "ms");
+            assertTrue(maxInFlight.get() > THREADS / 2, "At most " + maxInFlight.get() + " requests in parallel");
+
+            final PoolStats stats = service.getPoolStats();
+            assertEquals(THREADS, stats.getMax());
+            assertEquals(0, stats.getLeased());
+            assertEquals(0, stats.getPending());
+            assertTrue(stats.getAvailable() > 0);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelStartup() throws Exception {
+        final String thingJson = "{\"@iot.id\":1,\"name\":\"Thing 1\"}";
+        final String setJson = "{\"value\":[" + thingJson + "]}";
+        final ExecutorService starters = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 10; round++) {
+                // Half the threads share one model, the others each have their own.
+                final SensorThingsSensingV11 sharedModel = new SensorThingsSensingV11();
+                final CountDownLatch go = new CountDownLatch(1);
+                final List<Future<DeserializerRegistry>> results = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    final boolean shared = i % 2 == 0;
+                    results.add(starters.submit(() -> {
+                        go.await();
+                        final SensorThingsSensingV11 model = shared ? sharedModel : new SensorThingsSensingV11();
+                        final SensorThingsService tenant = new SensorThingsService(model.getModelRegistry(), new URL("http://localhost/v1.1/"));
+                        final Entity thing = tenant.getJsonReader().parseEntity(model.etThing, thingJson);
+                        assertEquals("Thing 1", thing.getProperty(EP_NAME));
+                        final EntitySet things = tenant.getJsonReader().parseEntitySet(model.etThing, setJson);
+                        assertEquals(thing, things.toList().get(0));
+                        return shared ? model.getModelRegistry().getDeserializers() : null;
+                    }));
+                }
+                go.countDown();
+                final DeserializerRegistry expected = sharedModel.getModelRegistry().getDeserializers();
+                for (Future<DeserializerRegistry> result : results) {
+                    final DeserializerRegistry actual = result.get();
+                    if (actual != null) {
+                        assertSame(expected, actual);
+                    }
+                }
+            }
+        } finally {
+            starters.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rebuildClosesOldPool() throws Exception {
+        final Dao dao = service.dao(modelSensing.etThing);
+        assertEquals(1L, dao.find(1L).getProperty(EP_ID));
+        final CloseableHttpClient oldClient = service.getHttpClient();
+        service.rebuildHttpClient();
+        assertThrows(IllegalStateException.class, () -> oldClient.execute(new HttpGet(baseUrl + "Things(1)")));
+        assertNotSame(oldClient, service.getHttpClient());
+        assertEquals(2L, dao.find(2L).getProperty(EP_ID));
+    }
+
+    @Test
+    public void userConnectionManagerIsKept() throws Exception {
+        final PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(7);
+        final SensorThingsService custom = new SensorThingsService(modelSensing.getModelRegistry(), new URL(baseUrl));
+        custom.getClientBuilder().setConnectionManager(manager);
+        assertEquals(1L, custom.dao(modelSensing.etThing).find(1L).getProperty(EP_ID));
+        assertEquals(7, custom.getPoolStats().getMax());
+        assertEquals(1, manager.getTotalStats().getAvailable());
+
+        // Explicit service settings are applied to the user's pool.
+        custom.setMaxConnections(9, 3);
+        assertEquals(9, manager.getMaxTotal());
+    }
+
+}
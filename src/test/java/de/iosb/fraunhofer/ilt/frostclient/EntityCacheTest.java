@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.batch.BatchRequest;
+import de.fraunhofer.iosb.ilt.frostclient.cache.EntityCache;
+import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.query.AsyncQuery;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the Entity cache.
+ */
+public class EntityCacheTest extends AbstractHttpServerTest {
+
+    private static final String DATASTREAM = "{\"@iot.id\":7,\"name\":\"Datastream 7\"}";
+
+    private final AtomicInteger datastreamGets = new AtomicInteger();
+    private final AtomicInteger observationGets = new AtomicInteger();
+    private EntityCache cache;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/", this::handle);
+    }
+
+    @Override
+    protected SensorThingsService createService() throws MalformedURLException {
+        cache = new EntityCache(100, 1, TimeUnit.HOURS);
+        return super.createService().setEntityCache(cache);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final String body;
+        if (path.endsWith("/$batch")) {
+            exchange.getRequestBody().readAllBytes();
+            body = "{\"responses\":[{\"id\":\"1\",\"status\":200},{\"id\":\"2\",\"status\":204}]}";
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length());
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+            return;
+        }
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        if (path.endsWith("/Sensors")) {
+            final String query = exchange.getRequestURI().getQuery();
+            if (query != null && query.contains("$skip=1")) {
+                body = "{\"value\":[{\"@iot.id\":2,\"name\":\"Sensor 2\"}]}";
+            } else {
+                body = "{\"value\":[{\"@iot.id\":1,\"name\":\"Sensor 1\"}],\"@iot.nextLink\":\"" + baseUrl + "Sensors?$skip=1\"}";
+            }
+        } else if (path.endsWith("/Datastreams(7)") || path.endsWith("/Datastream")) {
+            datastreamGets.incrementAndGet();
+            body = DATASTREAM;
+        } else {
+            observationGets.incrementAndGet();
+            body = "{\"value\":["
+                    + "{\"@iot.id\":1,\"result\":1,\"Datastream\":" + DATASTREAM + "},"
+                    + "{\"@iot.id\":2,\"result\":2,\"Datastream\":" + DATASTREAM + "}"
+                    + "]}";
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void findUsesCache() throws Exception {
+        final Dao dao = service.dao(modelSensing.etDatastream);
+        final Entity first = dao.find(7L);
+        final Entity other = dao.find(7L);
+        assertNotSame(first, other);
+        assertEquals(first, other);
+        assertEquals(first, dao.find(7));
+        assertEquals(first, service.asyncDao(modelSensing.etDatastream).find(7L).get());
+        assertEquals(1, datastreamGets.get());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // Unsaved changes of one caller are not seen by others.
+        first.setProperty(EP_NAME, "Renamed");
+        assertEquals("Datastream 7", other.getProperty(EP_NAME));
+        assertEquals("Datastream 7", dao.find(7L).getProperty(EP_NAME));
+        assertEquals(List.of(EP_NAME), first.getChangedProperties());
+        assertTrue(other.getChangedProperties().isEmpty());
+
+        dao.update(first);
+        final Entity second = dao.find(7L);
+        assertNotSame(first, second);
+        assertEquals("Datastream 7", second.getProperty(EP_NAME));
+        assertEquals(2, datastreamGets.get());
+
+        dao.delete(second);
+        assertNull(cache.get(modelSensing.etDatastream, 7L));
+    }
+
+    @Test
+    public void batchInvalidatesCache() throws Exception {
+        final Entity datastream = service.dao(modelSensing.etDatastream).find(7L);
+        service.dao(modelSensing.etObservation).query().expand("Datastream").list();
+        final Entity observation = service.dao(modelSensing.etObservation).find(1L);
+        assertEquals(3, cache.size());
+
+        final BatchRequest batch = service.batch();
+        batch.update(datastream.setProperty(EP_NAME, "Renamed"));
+        batch.delete(observation);
+        batch.execute();
+        assertNull(cache.get(modelSensing.etDatastream, 7L));
+        assertNull(cache.get(modelSensing.etObservation, 1L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void queryResultsAreCached() throws Exception {
+        service.dao(modelSensing.etObservation).query().expand("Datastream").list();
+        assertEquals(1, observationGets.get());
+        assertEquals(3, cache.size());
+
+        Entity observation = service.dao(modelSensing.etObservation).find(2L);
+        assertEquals(2L, observation.getProperty(EP_ID));
+        final Entity datastream = service.dao(modelSensing.etDatastream).find(7L);
+        assertEquals("Datastream 7", datastream.getProperty(EP_NAME));
+        assertEquals(1, observationGets.get());
+        assertEquals(0, datastreamGets.get());
+
+        // Results of queries with $select may be incomplete and are not cached.
+        cache.invalidateAll();
+        service.dao(modelSensing.etObservation).query().select("id").list();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void asyncNextLinkPagesAreNotCached() throws Exception {
+        final AsyncQuery query = service.asyncDao(modelSensing.etSensor).query();
+        final EntitySet first = query.list().get(10, TimeUnit.SECONDS);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(modelSensing.etSensor, 1L));
+
+        final EntitySet second = query.fetchNext(first).get(10, TimeUnit.SECONDS);
+        assertEquals(2L, second.toList().get(0).getProperty(EP_ID));
+        assertEquals(1, cache.size());
+        assertNull(cache.get(modelSensing.etSensor, 2L));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final EntityCache small = new EntityCache(2, 0, TimeUnit.SECONDS);
+        for (long id = 1; id <= 3; id++) {
+            small.put(new Entity(modelSensing.etThing).setProperty(EP_ID, id));
+            small.get(modelSensing.etThing, 1L);
+        }
+        assertEquals(2, small.size());
+        assertEquals(1, small.getEvictionCount());
+        assertEquals(1L, small.get(modelSensing.etThing, 1L).getProperty(EP_ID));
+        assertNull(small.get(modelSensing.etThing, 2L));
+    }
+
+    @Test
+    public void expiresAfterTtl() throws InterruptedException {
+        final EntityCache shortLived = new EntityCache(10, 20, TimeUnit.MILLISECONDS);
+        shortLived.put(new Entity(modelSensing.etThing).setProperty(EP_ID, 1L));
+        Thread.sleep(50);
+        assertNull(shortLived.get(modelSensing.etThing, 1L));
+        assertEquals(1, shortLived.getEvictionCount());
+    }
+
+}
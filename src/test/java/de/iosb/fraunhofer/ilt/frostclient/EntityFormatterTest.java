@@ -30,13 +30,16 @@ import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.E
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_RESULT;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsTaskingV11.EP_TASKINGPARAMETERS;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsTaskingV11.taskingParametersBuilder;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.json.serialize.JsonHttpEntity;
 import de.fraunhofer.iosb.ilt.frostclient.json.serialize.JsonWriter;
 import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
 import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeInterval;
@@ -48,16 +51,23 @@ import de.fraunhofer.iosb.ilt.frostclient.utils.CollectionsHelper;
 import de.fraunhofer.iosb.ilt.swe.common.constraint.AllowedTokens;
 import de.fraunhofer.iosb.ilt.swe.common.simple.Category;
 import de.fraunhofer.iosb.ilt.swe.common.simple.Text;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.geojson.LngLatAlt;
 import org.geojson.Point;
+import org.geojson.Polygon;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
@@ -525,4 +535,49 @@ public class EntityFormatterTest {
         assertTrue(jsonEqual(expResult, json2));
     }
 
+    @Test
+    public void writeHttpEntity_Small_KnownLength() throws IOException {
+        Entity entity = modelSensing.newThing("Small Thing", "A small Thing");
+        byte[] expected = JsonWriter.writeBytes(entity);
+
+        JsonHttpEntity httpEntity = new JsonHttpEntity(entity, ContentType.APPLICATION_JSON);
+        assertTrue(httpEntity.isBuffered());
+        assertEquals(expected.length, httpEntity.getContentLength());
+        assertArrayEquals(expected, EntityUtils.toByteArray(httpEntity));
+        assertArrayEquals(expected, EntityUtils.toByteArray(httpEntity));
+    }
+
+    @Test
+    public void writeHttpEntity_Large_Streamed() throws IOException {
+        Entity entity = modelSensing.newThing("Large Thing", "A large Thing. ".repeat(JsonHttpEntity.SMALL_ENTITY_LIMIT / 10));
+        byte[] expected = JsonWriter.writeBytes(entity);
+
+        JsonHttpEntity httpEntity = new JsonHttpEntity(entity, ContentType.APPLICATION_JSON);
+        assertFalse(httpEntity.isBuffered());
+        assertEquals(-1, httpEntity.getContentLength());
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            httpEntity.writeTo(out);
+            assertArrayEquals(expected, out.toByteArray());
+        }
+        assertArrayEquals(expected, httpEntity.getContent().readAllBytes());
+    }
+
+    @Test
+    public void writeHttpEntity_LargeGeometry_Streamed() throws IOException {
+        List<LngLatAlt> ring = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            ring.add(new LngLatAlt(8 + i / 3000.0, 49 + i / 3000.0));
+        }
+        ring.add(ring.get(0));
+        Entity entity = modelSensing.newLocation("Large Location", "A large polygon.", new Polygon(ring));
+        byte[] expected = JsonWriter.writeBytes(entity);
+
+        JsonHttpEntity httpEntity = new JsonHttpEntity(entity, ContentType.APPLICATION_JSON);
+        assertFalse(httpEntity.isBuffered());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        httpEntity.writeTo(out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
 }
@@ -24,29 +24,42 @@ package de.iosb.fraunhofer.ilt.frostclient;
 
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_DESCRIPTION;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_LOCATION;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_RESULT;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_RESULTTIME;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsTaskingV11.EP_TASKINGPARAMETERS;
 import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsTaskingV11.taskingParametersBuilder;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.dataarray.DataArrayReader;
+import de.fraunhofer.iosb.ilt.frostclient.dataarray.DataArrayResult;
+import de.fraunhofer.iosb.ilt.frostclient.dataarray.DataArrayValue;
+import de.fraunhofer.iosb.ilt.frostclient.json.deserialize.EntitySetStreamReader;
 import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
 import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeInstant;
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeValue;
 import de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11;
 import de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsTaskingV11;
 import de.fraunhofer.iosb.ilt.swe.common.constraint.AllowedValues;
 import de.fraunhofer.iosb.ilt.swe.common.simple.Count;
 import de.fraunhofer.iosb.ilt.swe.common.simple.Text;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import org.geojson.Point;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -86,6 +99,73 @@ public class EntityReaderTest {
         assertEquals(expected, observation);
     }
 
+    @Test
+    public void readGeometryObjectOrString() throws IOException {
+        String json = """
+                {
+                    "@iot.id": 1,
+                    "name": "Location 1",
+                    "unknownField": {"a": [1, 2, {"b": null}]},
+                    "encodingType": "application/geo+json",
+                    "location": {"type": "Point", "coordinates": [8.0, 49.0]}
+                }""";
+        Entity location = service.getJsonReader().parseEntity(modelSensing.etLocation, json);
+        assertEquals(new Point(8.0, 49.0), location.getProperty(EP_LOCATION));
+        assertEquals("Location 1", location.getProperty(EP_NAME));
+
+        json = """
+                {
+                    "@iot.id": 2,
+                    "encodingType": "text/plain",
+                    "location": "POINT(8 49)"
+                }""";
+        location = service.getJsonReader().parseEntity(modelSensing.etLocation, json);
+        assertEquals("POINT(8 49)", location.getProperty(EP_LOCATION));
+
+        json = """
+                {
+                    "@iot.id": 3,
+                    "location": null
+                }""";
+        location = service.getJsonReader().parseEntity(modelSensing.etLocation, json);
+        assertNull(location.getProperty(EP_LOCATION));
+        assertTrue(location.isSetProperty(EP_LOCATION));
+    }
+
+    @Test
+    public void readUnknownFields() throws IOException {
+        String json = """
+                {
+                    "@iot.id": 1,
+                    "Datastream@iot.navigationLink": "https://server.de/v1.1/Observations(1)/Datastream",
+                    "custom": {"a": [1, 2, {"b": null}], "c": "d"},
+                    "result": 5
+                }""";
+        Entity observation = service.getJsonReader().parseEntity(modelSensing.etObservation, json);
+        assertEquals(5L, observation.getProperty(EP_RESULT));
+        assertTrue(observation.getUnknownFields().isEmpty());
+
+        service.getJsonReader().setCollectUnknownFields(true);
+        observation = service.getJsonReader().parseEntity(modelSensing.etObservation, json);
+        assertEquals(5L, observation.getProperty(EP_RESULT));
+        assertEquals(2, observation.getUnknownFields().size());
+        assertEquals("\"https://server.de/v1.1/Observations(1)/Datastream\"", observation.getUnknownFields().get("Datastream@iot.navigationLink").toString());
+        assertEquals("{\"a\":[1,2,{\"b\":null}],\"c\":\"d\"}", observation.getUnknownFields().get("custom").toString());
+        assertEquals("d", observation.getUnknownFields().get("custom").toTree().get("c").textValue());
+    }
+
+    @Test
+    public void readEntityListWithUnknownField() throws IOException {
+        String json = """
+                {
+                    "custom": {"value": [{"@iot.id": 99}]},
+                    "value": [{"@iot.id": 1}, {"@iot.id": 2}]
+                }""";
+        EntitySet result = service.getJsonReader().parseEntitySet(modelSensing.etThing, json);
+        assertEquals(2, result.size());
+        assertEquals(1L, result.toList().get(0).getProperty(EP_ID));
+    }
+
     @Test
     public void readEntityList() throws IOException {
         String json = """
@@ -201,6 +281,161 @@ public class EntityReaderTest {
         assertTrue(thingList.isEmpty());
     }
 
+    @Test
+    public void readEntityListFromStream() throws IOException {
+        String json = """
+                {
+                    "@iot.nextLink" : "https://server.de/SensorThingsService/v1.0/Observations?$top=2&$skip=2",
+                    "value" : [
+                        {"@iot.id": 1, "result": 1.5, "phenomenonTime": "2016-01-07T02:00:00.000Z"},
+                        {"@iot.id": 2, "result": "two", "phenomenonTime": "2016-01-07T02:00:00.000Z/2016-01-07T03:00:00.000Z"}
+                    ]
+                }""";
+
+        InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        EntitySet observations = service.getJsonReader().parseEntitySet(modelSensing.etObservation, input);
+        assertEquals("https://server.de/SensorThingsService/v1.0/Observations?$top=2&$skip=2", observations.getNextLink());
+        List<Entity> obsList = observations.toList();
+        assertEquals(2, obsList.size());
+        assertEquals(1L, obsList.get(0).getProperty(EP_ID));
+        assertEquals(new BigDecimal("1.5"), obsList.get(0).getProperty(EP_RESULT));
+        assertEquals("two", obsList.get(1).getProperty(EP_RESULT));
+
+        input = new ByteArrayInputStream("{\"@iot.id\": 3, \"result\": 3}".getBytes(StandardCharsets.UTF_8));
+        Entity observation = service.getJsonReader().parseEntity(modelSensing.etObservation, input);
+        assertEquals(3L, observation.getProperty(EP_ID));
+        assertEquals(3L, observation.getProperty(EP_RESULT));
+    }
+
+    @Test
+    public void readEntityListIncrementally() throws IOException {
+        String json = """
+                {
+                    "value" : [
+                        {"@iot.id": 1, "result": 1.5, "unknown": {"a": [1, 2]}},
+                        {"@iot.id": 2, "result": "two"}
+                    ],
+                    "@iot.count" : 4,
+                    "@iot.nextLink" : "https://server.de/SensorThingsService/v1.0/Observations?$top=2&$skip=2"
+                }""";
+
+        InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        try (EntitySetStreamReader reader = service.getJsonReader().readEntitySet(modelSensing.etObservation, input)) {
+            Entity first = reader.next();
+            assertEquals(1L, first.getProperty(EP_ID));
+            assertEquals(new BigDecimal("1.5"), first.getProperty(EP_RESULT));
+            Entity second = reader.next();
+            assertEquals(2L, second.getProperty(EP_ID));
+            assertNull(reader.next());
+            assertEquals(4L, reader.getCount());
+            assertEquals("https://server.de/SensorThingsService/v1.0/Observations?$top=2&$skip=2", reader.getNextLink());
+        }
+    }
+
+    @Test
+    public void readDataArray() throws IOException {
+        String json = """
+                {
+                    "value" : [{
+                        "Datastream@iot.navigationLink" : "https://server.de/SensorThingsService/v1.1/Datastreams(1)",
+                        "components" : ["id", "phenomenonTime", "result", "resultTime"],
+                        "dataArray@iot.count" : 2,
+                        "dataArray" : [
+                            [1, "2016-01-07T02:00:00.000Z", 1.5, "2016-01-07T02:01:00.000Z"],
+                            [2, "2016-01-07T02:00:00.000Z/2016-01-07T03:00:00.000Z", 3, null]
+                        ]
+                    }, {
+                        "Datastream@iot.navigationLink" : "https://server.de/SensorThingsService/v1.1/Datastreams(2)",
+                        "components" : ["id", "result"],
+                        "dataArray" : [[3, "three"]]
+                    }],
+                    "@iot.nextLink" : "https://server.de/SensorThingsService/v1.1/Observations?$skip=3"
+                }""";
+
+        InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        DataArrayResult result = new DataArrayReader(service.getJsonReader().getMapper()).read(modelSensing.etObservation, input);
+        assertEquals("https://server.de/SensorThingsService/v1.1/Observations?$skip=3", result.getNextLink());
+        assertEquals(3, result.size());
+
+        DataArrayValue first = result.getValues().get(0);
+        assertArrayEquals(new long[]{1, 2}, first.getIds());
+        assertArrayEquals(new double[]{1.5, 3}, first.getResults());
+        long start = ZonedDateTime.parse("2016-01-07T02:00:00.000Z").toInstant().toEpochMilli();
+        assertArrayEquals(new long[]{start, start}, first.getPhenomenonTimes());
+        assertEquals(start + 3600_000, first.getPhenomenonTimeEnds()[1]);
+
+        DataArrayValue second = result.getValues().get(1);
+        assertNull(second.getResults());
+        assertEquals("three", second.getColumn("result")[0]);
+
+        List<Entity> entities = new ArrayList<>();
+        result.forEach(entities::add);
+        assertEquals(3, entities.size());
+        assertEquals(1L, entities.get(0).getProperty(EP_ID));
+        assertEquals(TimeInstant.parse("2016-01-07T02:01:00.000Z"), entities.get(0).getProperty(EP_RESULTTIME));
+        assertTrue(entities.get(1).getProperty(SensorThingsSensingV11.EP_PHENOMENONTIME).isInterval());
+        assertEquals("three", entities.get(2).getProperty(EP_RESULT));
+    }
+
+    @Test
+    public void readDataArray_IgnoresHugeCount() throws IOException {
+        String json = """
+                {
+                    "discount" : "not a count",
+                    "@iot.count" : 1,
+                    "value" : [{
+                        "components" : ["id", "result"],
+                        "dataArray@iot.count" : 30000000000,
+                        "dataArray" : [[1, 1.5]]
+                    }]
+                }""";
+
+        InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        DataArrayResult result = new DataArrayReader(service.getJsonReader().getMapper()).read(modelSensing.etObservation, input);
+        assertEquals(1, result.size());
+        assertArrayEquals(new long[]{1}, result.getValues().get(0).getIds());
+    }
+
+    @Test
+    public void readDataArray_KeepsPrecisionAndTypes() throws IOException {
+        String json = """
+                {
+                    "value" : [{
+                        "components" : ["phenomenonTime", "result"],
+                        "dataArray" : [
+                            ["2016-01-07T02:00:00.123456789+02:00", 9007199254740993],
+                            ["2016-01-07T02:00:00Z/2016-01-07T02:00:00Z", 2],
+                            ["2016-01-07T02:00:00Z", 2.5]
+                        ]
+                    }, {
+                        "components" : ["phenomenonTime", "result"],
+                        "dataArray" : [
+                            ["not a time", 1],
+                            ["2016-01-07T02:00:00Z", 2]
+                        ]
+                    }]
+                }""";
+
+        InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        DataArrayResult result = new DataArrayReader(service.getJsonReader().getMapper()).read(modelSensing.etObservation, input);
+
+        DataArrayValue first = result.getValues().get(0);
+        Object[] times = first.getColumn("phenomenonTime");
+        assertEquals(TimeValue.create(TimeInstant.parse("2016-01-07T02:00:00.123456789+02:00")), times[0]);
+        assertTrue(((TimeValue) times[1]).isInterval());
+        assertNull(first.getResults());
+        Object[] results = first.getColumn("result");
+        assertEquals(9007199254740993L, results[0]);
+        assertEquals(2L, results[1]);
+        assertEquals(new BigDecimal("2.5"), results[2]);
+
+        DataArrayValue second = result.getValues().get(1);
+        assertNull(second.getPhenomenonTimes());
+        assertEquals("not a time", second.getColumn("phenomenonTime")[0]);
+        assertArrayEquals(new double[]{1, 2}, second.getResults());
+        assertEquals(1L, second.getEntity(0).getProperty(EP_RESULT));
+    }
+
     @Test
     public void readTaskingCapabilities() throws IOException {
         String json = """
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_DESCRIPTION;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_RESULT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11;
+import org.junit.jupiter.api.Test;
+
+public class EntityTest {
+
+    private final SensorThingsSensingV11 modelSensing = new SensorThingsSensingV11();
+
+    @Test
+    public void testSetAndUnsetProperties() {
+        Entity thing = new Entity(modelSensing.etThing);
+        assertFalse(thing.isSetProperty(EP_NAME));
+        assertNull(thing.getProperty(EP_NAME));
+
+        thing.setProperty(EP_NAME, "Oven");
+        assertTrue(thing.isSetProperty(EP_NAME));
+        assertEquals("Oven", thing.getProperty(EP_NAME));
+
+        // Setting an Entity property to null still counts as set.
+        thing.setProperty(EP_DESCRIPTION, null);
+        assertTrue(thing.isSetProperty(EP_DESCRIPTION));
+
+        thing.unsetProperty(EP_NAME);
+        assertFalse(thing.isSetProperty(EP_NAME));
+        assertNull(thing.getProperty(EP_NAME));
+
+        assertThrows(IllegalArgumentException.class, () -> thing.setProperty(EP_RESULT, 1));
+        assertThrows(IllegalArgumentException.class, () -> thing.getProperty(EP_RESULT));
+    }
+
+    @Test
+    public void testNavigationProperties() throws ServiceFailureException {
+        Entity observation = new Entity(modelSensing.etObservation);
+        Entity datastream = new Entity(modelSensing.etDatastream).setProperty(EP_ID, 5L);
+
+        observation.setProperty(modelSensing.npObservationDatastream, datastream);
+        assertTrue(observation.isSetProperty(modelSensing.npObservationDatastream));
+        assertEquals(datastream, observation.getProperty(modelSensing.npObservationDatastream, false));
+
+        // Setting a navigation property to null unsets it.
+        observation.setProperty(modelSensing.npObservationDatastream, null);
+        assertFalse(observation.isSetProperty(modelSensing.npObservationDatastream));
+        assertNull(observation.getProperty(modelSensing.npObservationDatastream, false));
+    }
+
+    @Test
+    public void testPropertyFromOtherModelInstance() throws ServiceFailureException {
+        final SensorThingsSensingV11 otherModel = new SensorThingsSensingV11();
+        Entity observation = new Entity(modelSensing.etObservation);
+        Entity datastream = new Entity(modelSensing.etDatastream).setProperty(EP_ID, 5L);
+
+        // Properties are matched by name, so an equal property of another model instance works too.
+        observation.setProperty(otherModel.npObservationDatastream, datastream);
+        assertTrue(modelSensing.etObservation.hasProperty(otherModel.npObservationDatastream));
+        assertEquals(datastream, observation.getProperty(modelSensing.npObservationDatastream, false));
+        assertFalse(modelSensing.etObservation.hasProperty(otherModel.npThingLocations));
+    }
+
+    @Test
+    public void testEquals() {
+        Entity thing1 = new Entity(modelSensing.etThing).setProperty(EP_ID, 1L).setProperty(EP_NAME, "Oven");
+        Entity thing2 = new Entity(modelSensing.etThing).setProperty(EP_NAME, "Oven").setProperty(EP_ID, 1L);
+        assertEquals(thing1, thing2);
+        assertEquals(thing1.hashCode(), thing2.hashCode());
+
+        thing2.setProperty(EP_DESCRIPTION, null);
+        assertNotEquals(thing1, thing2);
+        thing2.unsetProperty(EP_DESCRIPTION);
+        assertEquals(thing1, thing2);
+        assertEquals(thing1.hashCode(), thing2.hashCode());
+
+        thing2.setProperty(EP_NAME, "Fridge");
+        assertNotEquals(thing1, thing2);
+    }
+
+}
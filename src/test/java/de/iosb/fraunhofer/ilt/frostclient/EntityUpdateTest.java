@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_PROPERTIES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for updating Entities that track their changes.
+ */
+public class EntityUpdateTest extends AbstractHttpServerTest {
+
+    private static final String LOCATION = "{\"@iot.id\":1,\"name\":\"Location 1\",\"encodingType\":\"application/geo+json\","
+            + "\"location\":{\"type\":\"Polygon\",\"coordinates\":[[[8,49],[9,49],[9,50],[8,50],[8,49]]]},"
+            + "\"properties\":{\"owner\":\"me\",\"nested\":{\"a\":1,\"b\":2}}}";
+
+    private final List<String> patchTypes = new CopyOnWriteArrayList<>();
+    private final List<String> patchBodies = new CopyOnWriteArrayList<>();
+    private Dao dao;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/", this::handle);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        dao = service.dao(modelSensing.etLocation);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if ("PATCH".equals(exchange.getRequestMethod())) {
+            patchTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+            patchBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        final byte[] bytes = LOCATION.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void unchangedIsNotSent() throws Exception {
+        final Entity location = dao.find(1L);
+        assertTrue(location.isTrackingChanges());
+        assertTrue(location.getChangedProperties().isEmpty());
+        dao.update(location);
+        assertTrue(patchBodies.isEmpty());
+    }
+
+    @Test
+    public void onlyChangedPropertiesAreSent() throws Exception {
+        final Entity location = dao.find(1L);
+        location.setProperty(EP_NAME, "Renamed");
+        dao.update(location);
+        assertEquals(1, patchBodies.size());
+        assertTrue(patchTypes.get(0).startsWith("application/json"));
+        assertTrue(patchBodies.get(0).contains("\"name\":\"Renamed\""));
+        assertFalse(patchBodies.get(0).contains("coordinates"));
+        assertFalse(patchBodies.get(0).contains("owner"));
+
+        // After a successful update, the entity is clean again.
+        dao.update(location);
+        assertEquals(1, patchBodies.size());
+    }
+
+    @Test
+    public void mapChangesAreSentAsJsonPatch() throws Exception {
+        final Entity location = dao.find(1L);
+        location.getProperty(EP_PROPERTIES).put("colour", "red");
+        ((Map<String, Object>) location.getProperty(EP_PROPERTIES).get("nested")).remove("a");
+        dao.update(location);
+        assertEquals(1, patchBodies.size());
+        assertTrue(patchTypes.get(0).startsWith("application/json-patch+json"));
+        assertEquals("[{\"op\":\"remove\",\"path\":\"/properties/nested/a\"},"
+                + "{\"op\":\"add\",\"path\":\"/properties/colour\",\"value\":\"red\"}]", patchBodies.get(0));
+    }
+
+}
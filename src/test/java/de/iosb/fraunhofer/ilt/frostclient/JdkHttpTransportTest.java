@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.NotFoundException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.transport.JdkHttpTransport;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for sending requests using the JDK HttpClient.
+ */
+public class JdkHttpTransportTest extends AbstractHttpServerTest {
+
+    private String lastBody;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/Things", this::handleThings);
+    }
+
+    @Override
+    protected SensorThingsService createService() throws MalformedURLException {
+        return super.createService()
+                .setTransport(new JdkHttpTransport());
+    }
+
+    private void handleThings(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            lastBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Location", baseUrl + "Things(42)");
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+            return;
+        }
+        final String path = exchange.getRequestURI().getPath();
+        if (!path.endsWith("(1)")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = "{\"@iot.id\":1,\"name\":\"Thing 1\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void findAndCreate() throws ServiceFailureException {
+        Entity thing = service.dao(modelSensing.etThing).find(1L);
+        assertEquals("Thing 1", thing.getProperty(EP_NAME));
+
+        Entity newThing = modelSensing.newThing("New Thing", "A new Thing");
+        service.create(newThing);
+        assertEquals(42L, newThing.getProperty(EP_ID));
+        assertTrue(lastBody.contains("\"New Thing\""), lastBody);
+
+        assertThrows(NotFoundException.class, () -> service.dao(modelSensing.etThing).find(2L));
+    }
+
+    @Test
+    public void asyncFind() throws ExecutionException, InterruptedException {
+        Entity thing = service.asyncDao(modelSensing.etThing).find(1L).get();
+        assertEquals(1L, thing.getProperty(EP_ID));
+    }
+
+    @Test
+    public void connectTimeoutIsApplied() throws ServiceFailureException {
+        final JdkHttpTransport transport = (JdkHttpTransport) service.getTransport();
+        service.setConnectTimeout(1234);
+        service.dao(modelSensing.etThing).find(1L);
+        assertEquals(Optional.of(Duration.ofMillis(1234)), transport.getClient().connectTimeout());
+
+        service.setConnectTimeout(2345);
+        service.dao(modelSensing.etThing).find(1L);
+        assertEquals(Optional.of(Duration.ofMillis(2345)), transport.getClient().connectTimeout());
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.query.NavigationLoader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for loading navigation properties in batches.
+ */
+public class NavigationLoaderTest extends AbstractHttpServerTest {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("id eq (\\d+)");
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/", this::handle);
+    }
+
+    /**
+     * Answers filter queries on Observations, expanding a Datastream with the
+     * id (observationId % 2) + 1, and on Datastreams, expanding Thing 9.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        final String path = exchange.getRequestURI().getPath();
+        final String query = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), StandardCharsets.UTF_8);
+        final List<String> items = new ArrayList<>();
+        final Matcher matcher = ID_PATTERN.matcher(query);
+        while (matcher.find()) {
+            final long id = Long.parseLong(matcher.group(1));
+            if (path.endsWith("/Observations")) {
+                items.add("{\"@iot.id\":" + id + ",\"Datastream\":{\"@iot.id\":" + (id % 2 + 1) + ",\"name\":\"ds\"}}");
+            } else {
+                items.add("{\"@iot.id\":" + id + ",\"Thing\":{\"@iot.id\":9,\"name\":\"thing\"}}");
+            }
+        }
+        final byte[] bytes = ("{\"value\":[" + String.join(",", items) + "]}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private List<Entity> createObservations(int count) {
+        final List<Entity> observations = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            observations.add(new Entity(modelSensing.etObservation).setProperty(EP_ID, id));
+        }
+        return observations;
+    }
+
+    @Test
+    public void loadPath() throws Exception {
+        final List<Entity> observations = createObservations(250);
+        final NavigationLoader loader = service.navigationLoader();
+        final List<Entity> things = loader.load(observations, modelSensing.npObservationDatastream, modelSensing.npDatastreamThing);
+
+        // Three batches of Observations, and one for the two Datastreams.
+        assertEquals(4, requests.get());
+        assertEquals(1, things.size());
+        assertEquals(9L, things.get(0).getProperty(EP_ID));
+
+        final Entity ds1 = observations.get(1).getProperty(modelSensing.npObservationDatastream, false);
+        final Entity ds2 = observations.get(0).getProperty(modelSensing.npObservationDatastream, false);
+        assertEquals(1L, ds1.getProperty(EP_ID));
+        assertEquals(2L, ds2.getProperty(EP_ID));
+        assertSame(ds1, observations.get(249).getProperty(modelSensing.npObservationDatastream, false));
+        assertSame(things.get(0), ds1.getProperty(modelSensing.npDatastreamThing, false));
+        assertSame(things.get(0), ds2.getProperty(modelSensing.npDatastreamThing, false));
+
+        // Already loaded properties are not loaded again.
+        loader.load(observations, modelSensing.npObservationDatastream);
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    public void iteratorLoadsPerBatch() {
+        final NavigationLoader loader = service.navigationLoader().setBatchSize(10);
+        final Iterator<Entity> it = loader.iterator(createObservations(25).iterator(), modelSensing.npObservationDatastream);
+        int count = 0;
+        while (it.hasNext()) {
+            final Entity observation = it.next();
+            assertTrue(observation.isSetProperty(modelSensing.npObservationDatastream));
+            count++;
+        }
+        assertEquals(25, count);
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void loadedPropertiesAreNotChanges() throws Exception {
+        final List<Entity> observations = createObservations(3);
+        observations.forEach(Entity::markClean);
+        service.navigationLoader().load(observations, modelSensing.npObservationDatastream);
+        assertEquals(1, requests.get());
+
+        final Entity observation = observations.get(0);
+        assertTrue(observation.isSetProperty(modelSensing.npObservationDatastream));
+        assertTrue(observation.getChangedProperties().isEmpty());
+        service.dao(modelSensing.etObservation).update(observation);
+        assertEquals(1, requests.get());
+    }
+
+}
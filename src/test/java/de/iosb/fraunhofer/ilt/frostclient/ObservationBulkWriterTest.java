@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.dataarray.ObservationBulkWriter;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for creating Observations using the dataArray format.
+ */
+public class ObservationBulkWriterTest extends AbstractHttpServerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private JsonNode lastRequest;
+    private boolean reject;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/CreateObservations", this::handleCreate);
+    }
+
+    private void handleCreate(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            lastRequest = mapper.readTree(in);
+        }
+        if (reject) {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = ("[\"" + baseUrl + "Observations(11)\",\"error\",\"" + baseUrl + "Observations(13)\"]")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(201, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void createObservations() throws ServiceFailureException {
+        Entity ds1 = modelSensing.newDatastream(1L);
+        Entity ds2 = modelSensing.newDatastream(2L);
+        ZonedDateTime time = ZonedDateTime.parse("2023-01-01T00:00:00Z");
+        Entity obs1 = modelSensing.newObservation(1.5, time, ds1);
+        Entity obs2 = modelSensing.newObservation(2.5, time, ds2);
+        Entity obs3 = modelSensing.newObservation(3.5, time, ds1);
+
+        ObservationBulkWriter writer = new ObservationBulkWriter(service)
+                .add(obs1)
+                .add(obs2)
+                .add(obs3);
+        assertEquals(3, writer.size());
+        List<Entity> failed = writer.send();
+        assertEquals(0, writer.size());
+
+        assertEquals(2, lastRequest.size());
+        JsonNode group1 = lastRequest.get(0);
+        assertEquals(1, group1.get("Datastream").get("@iot.id").asInt());
+        assertEquals("[\"phenomenonTime\",\"result\"]", group1.get("components").toString());
+        assertEquals(2, group1.get("dataArray@iot.count").asInt());
+        assertEquals(3.5, group1.get("dataArray").get(1).get(1).asDouble());
+        assertEquals(2, lastRequest.get(1).get("Datastream").get("@iot.id").asInt());
+
+        // Results are in request order: obs1, obs3, obs2
+        assertEquals(11L, obs1.getProperty(EP_ID));
+        assertEquals(13L, obs2.getProperty(EP_ID));
+        assertNull(obs3.getProperty(EP_ID));
+        assertEquals(1, failed.size());
+        assertTrue(failed.get(0) == obs3);
+    }
+
+    @Test
+    public void differentComponentsStartNewGroup() throws ServiceFailureException {
+        Entity ds1 = modelSensing.newDatastream(1L);
+        ZonedDateTime time = ZonedDateTime.parse("2023-01-01T00:00:00Z");
+        Entity obs1 = modelSensing.newObservation(1.5, time, ds1);
+        Entity obs2 = modelSensing.newObservation(2.5, time, ds1)
+                .setProperty(modelSensing.npObservationFeatureofinterest, modelSensing.newFeatureOfInterest(5L));
+        Entity obs3 = modelSensing.newObservation(3.5, time, ds1);
+
+        new ObservationBulkWriter(service)
+                .add(obs1)
+                .add(obs2)
+                .add(obs3)
+                .send();
+
+        assertEquals(2, lastRequest.size());
+        JsonNode group1 = lastRequest.get(0);
+        assertEquals("[\"phenomenonTime\",\"result\"]", group1.get("components").toString());
+        assertEquals(2, group1.get("dataArray@iot.count").asInt());
+        JsonNode group2 = lastRequest.get(1);
+        assertEquals(1, group2.get("Datastream").get("@iot.id").asInt());
+        assertEquals("[\"phenomenonTime\",\"result\",\"FeatureOfInterest/id\"]", group2.get("components").toString());
+        assertEquals("[\"2023-01-01T00:00:00Z\",2.5,5]", group2.get("dataArray").get(0).toString());
+
+        // Results are in request order: obs1, obs3, obs2
+        assertEquals(11L, obs1.getProperty(EP_ID));
+        assertEquals(13L, obs2.getProperty(EP_ID));
+    }
+
+    @Test
+    public void failedSendKeepsObservations() throws ServiceFailureException {
+        Entity ds1 = modelSensing.newDatastream(1L);
+        ZonedDateTime time = ZonedDateTime.parse("2023-01-01T00:00:00Z");
+        Entity obs1 = modelSensing.newObservation(1.5, time, ds1);
+        Entity obs2 = modelSensing.newObservation(2.5, time, ds1);
+        Entity obs3 = modelSensing.newObservation(3.5, time, ds1);
+        ObservationBulkWriter writer = new ObservationBulkWriter(service)
+                .add(obs1)
+                .add(obs2)
+                .add(obs3);
+
+        reject = true;
+        assertThrows(ServiceFailureException.class, writer::send);
+        assertEquals(3, writer.size());
+
+        reject = false;
+        List<Entity> failed = writer.send();
+        assertEquals(0, writer.size());
+        assertEquals(3, lastRequest.get(0).get("dataArray@iot.count").asInt());
+        assertEquals(11L, obs1.getProperty(EP_ID));
+        assertEquals(1, failed.size());
+    }
+
+}
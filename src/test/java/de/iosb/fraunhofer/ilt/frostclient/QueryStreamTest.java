@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.exception.NotFoundException;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.query.Query;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for following nextLinks of a paged collection.
+ */
+public class QueryStreamTest extends AbstractHttpServerTest {
+
+    private static final int PAGE_SIZE = 3;
+    private static final int PAGE_COUNT = 4;
+
+    private volatile String lastQuery;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/Observations", this::handlePage);
+    }
+
+    private void handlePage(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        lastQuery = query;
+        int page = 0;
+        if (query != null && query.startsWith("page=")) {
+            page = Integer.parseInt(query.substring(5));
+        }
+        StringBuilder json = new StringBuilder("{\"value\":[");
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"@iot.id\":").append(page * PAGE_SIZE + i + 1).append(",\"result\":").append(i).append('}');
+        }
+        json.append(']');
+        if (page + 1 < PAGE_COUNT) {
+            json.append(",\"@iot.nextLink\":\"").append(baseUrl).append("Observations?page=").append(page + 1).append('"');
+        }
+        json.append('}');
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static List<Long> expectedIds() {
+        return LongStream.rangeClosed(1, PAGE_SIZE * PAGE_COUNT).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(Stream<Entity> stream) {
+        try (stream) {
+            return stream.map(e -> (Long) e.getProperty(EP_ID)).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void streamAllPages() throws ServiceFailureException {
+        assertEquals(expectedIds(), ids(service.query(modelSensing.etObservation).stream()));
+    }
+
+    @Test
+    public void streamAllPagesWithPrefetch() throws ServiceFailureException {
+        assertEquals(expectedIds(), ids(service.query(modelSensing.etObservation).stream(2)));
+    }
+
+    @Test
+    public void asyncListAndFetchNext() throws ExecutionException, InterruptedException {
+        EntitySet page = service.asyncQuery(modelSensing.etObservation).list().get();
+        assertEquals(PAGE_SIZE, page.size());
+        EntitySet next = service.asyncQuery(modelSensing.etObservation).fetchNext(page).get();
+        assertEquals(PAGE_SIZE + 1L, next.toList().get(0).getProperty(EP_ID));
+        assertEquals(1L, service.asyncQuery(modelSensing.etObservation).first().get().getProperty(EP_ID));
+    }
+
+    @Test
+    public void asyncFailure() {
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> service.asyncQuery(modelSensing.etThing).list().get());
+        assertTrue(ex.getCause() instanceof NotFoundException);
+    }
+
+    @Test
+    public void listDataArrayLeavesQueryUnchanged() throws ServiceFailureException {
+        Query query = service.query(modelSensing.etObservation).top(2);
+        query.listDataArray();
+        assertEquals("$top=2&$resultFormat=dataArray", lastQuery);
+        query.list();
+        assertEquals("$top=2", lastQuery);
+    }
+
+    @Test
+    public void streamPartially() throws ServiceFailureException {
+        try (Stream<Entity> stream = service.query(modelSensing.etObservation).stream(1)) {
+            assertEquals(List.of(1L, 2L, 3L, 4L), stream.limit(4).map(e -> (Long) e.getProperty(EP_ID)).collect(Collectors.toList()));
+        }
+        assertEquals(expectedIds(), ids(service.query(modelSensing.etObservation).stream()));
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.dao.AsyncDao;
+import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
+import de.fraunhofer.iosb.ilt.frostclient.exception.StatusCodeException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.transport.AdaptiveConcurrencyLimit;
+import de.fraunhofer.iosb.ilt.frostclient.transport.RateLimiter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the rate limiter and adaptive concurrency limit of the service.
+ */
+public class RateLimiterTest extends AbstractHttpServerTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean overloaded;
+    private volatile boolean blocking;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/", this::handle);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (blocking) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (overloaded) {
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        final byte[] bytes = "{\"@iot.id\":1,\"name\":\"Thing 1\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void rateLimiterSpacesRequests() throws Exception {
+        final RateLimiter limiter = new RateLimiter(20, 1);
+        service.setRateLimiter(limiter);
+        final AsyncDao dao = service.asyncDao(modelSensing.etThing);
+        final long start = System.nanoTime();
+        final List<CompletableFuture<Entity>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(dao.find(1L));
+        }
+        assertTrue(limiter.getQueueDepth() > 0);
+        for (CompletableFuture<Entity> future : futures) {
+            assertEquals("Thing 1", future.get(10, TimeUnit.SECONDS).getProperty(EP_NAME));
+        }
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 190, "Five requests at 20 per second took only " + elapsedMs + " ms");
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(5, requests.get());
+    }
+
+    @Test
+    public void concurrencyLimitAdapts() throws Exception {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10);
+        service.setConcurrencyLimit(limit);
+        final Dao dao = service.dao(modelSensing.etThing);
+        overloaded = true;
+        for (int i = 0; i < 10; i++) {
+            assertThrows(StatusCodeException.class, () -> dao.find(1L));
+        }
+        assertTrue(limit.getLimit() < 5, "Limit did not shrink: " + limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+
+        limit.setMaxLimit(1);
+        overloaded = false;
+        blocking = true;
+        final AsyncDao asyncDao = service.asyncDao(modelSensing.etThing);
+        final CompletableFuture<Entity> first = asyncDao.find(1L);
+        final CompletableFuture<Entity> second = asyncDao.find(1L);
+        assertEquals(1, limit.getInFlight());
+        assertEquals(1, limit.getQueueDepth());
+
+        release.countDown();
+        assertEquals("Thing 1", first.get(10, TimeUnit.SECONDS).getProperty(EP_NAME));
+        assertEquals("Thing 1", second.get(10, TimeUnit.SECONDS).getProperty(EP_NAME));
+        assertEquals(0, limit.getQueueDepth());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void concurrencyBaselineIgnoresOutliers() throws Exception {
+        final long ms = 1_000_000L;
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10);
+        for (int i = 0; i < 20; i++) {
+            limit.acquire();
+            limit.onComplete(10 * ms, false);
+        }
+        final int steady = limit.getLimit();
+        // One very fast request must not make the normal ones count as slow.
+        limit.acquire();
+        limit.onComplete(ms / 10, false);
+        for (int i = 0; i < 20; i++) {
+            limit.acquire();
+            limit.onComplete(10 * ms, false);
+        }
+        assertEquals(steady, limit.getLimit());
+
+        // A lasting increase in latency becomes the new baseline.
+        for (int i = 0; i < 200; i++) {
+            limit.acquire();
+            limit.onComplete(50 * ms, false);
+        }
+        assertTrue(limit.getBaselineNanos() > 40 * ms, "Baseline did not follow: " + limit.getBaselineNanos());
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_PROPERTIES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.cache.ResponseCache;
+import de.fraunhofer.iosb.ilt.frostclient.dao.Dao;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the HTTP response cache.
+ */
+public class ResponseCacheTest extends AbstractHttpServerTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String THING = "{\"@iot.id\":1,\"name\":\"Thing 1\",\"properties\":{\"colour\":\"red\"}}";
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/", this::handle);
+    }
+
+    private SensorThingsService createService(ResponseCache cache) throws MalformedURLException {
+        return new SensorThingsService(modelSensing.getModelRegistry(), new URL(baseUrl))
+                .setResponseCache(cache);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        fullResponses.incrementAndGet();
+        final byte[] bytes = THING.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void revalidatesWithEtag() throws Exception {
+        final ResponseCache cache = new ResponseCache(1024 * 1024);
+        final Dao dao = createService(cache).dao(modelSensing.etThing);
+        final Entity first = dao.find(1L);
+        final Entity second = dao.find(1L);
+        final Entity third = createService(cache).asyncDao(modelSensing.etThing).find(1L).get();
+        assertEquals(1, fullResponses.get());
+        assertEquals(2, notModified.get());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(first, second);
+        assertEquals(first, third);
+        assertNotSame(first, second);
+        assertEquals("Thing 1", third.getProperty(EP_NAME));
+        assertEquals(THING.length(), cache.getTotalBytes());
+    }
+
+    @Test
+    public void storesOnDisk(@TempDir Path directory) throws Exception {
+        createService(new ResponseCache(1024 * 1024, directory)).dao(modelSensing.etThing).find(1L);
+        assertEquals(1, fullResponses.get());
+
+        final ResponseCache reopened = new ResponseCache(1024 * 1024, directory);
+        assertEquals(1, reopened.size());
+        final Entity thing = createService(reopened).dao(modelSensing.etThing).find(1L);
+        assertEquals("Thing 1", thing.getProperty(EP_NAME));
+        assertEquals(1, fullResponses.get());
+        assertEquals(1, notModified.get());
+
+        reopened.invalidateAll();
+        assertEquals(0, reopened.size());
+        assertEquals(0, reopened.getTotalBytes());
+    }
+
+    @Test
+    public void hitsDoNotShareState() throws Exception {
+        final Dao dao = createService(new ResponseCache(1024 * 1024)).dao(modelSensing.etThing);
+        final Entity first = dao.find(1L);
+        first.getProperty(EP_PROPERTIES).put("colour", "blue");
+        final Entity second = dao.find(1L);
+        assertEquals(1, notModified.get());
+        assertEquals("red", second.getProperty(EP_PROPERTIES).get("colour"));
+    }
+
+    @Test
+    public void doesNotBufferLargeBodies() throws Exception {
+        final ResponseCache cache = new ResponseCache(THING.length());
+        final byte[] bytes = THING.getBytes(StandardCharsets.UTF_8);
+        final byte[] large = (THING + " ").getBytes(StandardCharsets.UTF_8);
+
+        final HttpGet tooLarge = new HttpGet(baseUrl + "Things(1)");
+        final HttpResponse oversized = createResponse(new InputStreamEntity(new ByteArrayInputStream(large), large.length));
+        final HttpEntity oversizedEntity = oversized.getEntity();
+        assertSame(oversized, cache.process(tooLarge, cache.prepare(tooLarge), oversized));
+        assertSame(oversizedEntity, oversized.getEntity());
+
+        final HttpGet unknownLarge = new HttpGet(baseUrl + "Things(2)");
+        final HttpResponse chunked = createResponse(new InputStreamEntity(new ByteArrayInputStream(large), -1));
+        assertSame(chunked, cache.process(unknownLarge, cache.prepare(unknownLarge), chunked));
+        assertArrayEquals(large, EntityUtils.toByteArray(chunked.getEntity()));
+        assertEquals(0, cache.size());
+
+        final HttpGet unknownSmall = new HttpGet(baseUrl + "Things(3)");
+        final HttpResponse small = createResponse(new InputStreamEntity(new ByteArrayInputStream(bytes), -1));
+        final HttpResponse processed = cache.process(unknownSmall, cache.prepare(unknownSmall), small);
+        assertNotSame(small, processed);
+        assertArrayEquals(bytes, EntityUtils.toByteArray(processed.getEntity()));
+        assertEquals(1, cache.size());
+    }
+
+    private static HttpResponse createResponse(HttpEntity entity) {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setHeader("ETag", ETAG);
+        response.setEntity(entity);
+        return response;
+    }
+
+    @Test
+    public void evictedFileIsMiss(@TempDir Path directory) throws Exception {
+        final ResponseCache cache = new ResponseCache(1024 * 1024, directory);
+        final Dao dao = createService(cache).dao(modelSensing.etThing);
+        dao.find(1L);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        final Entity thing = dao.find(1L);
+        assertEquals("Thing 1", thing.getProperty(EP_NAME));
+        assertEquals(2, fullResponses.get());
+        assertEquals(0, notModified.get());
+    }
+
+    @Test
+    public void storesLongUrls(@TempDir Path directory) throws Exception {
+        final URI uri = new URI(baseUrl + "Things(1)?$filter=" + "name%20eq%20'x'%20or%20".repeat(4000) + "true");
+        createService(new ResponseCache(1024 * 1024, directory)).dao(modelSensing.etThing).find(uri);
+
+        final ResponseCache reopened = new ResponseCache(1024 * 1024, directory);
+        assertEquals(1, reopened.size());
+        assertEquals("Thing 1", createService(reopened).dao(modelSensing.etThing).find(uri).getProperty(EP_NAME));
+        assertEquals(1, fullResponses.get());
+        assertEquals(1, notModified.get());
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2023 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.iosb.fraunhofer.ilt.frostclient;
+
+import static de.fraunhofer.iosb.ilt.frostclient.models.SensorThingsSensingV11.EP_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fraunhofer.iosb.ilt.frostclient.SensorThingsService;
+import de.fraunhofer.iosb.ilt.frostclient.exception.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.frostclient.model.Entity;
+import de.fraunhofer.iosb.ilt.frostclient.model.EntitySet;
+import de.fraunhofer.iosb.ilt.frostclient.transport.ExponentialBackoffRetryPolicy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for retrying failed requests.
+ */
+public class RetryTest extends AbstractHttpServerTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int failuresLeft;
+
+    @Override
+    protected void createContexts(HttpServer server) {
+        server.createContext("/v1.1/", this::handle);
+    }
+
+    @Override
+    protected SensorThingsService createService() throws MalformedURLException {
+        return super.createService()
+                .setRetryPolicy(new ExponentialBackoffRetryPolicy()
+                        .setInitialDelayMs(1)
+                        .setMaxDelayMs(50));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        final String body;
+        if (exchange.getRequestURI().toString().contains("$skip=1")) {
+            body = "{\"value\":[{\"@iot.id\":2,\"name\":\"Thing 2\"}]}";
+        } else if (exchange.getRequestURI().getPath().endsWith("/Things")) {
+            failuresLeft = Integer.MAX_VALUE;
+            body = "{\"value\":[{\"@iot.id\":1,\"name\":\"Thing 1\"}],\"@iot.nextLink\":\"" + baseUrl + "Things?$skip=1\"}";
+        } else {
+            body = "{\"@iot.id\":1,\"name\":\"Thing 1\"}";
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void retriesUnavailable() throws Exception {
+        failuresLeft = 2;
+        final Entity thing = service.dao(modelSensing.etThing).find(1L);
+        assertEquals("Thing 1", thing.getProperty(EP_NAME));
+        assertEquals(3, requests.get());
+
+        failuresLeft = 2;
+        final Entity asyncThing = service.asyncDao(modelSensing.etThing).find(1L).get();
+        assertEquals("Thing 1", asyncThing.getProperty(EP_NAME));
+        assertEquals(6, requests.get());
+    }
+
+    @Test
+    public void givesUpAfterMaxRetries() throws IOException {
+        failuresLeft = 10;
+        assertThrows(ServiceFailureException.class, () -> service.dao(modelSensing.etThing).find(1L));
+        assertEquals(4, requests.get());
+
+        // POST is not idempotent, and is not retried.
+        requests.set(0);
+        try (CloseableHttpResponse response = service.execute(new HttpPost(baseUrl + "Things"))) {
+            assertEquals(503, response.getStatusLine().getStatusCode());
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void failedPageIsReported() throws Exception {
+        final EntitySet things = service.query(modelSensing.etThing).list();
+        final Iterator<Entity> it = things.iterator();
+        assertEquals("Thing 1", it.next().getProperty(EP_NAME));
+        assertThrows(RuntimeException.class, it::hasNext);
+        assertThrows(ServiceFailureException.class, things::fetchNext);
+    }
+
+}
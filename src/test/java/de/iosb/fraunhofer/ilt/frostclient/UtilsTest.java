@@ -23,8 +23,17 @@
 package de.iosb.fraunhofer.ilt.frostclient;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeInstant;
+import de.fraunhofer.iosb.ilt.frostclient.model.ext.TimeInterval;
+import de.fraunhofer.iosb.ilt.frostclient.utils.Iso8601Codec;
 import de.fraunhofer.iosb.ilt.frostclient.utils.StringHelper;
+import java.text.ParseException;
+import net.time4j.Moment;
+import net.time4j.format.expert.Iso8601Format;
+import net.time4j.range.MomentInterval;
 import org.junit.jupiter.api.Test;
 
 public class UtilsTest {
@@ -45,4 +54,67 @@ public class UtilsTest {
         assertEquals("http%3A%2F%2Fexample.org%2FThings%5Bxyz%27xyz%5D", StringHelper.urlEncode("http://example.org/Things[xyz'xyz]", false));
     }
 
+    @Test
+    public void testIso8601CodecMatchesTime4j() throws ParseException {
+        final String[] values = {
+            "2016-01-07T02:00:00Z",
+            "2016-01-07T02:00:00.000Z",
+            "2016-01-07T02:00:00.5Z",
+            "2016-01-07T02:00:00.123456789Z",
+            "2016-01-07T02:00:00,25Z",
+            "2016-01-07T04:00:00+02:00",
+            "2016-01-07T00:30:00-01:30",
+            "2016-01-07T00:30:00+05",
+            "2016-02-29T23:59:59.999Z",
+            "2000-03-01T00:00:00Z",
+            "1969-12-31T23:59:59.1Z",
+            "1600-01-01T00:00:00Z",
+            "0000-01-01T00:00:00Z",
+            "9999-12-31T23:59:59Z"
+        };
+        for (String value : values) {
+            final Moment expected = Iso8601Format.EXTENDED_DATE_TIME_OFFSET.parse(value);
+            final Moment parsed = Iso8601Codec.parseMoment(value);
+            assertEquals(expected, parsed, value);
+            assertEquals(StringHelper.FORMAT_MOMENT.print(expected), Iso8601Codec.printMoment(parsed), value);
+            assertEquals(StringHelper.FORMAT_MOMENT.print(expected), TimeInstant.parse(value).asISO8601(), value);
+        }
+    }
+
+    @Test
+    public void testIso8601CodecFallback() {
+        // Forms the codec does not handle itself.
+        assertNull(Iso8601Codec.parseMoment("2016-01-07T02:00Z"));
+        assertNull(Iso8601Codec.parseMoment("2016-W01-4T02:00:00Z"));
+        assertNull(Iso8601Codec.parseMoment("2016-12-31T23:59:60Z"));
+        assertNull(Iso8601Codec.parseMoment("2016-02-30T02:00:00Z"));
+        assertNull(Iso8601Codec.parseMoment("2016-01-07T02:00:00"));
+        assertNull(Iso8601Codec.parseMoment("2016-01-07T02:00:00.Z"));
+        assertNull(Iso8601Codec.parseMoment("2016-01-07T02:00:00Zz"));
+        assertNull(Iso8601Codec.parseMoment("2016-01-07T02:00:00+2:00"));
+        assertNull(Iso8601Codec.parseMoment("2016-01-07T02:00:00-0130"));
+        assertNull(Iso8601Codec.parseMoment("2016-01-07T02:00:00.1234567891Z"));
+        assertEquals("2016-01-07T02:00:00Z", TimeInstant.parse("2016-01-07T02:00Z").asISO8601());
+        assertThrows(IllegalArgumentException.class, () -> TimeInstant.parse("2016-02-30T02:00:00Z"));
+        assertThrows(IllegalArgumentException.class, () -> TimeInstant.parse("not a time"));
+    }
+
+    @Test
+    public void testIso8601CodecIntervals() throws ParseException {
+        final String[] values = {
+            "2016-01-07T02:00:00Z/2016-01-07T03:00:00Z",
+            "2016-01-07T02:00:00.5+01:00/2016-01-07T03:00:00.25-01:00",
+            "2016-01-07T02:00:00Z/2016-01-07T02:00:00Z",
+            "2016-01-07T02:00:00Z/PT1H",
+            "P1D/2016-01-07T02:00:00Z"
+        };
+        for (String value : values) {
+            final MomentInterval expected = MomentInterval.parseISO(value);
+            final TimeInterval parsed = TimeInterval.parse(value);
+            assertEquals(expected, parsed.getInterval(), value);
+            assertEquals(StringHelper.FORMAT_INTERVAL.print(expected), parsed.asISO8601(), value);
+        }
+        assertThrows(IllegalArgumentException.class, () -> TimeInterval.parse("2016-01-07T03:00:00Z/2016-01-07T02:00:00Z"));
+    }
+
 }